@@ -0,0 +1,21 @@
+package com.epam.training.microservicefoundation.resourceservice.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Shares a lookup between the concurrent callers asking for the same key. The first caller starts the lookup, the ones arriving before
+ * it is done get its result, the next caller starts a new one. A shared lookup is not cancelled together with the caller which started
+ * it, the others may still be waiting for it.
+ */
+public class SingleFlight<K, V> {
+  private final Map<K, Mono<V>> flights = new ConcurrentHashMap<>();
+
+  public Mono<V> execute(K key, Supplier<Mono<V>> lookup) {
+    return Mono.defer(() -> flights.computeIfAbsent(key, flightKey -> Mono.defer(lookup)
+        .doFinally(signal -> flights.remove(flightKey))
+        .cache()));
+  }
+}
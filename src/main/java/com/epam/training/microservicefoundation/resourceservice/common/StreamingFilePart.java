@@ -0,0 +1,49 @@
+package com.epam.training.microservicefoundation.resourceservice.common;
+
+import java.nio.file.Path;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A file part backed by the part events of a multipart request that is being read. The content is neither kept in memory nor spooled
+ * to disk, so it can be consumed only once and only while the request body is read.
+ */
+public class StreamingFilePart implements FilePart {
+  private final FilePartEvent event;
+  private final Flux<DataBuffer> content;
+
+  public StreamingFilePart(FilePartEvent event, Flux<DataBuffer> content) {
+    this.event = event;
+    this.content = content;
+  }
+
+  @Override
+  public String filename() {
+    return event.filename();
+  }
+
+  @Override
+  public String name() {
+    return event.name();
+  }
+
+  @Override
+  public HttpHeaders headers() {
+    return event.headers();
+  }
+
+  @Override
+  public Flux<DataBuffer> content() {
+    return content;
+  }
+
+  @Override
+  public Mono<Void> transferTo(Path dest) {
+    return DataBufferUtils.write(content, dest);
+  }
+}
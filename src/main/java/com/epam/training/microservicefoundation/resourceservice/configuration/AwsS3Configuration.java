@@ -2,6 +2,15 @@ package com.epam.training.microservicefoundation.resourceservice.configuration;
 
 import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectFileCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectMemoryCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.PartSizePlanner;
+import com.epam.training.microservicefoundation.resourceservice.repository.StorageLoadTracker;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadMemoryBudget;
+import com.epam.training.microservicefoundation.resourceservice.service.placement.PowerOfTwoChoicesPlacementStrategy;
+import com.epam.training.microservicefoundation.resourceservice.service.placement.RandomPlacementStrategy;
+import com.epam.training.microservicefoundation.resourceservice.service.placement.StoragePlacementStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
@@ -16,14 +25,41 @@ import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 @Configuration
 @RefreshScope
 @EnableConfigurationProperties(S3ClientConfigurationProperties.class)
 public class AwsS3Configuration {
   @Bean
-  public CloudStorageRepository cloudStorageRepository(S3ClientConfigurationProperties properties) {
-    return new CloudStorageRepository(properties, s3Client(properties));
+  public CloudStorageRepository cloudStorageRepository(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry,
+      StorageLoadTracker storageLoadTracker) {
+    return new CloudStorageRepository(properties, s3Client(properties), s3Presigner(properties),
+        new PartSizePlanner(properties, meterRegistry), new UploadMemoryBudget(properties, meterRegistry), storageLoadTracker);
+  }
+
+  @Bean
+  public StorageLoadTracker storageLoadTracker(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    return new StorageLoadTracker(properties, meterRegistry);
+  }
+
+  @Bean
+  public StoragePlacementStrategy storagePlacementStrategy(S3ClientConfigurationProperties properties,
+      StorageLoadTracker storageLoadTracker) {
+    return switch (properties.getPlacement().getStrategy()) {
+      case RANDOM -> new RandomPlacementStrategy();
+      case POWER_OF_TWO_CHOICES -> new PowerOfTwoChoicesPlacementStrategy(storageLoadTracker, properties);
+    };
+  }
+
+  @Bean
+  public ObjectFileCache objectFileCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    return new ObjectFileCache(properties, meterRegistry);
+  }
+
+  @Bean
+  public ObjectMemoryCache objectMemoryCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    return new ObjectMemoryCache(properties, meterRegistry);
   }
 
   private S3AsyncClient s3Client(S3ClientConfigurationProperties properties) {
@@ -33,7 +69,7 @@ public class AwsS3Configuration {
         .build();
 
     S3Configuration serviceConfiguration = S3Configuration.builder()
-        .checksumValidationEnabled(false)
+        .checksumValidationEnabled(properties.getUpload().isChecksumEnabled())
         .chunkedEncodingEnabled(true)
         .build();
 
@@ -47,6 +83,14 @@ public class AwsS3Configuration {
         .build();
   }
 
+  private S3Presigner s3Presigner(S3ClientConfigurationProperties properties) {
+    return S3Presigner.builder()
+        .credentialsProvider(getEnvironmentVariableCredentialsProvider())
+        .region(properties.getRegion())
+        .endpointOverride(properties.getEndpoint())
+        .build();
+  }
+
   private ClientOverrideConfiguration clientOverrideConfiguration(S3ClientConfigurationProperties properties) {
     return ClientOverrideConfiguration.builder()
         .retryPolicy(retryPolicy(properties))
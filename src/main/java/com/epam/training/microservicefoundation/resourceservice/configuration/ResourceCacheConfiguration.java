@@ -0,0 +1,18 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceLocationCacheProperties;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.StorageCacheProperties;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({ResourceLocationCacheProperties.class, StorageCacheProperties.class})
+public class ResourceCacheConfiguration {
+  @Bean
+  public ResourceLocationCache resourceLocationCache(ResourceLocationCacheProperties properties, MeterRegistry meterRegistry) {
+    return new ResourceLocationCache(properties, meterRegistry);
+  }
+}
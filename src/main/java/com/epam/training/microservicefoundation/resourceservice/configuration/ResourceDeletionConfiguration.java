@@ -0,0 +1,10 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ResourceDeletionProperties.class)
+public class ResourceDeletionConfiguration {
+}
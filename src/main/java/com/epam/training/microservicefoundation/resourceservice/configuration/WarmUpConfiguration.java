@@ -0,0 +1,10 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.WarmUpProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(WarmUpProperties.class)
+public class WarmUpConfiguration {
+}
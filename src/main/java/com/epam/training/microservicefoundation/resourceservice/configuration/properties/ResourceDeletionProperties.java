@@ -0,0 +1,98 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = ResourceDeletionProperties.PREFIX)
+public class ResourceDeletionProperties {
+  public static final String PREFIX = "resource.deletion";
+  /**
+   * Whether deleted resources are only marked as deleting and acknowledged right away, their files and rows are removed by the reaper.
+   */
+  private boolean deferred;
+  private final Reaper reaper = new Reaper();
+
+  public boolean isDeferred() {
+    return deferred;
+  }
+
+  public void setDeferred(boolean deferred) {
+    this.deferred = deferred;
+  }
+
+  public Reaper getReaper() {
+    return reaper;
+  }
+
+  public static class Reaper {
+    /**
+     * Whether the files and rows of resources marked as deleting are removed periodically.
+     */
+    private boolean enabled = true;
+    private Duration initialDelay = Duration.ofMinutes(1);
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * Number of resources removed at once, their files are deleted with a single request per bucket, at most 1000.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Number of storages whose resources are removed at the same time.
+     */
+    private int concurrency = 2;
+
+    /**
+     * Pause between two batches of a storage, so that a large deletion does not compete with regular traffic.
+     */
+    private Duration batchDelay = Duration.ofMillis(500);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Duration getInitialDelay() {
+      return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+      this.initialDelay = initialDelay;
+    }
+
+    public Duration getInterval() {
+      return interval;
+    }
+
+    public void setInterval(Duration interval) {
+      this.interval = interval;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+    }
+
+    public Duration getBatchDelay() {
+      return batchDelay;
+    }
+
+    public void setBatchDelay(Duration batchDelay) {
+      this.batchDelay = batchDelay;
+    }
+  }
+}
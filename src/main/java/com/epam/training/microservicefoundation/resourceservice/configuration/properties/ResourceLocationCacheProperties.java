@@ -0,0 +1,46 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = ResourceLocationCacheProperties.PREFIX)
+public class ResourceLocationCacheProperties {
+  public static final String PREFIX = "resource.location-cache";
+  /**
+   * Whether resources and their storages are kept in memory after they have been looked up.
+   */
+  private boolean enabled = true;
+  /**
+   * Number of resources kept, the least used ones are evicted first.
+   */
+  private long maxSize = 100_000;
+  /**
+   * How long a resource is kept, it bounds how long an instance may see a resource deleted or moved by another instance. Reads of a
+   * cached resource do not query the database, a short expiry still spares most of the lookups of files read often.
+   */
+  private Duration expiry = Duration.ofSeconds(30);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public Duration getExpiry() {
+    return expiry;
+  }
+
+  public void setExpiry(Duration expiry) {
+    this.expiry = expiry;
+  }
+}
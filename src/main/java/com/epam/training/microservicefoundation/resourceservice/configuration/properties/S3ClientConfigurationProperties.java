@@ -1,6 +1,8 @@
 package com.epam.training.microservicefoundation.resourceservice.configuration.properties;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import software.amazon.awssdk.regions.Region;
 
@@ -15,7 +17,16 @@ public class S3ClientConfigurationProperties {
    * AWS S3 requires that file parts must have at least 5MB, except for the last part. This may change for other S3-compatible services,
    * so let't define a configuration property for that.
    */
-  private final int multipartMinPartSize = 5 * 1024 * 1024;
+  private int multipartMinPartSize = 5 * 1024 * 1024;
+  private long multipartMaxPartSize = 5L * 1024 * 1024 * 1024;
+  private int multipartMaxParts = 10_000;
+
+  private final Upload upload = new Upload();
+  private final Sweeper sweeper = new Sweeper();
+  private final FileCache fileCache = new FileCache();
+  private final MemoryCache memoryCache = new MemoryCache();
+  private final Download download = new Download();
+  private final Placement placement = new Placement();
 
   public Region getRegion() {
     return region;
@@ -44,4 +55,494 @@ public class S3ClientConfigurationProperties {
   public int getMultipartMinPartSize() {
     return multipartMinPartSize;
   }
+
+  public void setMultipartMinPartSize(int multipartMinPartSize) {
+    this.multipartMinPartSize = multipartMinPartSize;
+  }
+
+  public long getMultipartMaxPartSize() {
+    return multipartMaxPartSize;
+  }
+
+  public void setMultipartMaxPartSize(long multipartMaxPartSize) {
+    this.multipartMaxPartSize = multipartMaxPartSize;
+  }
+
+  public int getMultipartMaxParts() {
+    return multipartMaxParts;
+  }
+
+  public void setMultipartMaxParts(int multipartMaxParts) {
+    this.multipartMaxParts = multipartMaxParts;
+  }
+
+  public Upload getUpload() {
+    return upload;
+  }
+
+  public Sweeper getSweeper() {
+    return sweeper;
+  }
+
+  public FileCache getFileCache() {
+    return fileCache;
+  }
+
+  public MemoryCache getMemoryCache() {
+    return memoryCache;
+  }
+
+  public Download getDownload() {
+    return download;
+  }
+
+  public Placement getPlacement() {
+    return placement;
+  }
+
+  public static class Upload {
+    /**
+     * Maximum number of parts of a single multipart upload that are read from the file part and sent to the storage at the same time.
+     */
+    private int partConcurrency = 4;
+
+    /**
+     * Files smaller than this size are stored with a single put object request instead of a multipart upload, zero or a negative value
+     * always uses multipart uploads. The first part is buffered before the upload is chosen, so the effective threshold is the larger
+     * of this size and the first part size, e.g. a file smaller than the default part size of 8 MiB is stored with a single request.
+     */
+    private int multipartThreshold = 5 * 1024 * 1024;
+
+    /**
+     * Preferred part size. It grows when the content length would need more parts than the storage allows.
+     */
+    private long partSize = 8 * 1024 * 1024;
+
+    /**
+     * Number of parts after which the part size doubles when the content length is not known in advance.
+     */
+    private int partSizeGrowthInterval = 1000;
+
+    /**
+     * Whether CRC32C checksums are computed while the content streams to the storage and are validated by it. Some S3-compatible
+     * services do not support additional checksums.
+     */
+    private boolean checksumEnabled = true;
+
+    /**
+     * Maximum number of bytes held in upload part buffers by all uploads of the instance together.
+     */
+    private long memoryBudget = 256L * 1024 * 1024;
+
+    /**
+     * How long a part waits for the memory budget before its upload is rejected as the instance is overloaded.
+     */
+    private Duration memoryBudgetMaxWait = Duration.ofSeconds(10);
+
+    /**
+     * Delay suggested to clients whose upload has been rejected for the memory budget.
+     */
+    private Duration memoryBudgetRetryAfter = Duration.ofSeconds(5);
+
+    /**
+     * Maximum number of files of a batch upload request.
+     */
+    private int batchMaxFiles = 100;
+
+    /**
+     * Number of files of a batch upload that are stored at the same time. Files are read from the request one after another, a file
+     * whose content has been read is completed in the storage while the next ones are being read.
+     */
+    private int batchConcurrency = 4;
+
+    /**
+     * Stored files of a batch upload are saved and published in groups of up to this size, or of the files stored within the window.
+     */
+    private int batchSize = 20;
+    private Duration batchWindow = Duration.ofMillis(500);
+
+    /**
+     * Validity of the part upload URLs handed to clients uploading directly to the storage.
+     */
+    private Duration presignedUrlExpiry = Duration.ofHours(1);
+
+    public int getPartConcurrency() {
+      return partConcurrency;
+    }
+
+    public void setPartConcurrency(int partConcurrency) {
+      this.partConcurrency = partConcurrency;
+    }
+
+    public int getMultipartThreshold() {
+      return multipartThreshold;
+    }
+
+    public void setMultipartThreshold(int multipartThreshold) {
+      this.multipartThreshold = multipartThreshold;
+    }
+
+    public long getPartSize() {
+      return partSize;
+    }
+
+    public void setPartSize(long partSize) {
+      this.partSize = partSize;
+    }
+
+    public int getPartSizeGrowthInterval() {
+      return partSizeGrowthInterval;
+    }
+
+    public void setPartSizeGrowthInterval(int partSizeGrowthInterval) {
+      this.partSizeGrowthInterval = partSizeGrowthInterval;
+    }
+
+    public boolean isChecksumEnabled() {
+      return checksumEnabled;
+    }
+
+    public void setChecksumEnabled(boolean checksumEnabled) {
+      this.checksumEnabled = checksumEnabled;
+    }
+
+    public long getMemoryBudget() {
+      return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+      this.memoryBudget = memoryBudget;
+    }
+
+    public Duration getMemoryBudgetMaxWait() {
+      return memoryBudgetMaxWait;
+    }
+
+    public void setMemoryBudgetMaxWait(Duration memoryBudgetMaxWait) {
+      this.memoryBudgetMaxWait = memoryBudgetMaxWait;
+    }
+
+    public Duration getMemoryBudgetRetryAfter() {
+      return memoryBudgetRetryAfter;
+    }
+
+    public void setMemoryBudgetRetryAfter(Duration memoryBudgetRetryAfter) {
+      this.memoryBudgetRetryAfter = memoryBudgetRetryAfter;
+    }
+
+    public int getBatchMaxFiles() {
+      return batchMaxFiles;
+    }
+
+    public void setBatchMaxFiles(int batchMaxFiles) {
+      this.batchMaxFiles = batchMaxFiles;
+    }
+
+    public int getBatchConcurrency() {
+      return batchConcurrency;
+    }
+
+    public void setBatchConcurrency(int batchConcurrency) {
+      this.batchConcurrency = batchConcurrency;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public Duration getBatchWindow() {
+      return batchWindow;
+    }
+
+    public void setBatchWindow(Duration batchWindow) {
+      this.batchWindow = batchWindow;
+    }
+
+    public Duration getPresignedUrlExpiry() {
+      return presignedUrlExpiry;
+    }
+
+    public void setPresignedUrlExpiry(Duration presignedUrlExpiry) {
+      this.presignedUrlExpiry = presignedUrlExpiry;
+    }
+  }
+
+  public static class Sweeper {
+    /**
+     * Whether multipart uploads that were never completed nor aborted are looked up and aborted periodically.
+     */
+    private boolean enabled = true;
+    private Duration initialDelay = Duration.ofMinutes(5);
+    private Duration interval = Duration.ofHours(1);
+
+    /**
+     * Uploads initiated earlier than this are considered orphaned. It must be longer than the longest expected upload.
+     */
+    private Duration maxAge = Duration.ofHours(24);
+
+    /**
+     * Pause between two abort requests, so that a large backlog of orphaned uploads does not compete with regular traffic.
+     */
+    private Duration abortDelay = Duration.ofMillis(200);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Duration getInitialDelay() {
+      return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+      this.initialDelay = initialDelay;
+    }
+
+    public Duration getInterval() {
+      return interval;
+    }
+
+    public void setInterval(Duration interval) {
+      this.interval = interval;
+    }
+
+    public Duration getMaxAge() {
+      return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+      this.maxAge = maxAge;
+    }
+
+    public Duration getAbortDelay() {
+      return abortDelay;
+    }
+
+    public void setAbortDelay(Duration abortDelay) {
+      this.abortDelay = abortDelay;
+    }
+  }
+
+  public static class FileCache {
+    /**
+     * Whether downloaded files are kept on the local disk and served from there on later requests. Disabled by default, the disk of an
+     * instance is to be sized for the cache, which is to be given a directory of its own.
+     */
+    private boolean enabled;
+
+    /**
+     * Directory of the cached files. Files left in it by an earlier run are deleted on startup.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "resource-service", "file-cache");
+
+    /**
+     * Bytes the cached files may take on the disk, the least valuable files are evicted beyond it.
+     */
+    private long maxSize = 512L * 1024 * 1024;
+
+    /**
+     * Larger files are always streamed from the storage, so that a single file does not evict most of the cache.
+     */
+    private long maxObjectSize = 64L * 1024 * 1024;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+      return directory;
+    }
+
+    public void setDirectory(Path directory) {
+      this.directory = directory;
+    }
+
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public long getMaxObjectSize() {
+      return maxObjectSize;
+    }
+
+    public void setMaxObjectSize(long maxObjectSize) {
+      this.maxObjectSize = maxObjectSize;
+    }
+  }
+
+  public static class MemoryCache {
+    /**
+     * Whether small files are kept in memory outside of the heap and served from there on later requests.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Bytes the cached files may take in direct memory. It must fit into the direct memory limit of the JVM along with the buffers of
+     * the server and the storage client.
+     */
+    private long maxSize = 64L * 1024 * 1024;
+
+    /**
+     * Larger files are served from the file cache or the storage.
+     */
+    private int maxObjectSize = 256 * 1024;
+
+    /**
+     * Time a file is served from memory without looking up its resource, a resource deleted on another instance may be served as long.
+     * A file read often is downloaded again once per expiry.
+     */
+    private Duration expiry = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public int getMaxObjectSize() {
+      return maxObjectSize;
+    }
+
+    public void setMaxObjectSize(int maxObjectSize) {
+      this.maxObjectSize = maxObjectSize;
+    }
+
+    public Duration getExpiry() {
+      return expiry;
+    }
+
+    public void setExpiry(Duration expiry) {
+      this.expiry = expiry;
+    }
+  }
+
+  public static class Download {
+    /**
+     * Files of this size or larger are downloaded by the client directly from the storage, through a redirect to a presigned URL.
+     * Zero redirects only the requests asking for it.
+     */
+    private long redirectThreshold;
+
+    /**
+     * Time a presigned download URL is valid for. A client has to start the download within it.
+     */
+    private Duration presignedUrlExpiry = Duration.ofMinutes(5);
+
+    /**
+     * Bytes of a download held for the requests reading the same file at the same time. A request starting after the beginning of the
+     * file has left it, or falling further behind, reads the file on its own. Zero turns the sharing of downloads off.
+     */
+    private long coalescingWindow = 4L * 1024 * 1024;
+
+    /**
+     * Time a shared download whose content nobody has started to read is kept for the requests reading it. It is cancelled then, so
+     * that it does not hold a connection to the storage.
+     */
+    private Duration coalescingIdleTimeout = Duration.ofSeconds(10);
+
+    public long getRedirectThreshold() {
+      return redirectThreshold;
+    }
+
+    public void setRedirectThreshold(long redirectThreshold) {
+      this.redirectThreshold = redirectThreshold;
+    }
+
+    public Duration getPresignedUrlExpiry() {
+      return presignedUrlExpiry;
+    }
+
+    public void setPresignedUrlExpiry(Duration presignedUrlExpiry) {
+      this.presignedUrlExpiry = presignedUrlExpiry;
+    }
+
+    public long getCoalescingWindow() {
+      return coalescingWindow;
+    }
+
+    public void setCoalescingWindow(long coalescingWindow) {
+      this.coalescingWindow = coalescingWindow;
+    }
+
+    public Duration getCoalescingIdleTimeout() {
+      return coalescingIdleTimeout;
+    }
+
+    public void setCoalescingIdleTimeout(Duration coalescingIdleTimeout) {
+      this.coalescingIdleTimeout = coalescingIdleTimeout;
+    }
+  }
+
+  public static class Placement {
+    /**
+     * How the storage of a new file is chosen among the storages of its type.
+     */
+    private Strategy strategy = Strategy.POWER_OF_TWO_CHOICES;
+
+    /**
+     * Time over which the latency and the error rate measured for a bucket fade. A bucket left aside for a while looks healthy again,
+     * so that it gets a few files to tell whether it has recovered.
+     */
+    private Duration decay = Duration.ofSeconds(30);
+
+    /**
+     * How much a failing bucket is penalized, a bucket failing every request looks this many times slower than a healthy one.
+     */
+    private double errorPenalty = 10;
+
+    public Strategy getStrategy() {
+      return strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+      this.strategy = strategy;
+    }
+
+    public Duration getDecay() {
+      return decay;
+    }
+
+    public void setDecay(Duration decay) {
+      this.decay = decay;
+    }
+
+    public double getErrorPenalty() {
+      return errorPenalty;
+    }
+
+    public void setErrorPenalty(double errorPenalty) {
+      this.errorPenalty = errorPenalty;
+    }
+
+    public enum Strategy {
+      RANDOM,
+      // the less loaded of two storages picked at random
+      POWER_OF_TWO_CHOICES
+    }
+  }
 }
@@ -0,0 +1,46 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = StorageCacheProperties.PREFIX)
+public class StorageCacheProperties {
+  public static final String PREFIX = "resource.storage-cache";
+  /**
+   * Age after which a storage is looked up again on its next use, the cached one is served until the new one arrives.
+   */
+  private Duration refreshAfter = Duration.ofMinutes(1);
+  /**
+   * Age after which a storage that has not been looked up again is dropped, it bounds how long a storage removed from the storage
+   * service is used.
+   */
+  private Duration expiry = Duration.ofHours(1);
+  /**
+   * Number of storages kept by id.
+   */
+  private long maxSize = 1_000;
+
+  public Duration getRefreshAfter() {
+    return refreshAfter;
+  }
+
+  public void setRefreshAfter(Duration refreshAfter) {
+    this.refreshAfter = refreshAfter;
+  }
+
+  public Duration getExpiry() {
+    return expiry;
+  }
+
+  public void setExpiry(Duration expiry) {
+    this.expiry = expiry;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+  }
+}
@@ -0,0 +1,73 @@
+package com.epam.training.microservicefoundation.resourceservice.configuration.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = WarmUpProperties.PREFIX)
+public class WarmUpProperties {
+  public static final String PREFIX = "resource.warm-up";
+  /**
+   * Whether the instance is warmed up after a start before it is reported as up, otherwise it is reported as up right away.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Number of connections opened to the database and to every bucket.
+   */
+  private int connections = 4;
+
+  /**
+   * Number of synthetic passes through the upload pipeline, enough for its hot methods to get compiled.
+   */
+  private int passes = 2000;
+
+  /**
+   * Size of the part assembled by a synthetic pass.
+   */
+  private int partSize = 65536;
+
+  /**
+   * Time after which the instance is reported as up even though the warm-up has not completed.
+   */
+  private Duration timeout = Duration.ofMinutes(1);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getConnections() {
+    return connections;
+  }
+
+  public void setConnections(int connections) {
+    this.connections = connections;
+  }
+
+  public int getPasses() {
+    return passes;
+  }
+
+  public void setPasses(int passes) {
+    this.passes = passes;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public void setPartSize(int partSize) {
+    this.partSize = partSize;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+}
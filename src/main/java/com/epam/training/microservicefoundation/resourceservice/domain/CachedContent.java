@@ -0,0 +1,28 @@
+package com.epam.training.microservicefoundation.resourceservice.domain;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import java.nio.ByteBuffer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The content of a small file held in direct memory, along with the metadata its responses are made of.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CachedContent {
+  private final GetResourceMetadataDTO metadata;
+  private final String contentType;
+  private final String filename;
+  @ToString.Exclude
+  private final ByteBuffer content;
+
+  /**
+   * A view of the content with a position of its own, the content is not copied.
+   */
+  public ByteBuffer getContent() {
+    return content.duplicate();
+  }
+}
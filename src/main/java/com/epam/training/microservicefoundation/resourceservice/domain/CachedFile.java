@@ -0,0 +1,50 @@
+package com.epam.training.microservicefoundation.resourceservice.domain;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A stored file kept on the local disk, along with the response headers it was downloaded with. The file is referred to by the cache as
+ * long as it is cached and by every request sending it, it is deleted once the last reference has been released.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CachedFile {
+  private final Path path;
+  private final long contentLength;
+  private final String contentType;
+  private final String eTag;
+  private final Instant lastModified;
+  private final Map<String, String> metadata;
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  /**
+   * Takes a reference to the file for a request sending it. False when the file has been released already, it may be deleted.
+   */
+  public boolean retain() {
+    int count;
+    do {
+      count = references.get();
+      if (count == 0) {
+        return false;
+      }
+    } while (!references.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  /**
+   * Releases a reference to the file, true for the last one, the file is not read anymore then.
+   */
+  public boolean release() {
+    return references.decrementAndGet() == 0;
+  }
+}
@@ -25,4 +25,9 @@ public class ResourceFile {
   }
   private String key;
   private String filename;
+  private String contentHash;
+  private String checksum;
+  private String etag;
+  private String contentType;
+  private long contentLength;
 }
@@ -0,0 +1,116 @@
+package com.epam.training.microservicefoundation.resourceservice.domain;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+/**
+ * A multipart upload part made of the data buffers read from the file part. The buffers are not copied into a single array, the part
+ * is exposed as a sequence of views over them and the buffers are released once the part is no longer needed.
+ */
+public class UploadPartBuffer {
+  private final List<DataBuffer> buffers;
+  private final long size;
+  private final int checksum;
+  private final Runnable onRelease;
+  // subscriptions to the content which have not terminated yet, the buffers are not released under them
+  private final AtomicInteger readers = new AtomicInteger();
+  private volatile boolean releaseRequested;
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  /**
+   * Computes the CRC32C checksum of the part and feeds the content digest in the same pass over the buffers, while they are still
+   * hot in the cache after being read from the file part. The given callback, e.g. giving back a reservation of the memory budget, is
+   * run when the buffers are released.
+   */
+  public UploadPartBuffer(List<DataBuffer> buffers, MessageDigest contentDigest, Runnable onRelease) {
+    final CRC32C crc = new CRC32C();
+    long bytes = 0;
+    for (DataBuffer buffer : buffers) {
+      try (DataBuffer.ByteBufferIterator views = buffer.readableByteBuffers()) {
+        views.forEachRemaining(view -> {
+          crc.update(view.duplicate());
+          if (contentDigest != null) {
+            contentDigest.update(view);
+          }
+        });
+      }
+      bytes += buffer.readableByteCount();
+    }
+    this.buffers = buffers;
+    this.size = bytes;
+    this.checksum = (int) crc.getValue();
+    this.onRelease = onRelease;
+  }
+
+  /**
+   * A part whose content is not digested, e.g. a part of a file uploaded over several requests.
+   */
+  public UploadPartBuffer(List<DataBuffer> buffers, Runnable onRelease) {
+    this(buffers, null, onRelease);
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public int chunks() {
+    return buffers.size();
+  }
+
+  /**
+   * Base64 encoded big-endian CRC32C checksum of the part, as expected by the storage.
+   */
+  public String checksum() {
+    return encodeChecksum(checksum);
+  }
+
+  public static String encodeChecksum(int checksum) {
+    return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt(checksum).array());
+  }
+
+  /**
+   * New views are created for every subscriber, so a retried request reads the part from the beginning again. The buffers are kept
+   * until every subscriber has completed or cancelled.
+   */
+  public Flux<ByteBuffer> content() {
+    return Flux.defer(() -> {
+      readers.incrementAndGet();
+      return Flux.fromIterable(buffers)
+          .concatMap(buffer -> Flux.using(buffer::readableByteBuffers, views -> Flux.fromIterable(() -> views),
+              DataBuffer.ByteBufferIterator::close))
+          .doFinally(signal -> {
+            if (readers.decrementAndGet() == 0 && releaseRequested) {
+              releaseBuffers();
+            }
+          });
+    });
+  }
+
+  /**
+   * Releases the buffers once the part is no longer needed, e.g. when its request has completed. A content still being read by the
+   * storage client, which may go on after the request has been cancelled, releases them when it terminates.
+   */
+  public void release() {
+    releaseRequested = true;
+    if (readers.get() == 0) {
+      releaseBuffers();
+    }
+  }
+
+  private void releaseBuffers() {
+    if (released.compareAndSet(false, true)) {
+      buffers.forEach(DataBufferUtils::release);
+      if (onRelease != null) {
+        onRelease.run();
+      }
+    }
+  }
+}
@@ -1,7 +1,13 @@
 package com.epam.training.microservicefoundation.resourceservice.domain;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 
 public class UploadState {
@@ -9,12 +15,60 @@ public class UploadState {
   public final String filekey;
 
   public String uploadId;
-  public int partCounter;
-  public Map<Integer, CompletedPart> completedParts = new HashMap<>();
-  public int buffered = 0;
+  public long buffered = 0;
+  public int assembledParts = 0;
+  public int reservedParts = 0;
+  public long contentLength = 0;
+  public String eTag;
+
+  private final AtomicInteger partCounter = new AtomicInteger();
+  // callbacks giving back the memory reserved for parts not assembled yet
+  private final Queue<Runnable> reservations = new ConcurrentLinkedQueue<>();
+  // parts complete on whichever thread the storage client answers on, S3 expects them in ascending part number order
+  private final ConcurrentNavigableMap<Integer, CompletedPart> completedParts = new ConcurrentSkipListMap<>();
 
   public UploadState(String bucket, String filekey) {
     this.bucket = bucket;
     this.filekey = filekey;
   }
+
+  public int nextPartNumber() {
+    return partCounter.incrementAndGet();
+  }
+
+  public int getPartCounter() {
+    return partCounter.get();
+  }
+
+  public void addReservation(Runnable release) {
+    reservations.add(release);
+  }
+
+  public Runnable pollReservation() {
+    return reservations.poll();
+  }
+
+  public void releaseReservations() {
+    Runnable release;
+    while ((release = reservations.poll()) != null) {
+      release.run();
+    }
+  }
+
+  public void addCompletedPart(CompletedPart completedPart) {
+    completedParts.put(completedPart.partNumber(), completedPart);
+  }
+
+  public Collection<CompletedPart> getCompletedParts() {
+    return completedParts.values();
+  }
+
+  /**
+   * The checksum of a multipart upload is the CRC32C checksum of the concatenated part checksums followed by the number of parts.
+   */
+  public String getCompositeChecksum() {
+    final CRC32C crc = new CRC32C();
+    completedParts.values().forEach(part -> crc.update(Base64.getDecoder().decode(part.checksumCRC32C())));
+    return UploadPartBuffer.encodeChecksum((int) crc.getValue()) + "-" + completedParts.size();
+  }
 }
@@ -16,4 +16,6 @@ public class ResourceStagingContext {
   private FilePart filePart;
   private GetStorageDTO storage;
   private Resource resource;
+  private boolean duplicate;
+  private String uploadedKey;
 }
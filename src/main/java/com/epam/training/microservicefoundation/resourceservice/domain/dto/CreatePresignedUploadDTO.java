@@ -0,0 +1,16 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreatePresignedUploadDTO implements Serializable {
+  private static final long serialVersionUID = 2024_04_22_09_11L;
+  private String filename;
+  private String contentType;
+  private long contentLength;
+}
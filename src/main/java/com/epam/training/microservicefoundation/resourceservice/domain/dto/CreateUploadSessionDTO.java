@@ -0,0 +1,15 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateUploadSessionDTO implements Serializable {
+  private static final long serialVersionUID = 2024_03_18_10_20L;
+  private String filename;
+  private String contentType;
+}
@@ -4,9 +4,21 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * Outcome of deleting one resource, the reason is given when its file could not be deleted and the resource has been kept.
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class DeleteResourceDTO {
   private long id;
+  private String error;
+
+  public DeleteResourceDTO(long id) {
+    this.id = id;
+  }
+
+  public static DeleteResourceDTO failed(long id, String error) {
+    return new DeleteResourceDTO(id, error);
+  }
 }
@@ -0,0 +1,19 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetPresignedUploadDTO implements Serializable {
+  private static final long serialVersionUID = 2024_04_22_09_12L;
+  private long id;
+  private String name;
+  private String contentType;
+  private long contentLength;
+  private List<GetPresignedPartDTO> parts;
+}
@@ -0,0 +1,23 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetResourceMetadataDTO implements Serializable {
+  private static final long serialVersionUID = 2024_05_06_11_40L;
+  private long id;
+  private String name;
+  private String etag;
+  private String contentType;
+  private Long contentLength;
+  private Instant lastModified;
+  // where the file is stored, a request reads the file without looking its resource up again
+  private String key;
+  private String bucket;
+}
@@ -0,0 +1,17 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetUploadPartDTO implements Serializable {
+  private static final long serialVersionUID = 2024_03_18_10_22L;
+  private int partNumber;
+  private String etag;
+  private String checksum;
+  private long size;
+}
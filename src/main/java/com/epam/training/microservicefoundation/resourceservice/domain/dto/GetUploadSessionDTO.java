@@ -0,0 +1,18 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetUploadSessionDTO implements Serializable {
+  private static final long serialVersionUID = 2024_03_18_10_21L;
+  private long id;
+  private String name;
+  private String contentType;
+  private List<GetUploadPartDTO> parts;
+}
@@ -0,0 +1,25 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of storing one file of a batch upload, either the id of the saved resource or the reason it has not been saved.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaveResourceResultDTO {
+  private String name;
+  private Long id;
+  private String error;
+
+  public static SaveResourceResultDTO saved(String name, long id) {
+    return new SaveResourceResultDTO(name, id, null);
+  }
+
+  public static SaveResourceResultDTO failed(String name, String error) {
+    return new SaveResourceResultDTO(name, null, error);
+  }
+}
@@ -24,6 +24,12 @@ public class Resource implements Serializable {
   private String name;
   private ResourceStatus status;
   private long storageId;
+  private String contentHash;
+  private String checksum;
+  // entity tag and content headers given to the file when it was uploaded, they stay valid as the content never changes
+  private String etag;
+  private String contentType;
+  private Long contentLength;
   @CreatedDate
   private LocalDateTime createdDate;
   @LastModifiedDate
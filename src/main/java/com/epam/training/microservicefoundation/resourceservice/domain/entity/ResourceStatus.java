@@ -2,5 +2,7 @@ package com.epam.training.microservicefoundation.resourceservice.domain.entity;
 
 public enum ResourceStatus {
   STAGED,
-  PROCESSED
+  PROCESSED,
+  // deleted by the client, the stored file and the row are removed in the background
+  DELETING
 }
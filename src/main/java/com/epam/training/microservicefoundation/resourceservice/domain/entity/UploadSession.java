@@ -0,0 +1,34 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+@Table("UPLOAD_SESSIONS")
+public class UploadSession implements Serializable {
+  public static final long serialVersionUID = 2024_03_18_10_15L;
+  @Id
+  private long id;
+  private String uploadId;
+  private String key;
+  private String name;
+  private String contentType;
+  // declared by clients uploading the parts directly to the storage
+  private Long contentLength;
+  private long storageId;
+  @CreatedDate
+  private LocalDateTime createdDate;
+  @LastModifiedDate
+  private LocalDateTime lastModifiedDate;
+}
@@ -0,0 +1,29 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+@Table("UPLOAD_SESSION_PARTS")
+public class UploadSessionPart implements Serializable {
+  public static final long serialVersionUID = 2024_03_18_10_16L;
+  @Id
+  private long id;
+  private long sessionId;
+  private int partNumber;
+  private String etag;
+  private String checksum;
+  private long size;
+  @CreatedDate
+  private LocalDateTime createdDate;
+}
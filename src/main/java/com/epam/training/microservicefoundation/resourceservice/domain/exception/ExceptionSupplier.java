@@ -2,6 +2,7 @@ package com.epam.training.microservicefoundation.resourceservice.domain.exceptio
 
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.web.validator.QueryParamValidationErrors;
+import java.time.Duration;
 import java.util.function.Supplier;
 import software.amazon.awssdk.core.SdkResponse;
 
@@ -32,6 +33,20 @@ public class ExceptionSupplier {
     return () -> new IllegalArgumentException(String.format("Request has come with invalid %s data", entityClass.getSimpleName()));
   }
 
+  public static Supplier<UploadCapacityExceededException> uploadCapacityExceeded(Duration retryAfter) {
+    return () -> new UploadCapacityExceededException("Upload capacity of the instance is exhausted, retry later", retryAfter);
+  }
+
+  public static Supplier<RangeNotSatisfiableException> rangeNotSatisfiable(long contentLength) {
+    return () -> new RangeNotSatisfiableException(String.format("Requested range is not satisfiable for content of %d bytes",
+        contentLength), contentLength);
+  }
+
+  public static Supplier<IllegalStateException> checksumMismatch(String key, String expected, String actual) {
+    return () -> new IllegalStateException(String.format("Checksum '%s' of stored object '%s' does not match checksum '%s' of its content",
+        actual, key, expected));
+  }
+
   public static Supplier<IllegalStateException> retryExhausted(Throwable error) {
     return () -> new IllegalStateException("Request retries have got exhausted", error);
   }
@@ -0,0 +1,14 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.exception;
+
+public final class RangeNotSatisfiableException extends RuntimeException {
+  private final long contentLength;
+
+  public RangeNotSatisfiableException(String message, long contentLength) {
+    super(message);
+    this.contentLength = contentLength;
+  }
+
+  public long getContentLength() {
+    return contentLength;
+  }
+}
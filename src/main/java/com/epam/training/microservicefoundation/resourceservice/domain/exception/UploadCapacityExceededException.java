@@ -0,0 +1,16 @@
+package com.epam.training.microservicefoundation.resourceservice.domain.exception;
+
+import java.time.Duration;
+
+public final class UploadCapacityExceededException extends RuntimeException {
+  private final Duration retryAfter;
+
+  public UploadCapacityExceededException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
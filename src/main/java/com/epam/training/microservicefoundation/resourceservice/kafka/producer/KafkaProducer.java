@@ -3,7 +3,9 @@ package com.epam.training.microservicefoundation.resourceservice.kafka.producer;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
@@ -11,7 +13,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.util.Pair;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import org.springframework.kafka.support.micrometer.KafkaRecordSenderContext;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.kafka.sender.SenderRecord;
 import reactor.kafka.sender.SenderResult;
 
 public class KafkaProducer {
@@ -40,4 +44,22 @@ public class KafkaProducer {
     }
     return Mono.error(new IllegalStateException("There is no a kafka topic for this message type: " + message.getClass()));
   }
+
+  /**
+   * Sends the messages through a single sender subscription, so that the producer batches them instead of sending them one by one.
+   */
+  public Flux<SenderResult<Void>> publishAll(List<?> messages) {
+    final Optional<?> unknownMessage = messages.stream().filter(message -> !publicationTopics.containsKey(message.getClass())).findFirst();
+    if (unknownMessage.isPresent()) {
+      return Flux.error(new IllegalStateException("There is no a kafka topic for this message type: " + unknownMessage.get().getClass()));
+    }
+    return Flux.deferContextual(contextView -> {
+      log.info("Publishing {} messages to kafka", messages.size());
+      final Observation observation = Observation.createNotStarted("kafka producer", registry)
+          .parentObservation(contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null));
+      return observation.observe(() -> kafkaTemplate.send(Flux.fromIterable(messages)
+          .map(message -> SenderRecord.<String, Object, Void>create(publicationTopics.get(message.getClass()).getSecond().apply(message),
+              null))));
+    });
+  }
 }
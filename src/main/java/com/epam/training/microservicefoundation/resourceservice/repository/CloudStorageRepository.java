@@ -2,23 +2,38 @@ package com.epam.training.microservicefoundation.resourceservice.repository;
 
 import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
 import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
+import com.epam.training.microservicefoundation.resourceservice.domain.UploadPartBuffer;
 import com.epam.training.microservicefoundation.resourceservice.domain.UploadState;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetPresignedPartDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
-import java.nio.ByteBuffer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.SdkResponse;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
@@ -26,28 +41,62 @@ import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.async.ResponsePublisher;
 import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
-import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
 
 public class CloudStorageRepository {
   private static final Logger log = LoggerFactory.getLogger(CloudStorageRepository.class);
+  // the most keys a single DeleteObjects request takes
+  private static final int DELETE_OBJECTS_MAX_KEYS = 1000;
   private final S3ClientConfigurationProperties properties;
   private final S3AsyncClient s3Client;
+  private final S3Presigner s3Presigner;
+  private final PartSizePlanner partSizePlanner;
+  private final UploadMemoryBudget memoryBudget;
+  private final DownloadCoalescer downloadCoalescer;
+  private final StorageLoadTracker storageLoadTracker;
 
   @Autowired
-  public CloudStorageRepository(S3ClientConfigurationProperties properties, S3AsyncClient s3Client) {
+  public CloudStorageRepository(S3ClientConfigurationProperties properties, S3AsyncClient s3Client, S3Presigner s3Presigner,
+      PartSizePlanner partSizePlanner, UploadMemoryBudget memoryBudget, StorageLoadTracker storageLoadTracker) {
     this.properties = properties;
     this.s3Client = s3Client;
+    this.s3Presigner = s3Presigner;
+    this.partSizePlanner = partSizePlanner;
+    this.memoryBudget = memoryBudget;
+    this.downloadCoalescer = new DownloadCoalescer(properties.getDownload().getCoalescingWindow(),
+        properties.getDownload().getCoalescingIdleTimeout());
+    this.storageLoadTracker = storageLoadTracker;
   }
 
   public Mono<ResourceFile> upload(ResourceFile file) {
@@ -69,118 +118,464 @@ public class CloudStorageRepository {
     final String key = file.getStorage().getPath() + rawKey;
     final String bucket = file.getStorage().getBucket();
     final UploadState uploadState = new UploadState(bucket, key);
-    CompletableFuture<CreateMultipartUploadResponse> uploadRequest =
-        s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
-            .contentType(mediaType.toString())
-            .key(key)
-            .metadata(metadata)
-            .bucket(bucket)
-            .build());
+    final long declaredLength = filePart.headers().getContentLength();
+    final PartSizePlanner.Plan plan = partSizePlanner.plan(declaredLength);
+    // the first part is buffered up to the threshold or the planned part size, whichever is larger, a file ending within it is stored
+    // with a single request
+    final long firstPartSize = Math.max(this.properties.getUpload().getMultipartThreshold(), plan.partSize(1));
+    final MessageDigest contentDigest = contentDigest();
 
     log.info("SaveFile: filekey={}, filename={}", key, filename);
 
-    return Mono.fromFuture(uploadRequest)
-        .flatMapMany(response -> {
-          checkResult(response);
-          uploadState.uploadId = response.uploadId();
-          return filePart.content();
-        })
+    return filePart.content()
+        // one buffer at a time, a part does not start to be assembled until its size has been reserved
+        .concatMap(buffer -> reservePart(uploadState, reservedSize(uploadState, partSize(uploadState, plan, firstPartSize),
+            declaredLength, buffer), buffer), 1)
         .bufferUntil(buffer -> {
           uploadState.buffered += buffer.readableByteCount();
-          if (uploadState.buffered >= this.properties.getMultipartMinPartSize()) {
+          uploadState.contentLength += buffer.readableByteCount();
+          storageLoadTracker.addInFlight(bucket, buffer.readableByteCount());
+          if (uploadState.buffered >= partSize(uploadState, plan, firstPartSize)) {
             log.debug("BufferUntil: returning true, bufferedBytes={}, partCounter={}, uploadId={}", uploadState.buffered,
-                uploadState.partCounter, uploadState.uploadId);
+                uploadState.getPartCounter(), uploadState.uploadId);
 
             uploadState.buffered = 0;
+            uploadState.assembledParts++;
             return true;
           }
           return false;
         })
-        .map(CloudStorageRepository::concatBuffers)
-        .flatMap(buffer -> uploadPart(uploadState, buffer))
-        .onBackpressureBuffer()
+        .map(buffers -> new UploadPartBuffer(buffers, contentDigest, uploadState.pollReservation()))
+        .<String>switchOnFirst((signal, parts) -> {
+          if (signal.isOnError()) {
+            return Mono.error(signal.getThrowable());
+          }
+          if (!signal.hasValue()) {
+            return putObject(uploadState, mediaType, metadata, new UploadPartBuffer(List.of(), contentDigest, null));
+          }
+          if (this.properties.getUpload().getMultipartThreshold() > 0 && signal.get().size() < firstPartSize) {
+            return putObject(uploadState, mediaType, metadata, signal.get());
+          }
+          return multipartUpload(uploadState, mediaType, metadata, parts);
+        })
+        // buffers and parts dropped on error or cancellation before reaching the storage client
+        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+        .doOnDiscard(UploadPartBuffer.class, UploadPartBuffer::release)
+        .next()
+        // reservations of parts that have not been assembled, the assembled ones are released with their parts
+        .doFinally(signal -> {
+          uploadState.releaseReservations();
+          storageLoadTracker.removeInFlight(bucket, uploadState.contentLength);
+        })
+        .doOnNext(checksum -> partSizePlanner.uploadCompleted(Math.max(uploadState.getPartCounter(), 1)))
+        .map(checksum -> {
+          log.debug("Saved file '{}' with checksum '{}' to {} bucket ", filename, checksum, bucket);
+          return file.withFilename(filename).withKey(uploadState.filekey)
+              .withContentHash(HexFormat.of().formatHex(contentDigest.digest()))
+              .withChecksum(checksum.isEmpty() ? null : checksum)
+              .withEtag(uploadState.eTag)
+              .withContentType(mediaType.toString())
+              .withContentLength(uploadState.contentLength);
+        });
+  }
+
+  private long partSize(UploadState uploadState, PartSizePlanner.Plan plan, long firstPartSize) {
+    return uploadState.assembledParts == 0 ? firstPartSize : plan.partSize(uploadState.assembledParts + 1);
+  }
+
+  // a part of a file of known size takes no more than the rest of the file, a small file does not reserve a whole first part
+  private long reservedSize(UploadState uploadState, long partSize, long declaredLength, DataBuffer buffer) {
+    if (declaredLength < 0) {
+      return partSize;
+    }
+    return Math.min(partSize, Math.max(declaredLength - uploadState.contentLength, buffer.readableByteCount()));
+  }
+
+  private Mono<DataBuffer> reservePart(UploadState uploadState, long partSize, DataBuffer buffer) {
+    if (uploadState.reservedParts > uploadState.assembledParts) {
+      return Mono.just(buffer);
+    }
+    uploadState.reservedParts++;
+    final AtomicBoolean passed = new AtomicBoolean();
+    return memoryBudget.acquire(partSize)
+        .map(reservation -> {
+          uploadState.addReservation(reservation::release);
+          passed.set(true);
+          return buffer;
+        })
+        .doFinally(signal -> {
+          if (!passed.get()) {
+            DataBufferUtils.release(buffer);
+          }
+        });
+  }
+
+  private MessageDigest contentDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exception) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /**
+   * Returns the checksum of the stored object, or an empty string when checksums are disabled.
+   */
+  private Mono<String> putObject(UploadState uploadState, MediaType mediaType, Map<String, String> metadata, UploadPartBuffer part) {
+    log.info("PutObject: bucket={}, filekey={}, contentLength={}", uploadState.bucket, uploadState.filekey, part.size());
+
+    final String checksum = isChecksumEnabled() ? part.checksum() : null;
+    // the checksum is known before the request is sent, so it goes into a header and the storage rejects the object on mismatch
+    CompletableFuture<PutObjectResponse> request = s3Client.putObject(PutObjectRequest.builder()
+            .bucket(uploadState.bucket)
+            .key(uploadState.filekey)
+            .contentType(mediaType.toString())
+            .metadata(metadata)
+            .contentLength(part.size())
+            .checksumCRC32C(checksum)
+            .build(),
+        AsyncRequestBody.fromPublisher(part.content()));
+
+    // the storage client may still read the body of a cancelled request, the part keeps its buffers until the body terminates
+    request.whenComplete((response, error) -> part.release());
+    return storageLoadTracker.measureTransfer(uploadState.bucket, Mono.fromFuture(request)
+            .flatMap(response -> checkResult(response).thenReturn(response)))
+        .doOnNext(response -> uploadState.eTag = response.eTag())
+        .map(response -> Objects.requireNonNullElse(checksum, ""));
+  }
+
+  private Mono<String> multipartUpload(UploadState uploadState, MediaType mediaType, Map<String, String> metadata,
+      Flux<UploadPartBuffer> parts) {
+    return createMultipartUpload(uploadState.bucket, uploadState.filekey, mediaType, metadata, isChecksumEnabled())
+        .doOnNext(uploadId -> uploadState.uploadId = uploadId)
+        .flatMapMany(uploadId -> parts)
+        // only a window of parts is requested from upstream, so the file part is not read any further until one of them is uploaded
+        .flatMap(part -> uploadPart(uploadState, part), this.properties.getUpload().getPartConcurrency(), 1)
         .reduce(uploadState, (state, completedPart) -> {
           log.debug("Completed: partNumber={}, etag={}", completedPart.partNumber(), completedPart.eTag());
-          state.completedParts.put(completedPart.partNumber(), completedPart);
+          state.addCompletedPart(completedPart);
           return state;
         })
         .flatMap(this::completeUpload)
-        .flatMap(response -> {
-          log.debug("Saving file '{}' result {} to {} bucket ", filename, response, bucket);
-          return checkResult(response).thenReturn(file.withFilename(filename).withKey(uploadState.filekey));
+        // uploaded parts are kept and billed by the storage until the upload is either completed or aborted
+        .onErrorResume(error -> abortUpload(uploadState).then(Mono.error(error)))
+        .doOnCancel(() -> abortUpload(uploadState).subscribe());
+  }
+
+  private Mono<Void> abortUpload(UploadState state) {
+    if (state.uploadId == null) {
+      return Mono.empty();
+    }
+    log.info("AbortUpload: bucket={}, filekey={}, uploadId={}", state.bucket, state.filekey, state.uploadId);
+    return abortMultipartUpload(state.bucket, state.filekey, state.uploadId)
+        .onErrorResume(error -> {
+          log.warn("Aborting upload '{}' of file '{}' failed, it is left to the sweeper", state.uploadId, state.filekey, error);
+          return Mono.empty();
         });
   }
 
-  private Mono<CompletedPart> uploadPart(UploadState uploadState, ByteBuffer buffer) {
-    final int partNumber = ++uploadState.partCounter;
-    log.info("UploadPart: partNumber={}, contentLength={}", partNumber, buffer.capacity());
+  private Mono<CompletedPart> uploadPart(UploadState uploadState, UploadPartBuffer part) {
+    final int partNumber = uploadState.nextPartNumber();
+    log.info("UploadPart: partNumber={}, contentLength={}, chunks={}", partNumber, part.size(), part.chunks());
 
     CompletableFuture<UploadPartResponse> request = s3Client.uploadPart(UploadPartRequest.builder()
             .bucket(uploadState.bucket)
             .key(uploadState.filekey)
             .partNumber(partNumber)
             .uploadId(uploadState.uploadId)
-            .contentLength((long) buffer.capacity())
+            .contentLength(part.size())
+            .checksumCRC32C(isChecksumEnabled() ? part.checksum() : null)
             .build(),
-        AsyncRequestBody.fromPublisher(Mono.just(buffer)));
+        AsyncRequestBody.fromPublisher(part.content()));
+
+    // the storage client may still read the body of a cancelled request, the part keeps its buffers until the body terminates
+    request.whenComplete((response, error) -> part.release());
 
-    return Mono
-        .fromFuture(request)
+    return storageLoadTracker.measureTransfer(uploadState.bucket, Mono.fromFuture(request))
+        .doOnNext(response -> partSizePlanner.partUploaded(part.size()))
         .flatMap(uploadPartResult -> {
           log.debug("UploadPart complete: part={}, etag={}", partNumber, uploadPartResult.eTag());
           return checkResult(uploadPartResult)
               .thenReturn(CompletedPart.builder()
                   .eTag(uploadPartResult.eTag())
                   .partNumber(partNumber)
+                  .checksumCRC32C(isChecksumEnabled() ? part.checksum() : null)
                   .build());
         });
   }
 
-  private Mono<CompleteMultipartUploadResponse> completeUpload(UploadState state) {
-    log.info("CompleteUpload: bucket={}, filekey={}, completedParts.size={}", state.bucket, state.filekey, state.completedParts.size());
-
-    CompletedMultipartUpload multipartUpload = CompletedMultipartUpload.builder()
-        .parts(state.completedParts.values())
-        .build();
-
-    return Mono.fromFuture(s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+  private Mono<String> completeUpload(UploadState state) {
+    if (!isChecksumEnabled()) {
+      return completeMultipartUpload(state.bucket, state.filekey, state.uploadId, state.getCompletedParts())
+          .doOnNext(response -> {
+            state.eTag = response.eTag();
+            // the upload is completed, there is nothing to abort anymore
+            state.uploadId = null;
+          })
+          .thenReturn("");
+    }
+    // the part checksums have already been validated by the storage, they go with the completed parts. The composite checksum is derived
+    // from them without reading the parts and compared with the one the storage has computed for the object
+    final String checksum = state.getCompositeChecksum();
+    log.info("CompleteUpload: bucket={}, filekey={}, checksum={}", state.bucket, state.filekey, checksum);
+    final CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
         .bucket(state.bucket)
         .uploadId(state.uploadId)
-        .multipartUpload(multipartUpload)
+        .multipartUpload(CompletedMultipartUpload.builder().parts(state.getCompletedParts()).build())
         .key(state.filekey)
-        .build()));
+        .build();
+    return storageLoadTracker.measure(state.bucket, Mono.fromFuture(() -> s3Client.completeMultipartUpload(request))
+            .flatMap(response -> checkResult(response).thenReturn(response)))
+        .doOnNext(response -> {
+          state.eTag = response.eTag();
+          // the upload is completed, there is nothing to abort anymore
+          state.uploadId = null;
+        })
+        .flatMap(response -> response.checksumCRC32C() == null || response.checksumCRC32C().equals(checksum) ? Mono.just(checksum) :
+            deleteByKey(state.filekey, state.bucket)
+                .onErrorResume(error -> {
+                  log.warn("Deleting object '{}' of mismatching checksum failed", state.filekey, error);
+                  return Mono.empty();
+                })
+                .then(Mono.<String>error(ExceptionSupplier.checksumMismatch(state.filekey, checksum, response.checksumCRC32C()).get())));
+  }
+
+  /**
+   * Every part of an upload created with checksums has to be sent with its CRC32C checksum.
+   */
+  public Mono<String> createMultipartUpload(String bucket, String key, MediaType mediaType, Map<String, String> metadata,
+      boolean checksum) {
+    log.info("CreateMultipartUpload: bucket={}, filekey={}, checksum={}", bucket, key, checksum);
+    return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+            .contentType(mediaType.toString())
+            .key(key)
+            .metadata(metadata)
+            .bucket(bucket)
+            .checksumAlgorithm(checksum ? ChecksumAlgorithm.CRC32C : null)
+            .build()))
+        .flatMap(response -> checkResult(response).thenReturn(response.uploadId())));
   }
 
-  private static ByteBuffer concatBuffers(List<DataBuffer> buffers) {
-    log.info("Creating BytBuffer from {} chunks", buffers.size());
+  /**
+   * Uploads a part of a file sent over several requests. The part is held in the buffers it is read into until it has been sent, they are
+   * not copied, its size is reserved from the memory budget first. The part goes with its CRC32C checksum to an upload created with
+   * checksums, a part whose content does not have the given length is rejected before it is sent.
+   */
+  public Mono<CompletedPart> uploadPart(String bucket, String key, String uploadId, int partNumber, long contentLength,
+      Flux<DataBuffer> content, boolean checksum) {
+    log.info("UploadPart: filekey={}, uploadId={}, partNumber={}, contentLength={}", key, uploadId, partNumber, contentLength);
+    return memoryBudget.acquire(contentLength)
+        .flatMap(reservation -> content.collectList()
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+            .doOnError(error -> reservation.release())
+            .doOnCancel(reservation::release)
+            .map(buffers -> new UploadPartBuffer(buffers, reservation::release)))
+        .flatMap(part -> {
+          if (part.size() != contentLength) {
+            part.release();
+            return Mono.error(ExceptionSupplier.invalidRequest(UploadPartRequest.class).get());
+          }
+          final String partChecksum = checksum ? part.checksum() : null;
+          final CompletableFuture<UploadPartResponse> request = s3Client.uploadPart(UploadPartRequest.builder()
+                  .bucket(bucket)
+                  .key(key)
+                  .partNumber(partNumber)
+                  .uploadId(uploadId)
+                  .contentLength(contentLength)
+                  .checksumCRC32C(partChecksum)
+                  .build(),
+              AsyncRequestBody.fromPublisher(part.content()));
+          // the storage client may still read the body of a cancelled request, the part keeps its buffers until the body terminates
+          request.whenComplete((response, error) -> part.release());
+          return storageLoadTracker.measureTransfer(bucket, Mono.fromFuture(request))
+              .flatMap(response -> checkResult(response).thenReturn(CompletedPart.builder()
+                  .partNumber(partNumber)
+                  .eTag(response.eTag())
+                  .checksumCRC32C(partChecksum)
+                  .build()));
+        })
+        .doOnDiscard(UploadPartBuffer.class, UploadPartBuffer::release);
+  }
 
-    int partSize = 0;
-    for (DataBuffer b : buffers) {
-      partSize += b.readableByteCount();
+  /**
+   * Signs the upload of every part of a multipart upload of the given content length, so that the client sends the parts to the storage
+   * itself. Parts are sized the same way as the parts of uploads going through the service.
+   */
+  public List<GetPresignedPartDTO> presignUploadParts(String bucket, String key, String uploadId, long contentLength) {
+    log.info("Presigning upload parts: filekey={}, uploadId={}, contentLength={}", key, uploadId, contentLength);
+    final PartSizePlanner.Plan plan = partSizePlanner.plan(contentLength);
+    final Duration expiry = properties.getUpload().getPresignedUrlExpiry();
+    final List<GetPresignedPartDTO> parts = new ArrayList<>();
+    long remaining = contentLength;
+    for (int partNumber = 1; remaining > 0; partNumber++) {
+      final long size = Math.min(plan.partSize(partNumber), remaining);
+      final UploadPartRequest request = UploadPartRequest.builder()
+          .bucket(bucket)
+          .key(key)
+          .uploadId(uploadId)
+          .partNumber(partNumber)
+          .build();
+      // signing is done locally, no request is sent to the storage
+      final String url = s3Presigner.presignUploadPart(UploadPartPresignRequest.builder()
+              .signatureDuration(expiry)
+              .uploadPartRequest(request)
+              .build())
+          .url()
+          .toString();
+      parts.add(new GetPresignedPartDTO(partNumber, size, url));
+      remaining -= size;
     }
+    return parts;
+  }
+
+  public Flux<Part> getUploadedParts(String bucket, String key, String uploadId) {
+    log.info("Listing uploaded parts: filekey={}, uploadId={}", key, uploadId);
+    return Flux.from(s3Client.listPartsPaginator(ListPartsRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .uploadId(uploadId)
+            .build())
+        .parts());
+  }
+
+  public Mono<CompleteMultipartUploadResponse> completeMultipartUpload(String bucket, String key, String uploadId,
+      Collection<CompletedPart> completedParts) {
+    log.info("CompleteUpload: bucket={}, filekey={}, completedParts.size={}", bucket, key, completedParts.size());
+
+    CompletedMultipartUpload multipartUpload = CompletedMultipartUpload.builder()
+        .parts(completedParts)
+        .build();
 
-    ByteBuffer partData = ByteBuffer.allocate(partSize);
-    buffers.forEach(buffer -> partData.put(buffer.asByteBuffer()));
+    final CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+        .bucket(bucket)
+        .uploadId(uploadId)
+        .multipartUpload(multipartUpload)
+        .key(key)
+        .build();
+    return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.completeMultipartUpload(request))
+        .flatMap(response -> checkResult(response).thenReturn(response)));
+  }
+
+  public Flux<MultipartUpload> getMultipartUploads(String bucket, String prefix) {
+    log.info("Listing multipart uploads in bucket '{}' with prefix '{}'", bucket, prefix);
+    // pages are requested lazily, one page of uploads is fetched only when the previous one has been consumed
+    return Flux.from(s3Client.listMultipartUploadsPaginator(ListMultipartUploadsRequest.builder()
+            .bucket(bucket)
+            .prefix(prefix)
+            .build())
+        .uploads());
+  }
+
+  public Mono<Void> abortMultipartUpload(String bucket, String key, String uploadId) {
+    return Mono.fromFuture(() -> s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .uploadId(uploadId)
+            .build()))
+        .flatMap(response -> {
+          log.debug("Abort upload result {} of file '{}' in bucket '{}'", response, key, bucket);
+          return checkResult(response);
+        });
+  }
 
-    // Reset read pointer to first byte
-    partData.rewind();
+  /**
+   * Checks that a bucket can be reached, the connection opened for the request is kept by the client for the following ones. It is not
+   * measured as load of the bucket, the first requests take the handshakes.
+   */
+  public Mono<Void> headBucket(String bucket) {
+    log.debug("Checking bucket '{}'", bucket);
+    return Mono.fromFuture(() -> s3Client.headBucket(HeadBucketRequest.builder()
+            .bucket(bucket)
+            .build()))
+        .flatMap(this::checkResult);
+  }
 
-    log.debug("PartData: size={}", partData.capacity());
-    return partData;
+  /**
+   * Whether a file of the given size is downloaded by the client directly from the storage rather than through the service.
+   */
+  public boolean isRedirectedDownload(Long contentLength) {
+    final long threshold = properties.getDownload().getRedirectThreshold();
+    return threshold > 0 && contentLength != null && contentLength >= threshold;
+  }
 
+  /**
+   * Signs a download of a file, the storage answers it with the given filename in the {@code Content-Disposition} header.
+   */
+  public Mono<URI> presignGetByKey(String key, String bucket, String filename) {
+    log.info("Presigning download of file by key '{}' from bucket '{}'", key, bucket);
+    final GetObjectRequest request = GetObjectRequest.builder()
+        .bucket(bucket)
+        .key(key)
+        .responseContentDisposition(ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString())
+        .build();
+    // signing is done locally, no request is sent to the storage
+    return Mono.fromCallable(() -> URI.create(s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+            .signatureDuration(properties.getDownload().getPresignedUrlExpiry())
+            .getObjectRequest(request)
+            .build())
+        .url()
+        .toString()));
   }
 
+  /**
+   * Gets a file. Concurrent requests for the same file share a single download from the storage, as long as they keep up with it.
+   */
   public Mono<ResponsePublisher<GetObjectResponse>> getByKey(String key, String bucket) {
+    if (properties.getDownload().getCoalescingWindow() <= 0) {
+      return fetchByKey(key, bucket);
+    }
+    return downloadCoalescer.get(bucket + '/' + key, () -> fetchByKey(key, bucket),
+        offset -> (offset == 0 ? fetchByKey(key, bucket) : getRangeByKey(key, bucket, "bytes=" + offset + "-", null, null))
+            .flatMapMany(Flux::from));
+  }
+
+  private Mono<ResponsePublisher<GetObjectResponse>> fetchByKey(String key, String bucket) {
     log.info("Getting song by key '{}' from bucket '{}'", key, bucket);
+    // the storage client validates full object checksums while the content streams, composite ones of multipart uploads are skipped
     GetObjectRequest request = GetObjectRequest.builder()
         .bucket(bucket)
         .key(key)
+        .checksumMode(isChecksumEnabled() ? ChecksumMode.ENABLED : null)
         .build();
-    return Mono.fromFuture(s3Client.getObject(request, AsyncResponseTransformer.toPublisher()))
+    // measured until the response arrives, the time taken by the content depends on how fast the client reads it
+    return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.getObject(request, AsyncResponseTransformer.toPublisher()))
         .flatMap(response -> {
           log.debug("Getting song file result '{}' from bucket '{}'", response, bucket);
           return checkResult(response.response()).thenReturn(response);
-        });
+        }));
+  }
+
+  /**
+   * Gets a byte range of a file, only the requested bytes are read from the storage. The range is served while the file has the given
+   * entity tag or has not been modified since the given time, otherwise the whole file is returned, as {@code If-Range} requires.
+   */
+  public Mono<ResponsePublisher<GetObjectResponse>> getRangeByKey(String key, String bucket, String range, String ifMatch,
+      Instant ifUnmodifiedSince) {
+    log.info("Getting range '{}' of song by key '{}' from bucket '{}'", range, key, bucket);
+    GetObjectRequest request = GetObjectRequest.builder()
+        .bucket(bucket)
+        .key(key)
+        .range(range)
+        .ifMatch(ifMatch)
+        .ifUnmodifiedSince(ifUnmodifiedSince)
+        .build();
+    final boolean conditional = ifMatch != null || ifUnmodifiedSince != null;
+    return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.getObject(request, AsyncResponseTransformer.toPublisher()))
+            .flatMap(response -> checkResult(response.response()).thenReturn(response)))
+        .onErrorResume(error -> conditional && hasStatus(error, HttpStatus.PRECONDITION_FAILED), error -> getByKey(key, bucket))
+        // the length of the file is sent along with the rejection, so that the client can correct the range
+        .onErrorResume(error -> hasStatus(error, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE), error -> getMetadataByKey(key, bucket)
+            .flatMap(metadata -> Mono.error(ExceptionSupplier.rangeNotSatisfiable(metadata.contentLength()).get())));
+  }
+
+  public Mono<HeadObjectResponse> getMetadataByKey(String key, String bucket) {
+    log.info("Getting metadata of file by key '{}' from bucket '{}'", key, bucket);
+    return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.headObject(HeadObjectRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .build()))
+        .flatMap(response -> checkResult(response).thenReturn(response)));
   }
 
   public Mono<Void> deleteByKey(String key, String bucket) {
@@ -196,6 +591,32 @@ public class CloudStorageRepository {
     });
   }
 
+  /**
+   * Deletes the objects of the given keys from a bucket, with one request per thousand keys. The keys of the objects the storage could not
+   * delete are returned along with the reason, a request failing as a whole fails the deletion.
+   */
+  public Mono<Map<String, String>> deleteAllByKeys(Collection<String> keys, String bucket) {
+    log.info("Deleting {} song files from bucket '{}'", keys.size(), bucket);
+    return Flux.fromIterable(keys)
+        .buffer(DELETE_OBJECTS_MAX_KEYS)
+        .concatMap(chunk -> {
+          final DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+              .bucket(bucket)
+              .delete(Delete.builder()
+                  .objects(chunk.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                  // the response lists only the objects which could not be deleted
+                  .quiet(true)
+                  .build())
+              .build();
+          return storageLoadTracker.measure(bucket, Mono.fromFuture(() -> s3Client.deleteObjects(request))
+              .flatMap(response -> checkResult(response).thenReturn(response)));
+        })
+        .flatMapIterable(DeleteObjectsResponse::errors)
+        .doOnNext(error -> log.warn("Deleting song file '{}' from bucket '{}' failed: {} {}", error.key(), bucket, error.code(),
+            error.message()))
+        .collectMap(S3Error::key, error -> StringUtils.hasText(error.message()) ? error.message() : error.code());
+  }
+
   public Mono<String> move(String key, GetStorageDTO fromStorage, GetStorageDTO toStorage) {
     log.info("Moving a resource file with key='{}' from source '{}' to destination '{}'", key, fromStorage, toStorage);
     final String destinationKey = replaceKeyPath(key, fromStorage.getPath(), toStorage.getPath());
@@ -217,6 +638,14 @@ public class CloudStorageRepository {
         .thenReturn(destinationKey);
   }
 
+  private boolean hasStatus(Throwable error, HttpStatus status) {
+    return error instanceof S3Exception exception && exception.statusCode() == status.value();
+  }
+
+  private boolean isChecksumEnabled() {
+    return properties.getUpload().isChecksumEnabled();
+  }
+
   private String replaceKeyPath(String key, String originalPath, String newPath) {
     return key.replaceFirst(originalPath, newPath);
   }
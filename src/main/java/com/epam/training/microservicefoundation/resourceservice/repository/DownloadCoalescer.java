@@ -0,0 +1,315 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Shares a download of a file between the requests reading it at the same time. The first request starts the download, the ones arriving
+ * while the beginning of the file is still held get the same response and read the content from a window of the last chunks received.
+ * The download is paced by its fastest reader. A reader falling behind the window, or starting to read after the window has moved on,
+ * reads the rest of the file with a request of its own, so that a slow client neither holds the others back nor the chunks in memory.
+ * A download nobody starts to read within the idle timeout, or left by its readers before it has started, is cancelled.
+ */
+public class DownloadCoalescer {
+  private static final int PREFETCH = 8;
+  private final long windowSize;
+  private final Duration idleTimeout;
+  private final Scheduler scheduler;
+  private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+  public DownloadCoalescer(long windowSize, Duration idleTimeout) {
+    this(windowSize, idleTimeout, Schedulers.parallel());
+  }
+
+  DownloadCoalescer(long windowSize, Duration idleTimeout, Scheduler scheduler) {
+    this.windowSize = windowSize;
+    this.idleTimeout = idleTimeout;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Gets a file, joining the download of the same file in progress if its beginning is still held.
+   *
+   * @param fetch  starts a download of the whole file
+   * @param resume reads the file from the given byte offset to its end
+   */
+  public Mono<ResponsePublisher<GetObjectResponse>> get(String key, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> fetch,
+      LongFunction<Publisher<ByteBuffer>> resume) {
+    return Mono.defer(() -> flights.computeIfAbsent(key, flightKey -> new Flight(flightKey, fetch, resume)).download)
+        .map(download -> new ResponsePublisher<>(download.response, SdkPublisher.adapt(Flux.defer(download::read))));
+  }
+
+  private final class Flight {
+    private final String key;
+    private final Mono<SharedDownload> download;
+
+    private Flight(String key, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> fetch, LongFunction<Publisher<ByteBuffer>> resume) {
+      this.key = key;
+      this.download = Mono.defer(fetch)
+          .map(responsePublisher -> new SharedDownload(this, responsePublisher, resume))
+          .doOnNext(SharedDownload::scheduleIdleTimeout)
+          .doOnError(error -> detach())
+          .cache();
+    }
+
+    // requests arriving later start a download of their own
+    private void detach() {
+      flights.remove(key, this);
+    }
+  }
+
+  private final class SharedDownload implements CoreSubscriber<ByteBuffer> {
+    private final Flight flight;
+    private final ResponsePublisher<GetObjectResponse> upstream;
+    private final GetObjectResponse response;
+    private final LongFunction<Publisher<ByteBuffer>> resume;
+    private final Set<Reader> readers = new LinkedHashSet<>();
+    private final List<ByteBuffer> window = new ArrayList<>();
+    // position of the first chunk of the window in the list, the chunks before it are released
+    private int windowHead;
+    private long windowBytes;
+    // numbers of the first chunk of the window and of the chunk to be received next, counted from the beginning of the file
+    private long firstChunk;
+    private long receivedChunks;
+    private int outstanding;
+    private boolean started;
+    private boolean done;
+    private boolean cancelled;
+    private Throwable error;
+    private Subscription subscription;
+
+    private SharedDownload(Flight flight, ResponsePublisher<GetObjectResponse> upstream, LongFunction<Publisher<ByteBuffer>> resume) {
+      this.flight = flight;
+      this.upstream = upstream;
+      this.response = upstream.response();
+      this.resume = resume;
+    }
+
+    private Flux<ByteBuffer> read() {
+      final Reader reader = new Reader();
+      return Flux.<ByteBuffer>create(sink -> start(reader, sink))
+          .concatWith(Flux.defer(() -> reader.behind ? resume(reader.offset) : Flux.empty()));
+    }
+
+    private Flux<ByteBuffer> resume(long offset) {
+      final Long contentLength = response.contentLength();
+      return contentLength != null && offset >= contentLength ? Flux.empty() : Flux.from(resume.apply(offset));
+    }
+
+    private void start(Reader reader, FluxSink<ByteBuffer> sink) {
+      reader.sink = sink;
+      synchronized (this) {
+        readers.add(reader);
+      }
+      sink.onDispose(() -> leave(reader));
+      sink.onRequest(requested -> drain(reader));
+    }
+
+    private void leave(Reader reader) {
+      final boolean unread;
+      final Subscription cancelledSubscription;
+      synchronized (this) {
+        readers.remove(reader);
+        if (!readers.isEmpty() || done || error != null || cancelled) {
+          return;
+        }
+        // nobody reads the download anymore, readers starting later read the file on their own
+        unread = !started;
+        started = true;
+        cancelled = true;
+        cancelledSubscription = subscription;
+      }
+      cancel(unread, cancelledSubscription);
+    }
+
+    private void scheduleIdleTimeout() {
+      scheduler.schedule(this::expireIfUnread, idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void expireIfUnread() {
+      synchronized (this) {
+        if (!readers.isEmpty() || started || cancelled) {
+          return;
+        }
+        started = true;
+        cancelled = true;
+      }
+      cancel(true, null);
+    }
+
+    // the content of a download nobody has read is subscribed to only to be cancelled, so that its connection is released
+    private void cancel(boolean unread, Subscription cancelledSubscription) {
+      flight.detach();
+      if (unread) {
+        Flux.from(upstream).subscribe(this);
+      } else if (cancelledSubscription != null) {
+        cancelledSubscription.cancel();
+      }
+    }
+
+    private void drain(Reader reader) {
+      if (reader.wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        while (!reader.terminated) {
+          final boolean demanded = reader.sink.requestedFromDownstream() > 0;
+          ByteBuffer chunk = null;
+          Throwable failure = null;
+          boolean completed = false;
+          boolean request = false;
+          synchronized (this) {
+            if (reader.nextChunk < firstChunk || cancelled && !done) {
+              reader.behind = true;
+              completed = true;
+            } else if (reader.nextChunk < receivedChunks) {
+              if (demanded) {
+                chunk = window.get(windowHead + (int) (reader.nextChunk - firstChunk)).asReadOnlyBuffer();
+                reader.nextChunk++;
+              }
+            } else if (error != null) {
+              failure = error;
+            } else if (done) {
+              completed = true;
+            } else if (outstanding == 0) {
+              outstanding = PREFETCH;
+              request = true;
+            }
+          }
+
+          if (chunk != null) {
+            reader.offset += chunk.remaining();
+            reader.sink.next(chunk);
+          } else if (failure != null) {
+            reader.terminated = true;
+            reader.sink.error(failure);
+          } else if (completed) {
+            reader.terminated = true;
+            reader.sink.complete();
+          } else {
+            if (request) {
+              requestUpstream();
+            }
+            break;
+          }
+        }
+        missed = reader.wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void requestUpstream() {
+      final Subscription current;
+      synchronized (this) {
+        if (!started) {
+          started = true;
+          current = null;
+        } else {
+          current = subscription;
+        }
+      }
+      if (current == null) {
+        Flux.from(upstream).subscribe(this);
+      } else {
+        current.request(PREFETCH);
+      }
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      final boolean cancel;
+      synchronized (this) {
+        this.subscription = subscription;
+        cancel = cancelled;
+      }
+      if (cancel) {
+        subscription.cancel();
+      } else {
+        subscription.request(PREFETCH);
+      }
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+      final boolean moved;
+      synchronized (this) {
+        window.add(chunk);
+        windowBytes += chunk.remaining();
+        receivedChunks++;
+        outstanding--;
+        // the last chunk is kept even if it is larger than the window, the fastest reader may not have read it yet
+        while (windowBytes > windowSize && receivedChunks - firstChunk > 1) {
+          windowBytes -= window.get(windowHead).remaining();
+          window.set(windowHead++, null);
+          firstChunk++;
+        }
+        if (windowHead > PREFETCH && windowHead * 2 > window.size()) {
+          window.subList(0, windowHead).clear();
+          windowHead = 0;
+        }
+        moved = firstChunk > 0;
+      }
+      // requests arriving now could not read the beginning of the file from the window
+      if (moved) {
+        flight.detach();
+      }
+      drainAll();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      synchronized (this) {
+        error = throwable;
+      }
+      flight.detach();
+      drainAll();
+    }
+
+    @Override
+    public void onComplete() {
+      synchronized (this) {
+        done = true;
+      }
+      flight.detach();
+      drainAll();
+    }
+
+    private void drainAll() {
+      final List<Reader> current;
+      synchronized (this) {
+        current = List.copyOf(readers);
+      }
+      current.forEach(this::drain);
+    }
+  }
+
+  private static final class Reader {
+    private final AtomicInteger wip = new AtomicInteger();
+    private FluxSink<ByteBuffer> sink;
+    private long nextChunk;
+    private long offset;
+    private boolean terminated;
+    private volatile boolean behind;
+  }
+}
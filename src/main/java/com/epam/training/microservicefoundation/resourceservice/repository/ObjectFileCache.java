@@ -0,0 +1,174 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.common.SingleFlight;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Read-through cache of stored files on the local disk. A stored object never gets another content under the same key, so files are
+ * never invalidated, they are only evicted once the cache exceeds its size, by frequency and recency of use. A file missing in the
+ * cache is downloaded once, requests for it arriving meanwhile wait for the same download. A file is retained for every request it is
+ * returned to, the file of an evicted entry is deleted once the last of them has released it.
+ */
+public class ObjectFileCache {
+  private static final Logger log = LoggerFactory.getLogger(ObjectFileCache.class);
+  private static final String METRIC_NAME = "resource.file.cache";
+  private final boolean enabled;
+  private final Path directory;
+  private final long maxObjectSize;
+  private final Cache<String, CachedFile> files;
+  private final SingleFlight<String, CachedFile> fills = new SingleFlight<>();
+  private final Counter servedBytes;
+  private final Executor executor;
+
+  public ObjectFileCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, ForkJoinPool.commonPool());
+  }
+
+  ObjectFileCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry, Executor executor) {
+    final S3ClientConfigurationProperties.FileCache fileCache = properties.getFileCache();
+    this.executor = executor;
+    this.enabled = fileCache.isEnabled();
+    this.directory = fileCache.getDirectory();
+    // files are weighed by their size in an int
+    this.maxObjectSize = Math.min(fileCache.getMaxObjectSize(), Integer.MAX_VALUE);
+    if (enabled) {
+      prepareDirectory();
+    }
+
+    this.files = Caffeine.newBuilder()
+        .maximumWeight(fileCache.getMaxSize())
+        .weigher((String key, CachedFile file) -> (int) Math.min(file.getContentLength(), Integer.MAX_VALUE))
+        .removalListener((String key, CachedFile file, RemovalCause cause) -> {
+          if (file != null && file.release()) {
+            delete(file.getPath());
+          }
+        })
+        .executor(executor)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, files, METRIC_NAME);
+    Gauge.builder(METRIC_NAME + ".used", files, cache -> cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L))
+        .description("Bytes taken by the cached files")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    this.servedBytes = Counter.builder(METRIC_NAME + ".served")
+        .description("Bytes of files served from the cache")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Whether a file of the given size is kept in the cache. Files of unknown size are not, they may be of any size.
+   */
+  public boolean isCacheable(Long contentLength) {
+    return enabled && contentLength != null && contentLength <= maxObjectSize;
+  }
+
+  /**
+   * Gets the cached file of an object, downloading it with the given loader when it is not cached yet. The file is retained, it is to be
+   * released with {@link #release(CachedFile)} once it has been sent. Empty when the file has been evicted and deleted before it could be
+   * retained.
+   */
+  public Mono<CachedFile> get(String bucket, String key, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> loader) {
+    final String cacheKey = bucket + '/' + key;
+    final CachedFile cached = files.getIfPresent(cacheKey);
+    if (cached != null && cached.retain()) {
+      servedBytes.increment(cached.getContentLength());
+      return Mono.just(cached);
+    }
+    // the download is not cancelled together with the request which started it, the file is kept for the next ones
+    return fills.execute(cacheKey, () -> fill(cacheKey, loader))
+        .filter(CachedFile::retain)
+        .doOnNext(file -> servedBytes.increment(file.getContentLength()));
+  }
+
+  /**
+   * Releases a file returned by {@link #get(String, String, Supplier)}, the file of an evicted entry is deleted with its last release.
+   */
+  public void release(CachedFile file) {
+    if (file.release()) {
+      executor.execute(() -> delete(file.getPath()));
+    }
+  }
+
+  private Mono<CachedFile> fill(String cacheKey, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> loader) {
+    // every download gets a file of its own, a file is not visible to requests before it is complete
+    final Path path = directory.resolve(UUID.randomUUID().toString());
+    final Mono<CachedFile> download = Mono.defer(loader)
+        .flatMap(responsePublisher -> DataBufferUtils.write(Flux.from(responsePublisher)
+                .<DataBuffer>map(DefaultDataBufferFactory.sharedInstance::wrap), path)
+            .then(Mono.fromSupplier(() -> {
+              final GetObjectResponse response = responsePublisher.response();
+              final CachedFile file = new CachedFile(path, response.contentLength(), response.contentType(), response.eTag(),
+                  response.lastModified(), Map.copyOf(response.metadata()));
+              files.put(cacheKey, file);
+              log.debug("Cached file '{}' of {} bytes", cacheKey, file.getContentLength());
+              return file;
+            })))
+        .onErrorResume(error -> Mono.<Void>fromRunnable(() -> delete(path))
+            .subscribeOn(Schedulers.boundedElastic())
+            .then(Mono.error(error)));
+    // a download finished between the lookup and the start of this one is not repeated, nor is its file replaced
+    return Mono.defer(() -> Mono.justOrEmpty(files.asMap().get(cacheKey))).switchIfEmpty(download);
+  }
+
+  private void prepareDirectory() {
+    try {
+      Files.createDirectories(directory);
+      // the files of an earlier run are not known to the cache, only the ones named by the cache are deleted
+      try (Stream<Path> paths = Files.list(directory)) {
+        paths.filter(path -> Files.isRegularFile(path) && isCacheFileName(path.getFileName().toString()))
+            .forEach(this::delete);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException("Preparing file cache directory " + directory + " failed", exception);
+    }
+  }
+
+  private boolean isCacheFileName(String name) {
+    try {
+      return UUID.fromString(name).toString().equals(name);
+    } catch (IllegalArgumentException exception) {
+      return false;
+    }
+  }
+
+  private void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException exception) {
+      log.warn("Deleting cached file '{}' failed", path, exception);
+    }
+  }
+}
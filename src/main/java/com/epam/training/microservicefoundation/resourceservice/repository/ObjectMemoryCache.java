@@ -0,0 +1,150 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.common.SingleFlight;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Cache of small files in direct memory, keyed by the id of their resource. A cached file is served without reading it from the storage
+ * or looking up its resource, it is invalidated when the resource is deleted on this instance and expires otherwise. Files are admitted
+ * by the W-TinyLFU policy of the cache, a file requested once does not evict the ones requested often.
+ */
+public class ObjectMemoryCache {
+  private static final Logger log = LoggerFactory.getLogger(ObjectMemoryCache.class);
+  private static final String METRIC_NAME = "resource.memory.cache";
+  private final boolean enabled;
+  private final int maxObjectSize;
+  private final Cache<Long, CachedContent> contents;
+  private final SingleFlight<Long, CachedContent> fills = new SingleFlight<>();
+  // files being downloaded, the ones invalidated meanwhile are not cached once downloaded
+  private final Map<Long, Boolean> pendingFills = new ConcurrentHashMap<>();
+  private final Counter servedBytes;
+
+  public ObjectMemoryCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, ForkJoinPool.commonPool());
+  }
+
+  ObjectMemoryCache(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry, Executor executor) {
+    final S3ClientConfigurationProperties.MemoryCache memoryCache = properties.getMemoryCache();
+    this.enabled = memoryCache.isEnabled();
+    this.maxObjectSize = memoryCache.getMaxObjectSize();
+    // the direct buffers of evicted files are freed by the garbage collector, once the responses still writing them are done
+    this.contents = Caffeine.newBuilder()
+        .maximumWeight(memoryCache.getMaxSize())
+        .weigher((Long id, CachedContent content) -> content.getContent().capacity())
+        .expireAfterWrite(memoryCache.getExpiry())
+        .executor(executor)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, contents, METRIC_NAME);
+    Gauge.builder(METRIC_NAME + ".used", contents, cache -> cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L))
+        .description("Direct memory taken by the cached files")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    this.servedBytes = Counter.builder(METRIC_NAME + ".served")
+        .description("Bytes of files served from memory")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Whether a file of the given size is kept in memory. Files of unknown size are not.
+   */
+  public boolean isCacheable(Long contentLength) {
+    return enabled && contentLength != null && contentLength <= maxObjectSize;
+  }
+
+  /**
+   * Gets the cached file of a resource, if there is any. Nothing is downloaded.
+   */
+  public Optional<CachedContent> getIfPresent(long id) {
+    return Optional.ofNullable(contents.getIfPresent(id));
+  }
+
+  /**
+   * Gets the cached file of a resource, downloading it with the given loader when it is not cached yet. Concurrent requests for a file
+   * which is not cached share a single download.
+   */
+  public Mono<CachedContent> get(GetResourceMetadataDTO metadata, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> loader) {
+    final long id = metadata.getId();
+    // looked up without recording a miss, the request has already missed the cache before its resource was looked up
+    final CachedContent cached = contents.asMap().get(id);
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+    return fills.execute(id, () -> fill(metadata, loader));
+  }
+
+  public void invalidate(long id) {
+    // the pending download is marked first, its file is either not put or put before it is invalidated
+    pendingFills.computeIfPresent(id, (key, valid) -> false);
+    contents.invalidate(id);
+  }
+
+  /**
+   * Records a file as served from memory, once its content has been written to the response.
+   */
+  public void recordServed(CachedContent content) {
+    servedBytes.increment(content.getContent().remaining());
+  }
+
+  private Mono<CachedContent> fill(GetResourceMetadataDTO metadata, Supplier<Mono<ResponsePublisher<GetObjectResponse>>> loader) {
+    final long id = metadata.getId();
+    return Mono.defer(() -> {
+          pendingFills.put(id, true);
+          return loader.get();
+        })
+        .flatMap(responsePublisher -> {
+          final GetObjectResponse response = responsePublisher.response();
+          // the whole content is copied once, from the buffers of the storage client into a buffer of its own size
+          return Flux.from(responsePublisher)
+              .collect(() -> ByteBuffer.allocateDirect(Math.toIntExact(response.contentLength())), ByteBuffer::put)
+              .map(content -> {
+                final CachedContent cachedContent = new CachedContent(getMetadata(metadata, response), response.contentType(),
+                    response.metadata().get("filename"), content.flip().asReadOnlyBuffer());
+                // the file is still given to the requests waiting for it, which started before the invalidation
+                pendingFills.computeIfPresent(id, (key, valid) -> {
+                  if (valid) {
+                    contents.put(id, cachedContent);
+                    log.debug("Cached file of resource '{}' of {} bytes in memory", id, content.capacity());
+                  }
+                  return null;
+                });
+                return cachedContent;
+              });
+        })
+        .doFinally(signal -> pendingFills.remove(id));
+  }
+
+  // resources stored before their entity tag was recorded get the one of the stored file
+  private GetResourceMetadataDTO getMetadata(GetResourceMetadataDTO metadata, GetObjectResponse response) {
+    return new GetResourceMetadataDTO(metadata.getId(), metadata.getName(),
+        StringUtils.hasText(metadata.getEtag()) ? metadata.getEtag() : response.eTag(), response.contentType(),
+        response.contentLength(), metadata.getLastModified() != null ? metadata.getLastModified() : response.lastModified(),
+        metadata.getKey(), metadata.getBucket());
+  }
+}
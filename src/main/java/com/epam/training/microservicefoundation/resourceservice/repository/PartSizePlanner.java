@@ -0,0 +1,89 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides the size of multipart upload parts. With a known content length the parts are made large enough to stay within the part
+ * count limit of the storage, otherwise the part size doubles every {@code partSizeGrowthInterval} parts. Part sizes always stay
+ * within the minimal and maximal part size of the storage.
+ */
+public class PartSizePlanner {
+  private static final Logger log = LoggerFactory.getLogger(PartSizePlanner.class);
+  private static final String METRIC_PLANNED_PART_SIZE = "s3.upload.part.size.planned";
+  private static final String METRIC_PART_SIZE = "s3.upload.part.size";
+  private static final String METRIC_PARTS = "s3.upload.parts";
+  private static final String TAG_CONTENT_LENGTH = "content.length";
+  private final S3ClientConfigurationProperties properties;
+  private final DistributionSummary knownLengthPlans;
+  private final DistributionSummary unknownLengthPlans;
+  private final DistributionSummary partSizes;
+  private final DistributionSummary partsPerUpload;
+
+  public PartSizePlanner(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.knownLengthPlans = DistributionSummary.builder(METRIC_PLANNED_PART_SIZE)
+        .description("Initial part size chosen for a multipart upload")
+        .baseUnit("bytes")
+        .tag(TAG_CONTENT_LENGTH, "known")
+        .register(meterRegistry);
+    this.unknownLengthPlans = DistributionSummary.builder(METRIC_PLANNED_PART_SIZE)
+        .description("Initial part size chosen for a multipart upload")
+        .baseUnit("bytes")
+        .tag(TAG_CONTENT_LENGTH, "unknown")
+        .register(meterRegistry);
+    this.partSizes = DistributionSummary.builder(METRIC_PART_SIZE)
+        .description("Size of the parts sent to the storage")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    this.partsPerUpload = DistributionSummary.builder(METRIC_PARTS)
+        .description("Number of requests needed to store a file")
+        .register(meterRegistry);
+  }
+
+  public Plan plan(long contentLength) {
+    final S3ClientConfigurationProperties.Upload upload = properties.getUpload();
+    final Plan plan;
+    if (contentLength > 0) {
+      final long minimalForLength = (contentLength + properties.getMultipartMaxParts() - 1) / properties.getMultipartMaxParts();
+      plan = new Plan(clamp(Math.max(upload.getPartSize(), minimalForLength)), Integer.MAX_VALUE);
+      knownLengthPlans.record(plan.initialPartSize);
+    } else {
+      plan = new Plan(clamp(upload.getPartSize()), Math.max(upload.getPartSizeGrowthInterval(), 1));
+      unknownLengthPlans.record(plan.initialPartSize);
+    }
+    log.debug("Planned multipart upload: contentLength={}, initialPartSize={}", contentLength, plan.initialPartSize);
+    return plan;
+  }
+
+  public void partUploaded(long size) {
+    partSizes.record(size);
+  }
+
+  public void uploadCompleted(int parts) {
+    partsPerUpload.record(parts);
+  }
+
+  private long clamp(long partSize) {
+    return Math.min(Math.max(partSize, properties.getMultipartMinPartSize()), properties.getMultipartMaxPartSize());
+  }
+
+  public final class Plan {
+    private final long initialPartSize;
+    private final int growthInterval;
+
+    private Plan(long initialPartSize, int growthInterval) {
+      this.initialPartSize = initialPartSize;
+      this.growthInterval = growthInterval;
+    }
+
+    public long partSize(int partNumber) {
+      final int doublings = Math.min((partNumber - 1) / growthInterval, 32);
+      final long maxPartSize = properties.getMultipartMaxPartSize();
+      return initialPartSize > maxPartSize >> doublings ? maxPartSize : clamp(initialPartSize << doublings);
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import java.util.List;
+import reactor.core.publisher.Flux;
+
+public interface ResourceBatchRepository {
+  /**
+   * Inserts the resources with one statement executed for all of them. The inserted resources are returned in the given order.
+   */
+  Flux<Resource> insertAll(List<Resource> resources);
+}
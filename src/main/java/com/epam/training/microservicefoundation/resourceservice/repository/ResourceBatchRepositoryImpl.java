@@ -0,0 +1,60 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import io.r2dbc.spi.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+class ResourceBatchRepositoryImpl implements ResourceBatchRepository {
+  private static final String INSERT = "INSERT INTO RESOURCES (key, name, status, storage_id, content_hash, checksum, etag, content_type, "
+      + "content_length, created_date, last_modified_date) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $10)";
+  private final DatabaseClient databaseClient;
+
+  @Autowired
+  ResourceBatchRepositoryImpl(DatabaseClient databaseClient) {
+    this.databaseClient = databaseClient;
+  }
+
+  @Override
+  public Flux<Resource> insertAll(List<Resource> resources) {
+    if (resources.isEmpty()) {
+      return Flux.empty();
+    }
+    // runs on the connection bound to the current transaction, if there is one
+    return databaseClient.inConnectionMany(connection -> {
+      final LocalDateTime now = LocalDateTime.now();
+      final Statement statement = connection.createStatement(INSERT).returnGeneratedValues("id");
+      for (int index = 0; index < resources.size(); index++) {
+        if (index > 0) {
+          statement.add();
+        }
+        final Resource resource = resources.get(index);
+        statement.bind(0, resource.getKey())
+            .bind(1, resource.getName())
+            .bind(2, resource.getStatus().name())
+            .bind(3, resource.getStorageId())
+            .bind(9, now);
+        bindNullable(statement, 4, resource.getContentHash(), String.class);
+        bindNullable(statement, 5, resource.getChecksum(), String.class);
+        bindNullable(statement, 6, resource.getEtag(), String.class);
+        bindNullable(statement, 7, resource.getContentType(), String.class);
+        bindNullable(statement, 8, resource.getContentLength(), Long.class);
+      }
+      final Flux<Long> ids = Flux.from(statement.execute())
+          .concatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)));
+      return Flux.fromIterable(resources)
+          .zipWith(ids, (resource, id) -> resource.toBuilder().id(id).createdDate(now).lastModifiedDate(now).build());
+    });
+  }
+
+  private <T> void bindNullable(Statement statement, int index, T value, Class<T> type) {
+    if (value == null) {
+      statement.bindNull(index, type);
+    } else {
+      statement.bind(index, value);
+    }
+  }
+}
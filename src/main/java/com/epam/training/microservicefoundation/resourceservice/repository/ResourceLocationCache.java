@@ -0,0 +1,76 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.common.SingleFlight;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceLocationCacheProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.context.BaseContext;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Cache of resources together with the storages holding their files, keyed by the id of the resource, so that reading a file takes
+ * neither a full query nor a call to the storage service. Entries are put when a resource is saved or first read, and invalidated when
+ * it is deleted or moved on this instance. Cached resources are not checked when they are read, the ones deleted or moved on other
+ * instances are seen once their entry expires, which is kept short for that reason.
+ */
+public class ResourceLocationCache {
+  private static final String METRIC_NAME = "resource.location.cache";
+  private final boolean enabled;
+  private final AsyncCache<Long, BaseContext> locations;
+  private final SingleFlight<Long, BaseContext> loads = new SingleFlight<>();
+
+  public ResourceLocationCache(ResourceLocationCacheProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, ForkJoinPool.commonPool());
+  }
+
+  ResourceLocationCache(ResourceLocationCacheProperties properties, MeterRegistry meterRegistry, Executor executor) {
+    this.enabled = properties.isEnabled();
+    this.locations = Caffeine.newBuilder()
+        .maximumSize(properties.getMaxSize())
+        .expireAfterWrite(properties.getExpiry())
+        .executor(executor)
+        .recordStats()
+        .buildAsync();
+
+    // hits, misses and the time taken by loads, from which the hit ratio and the load latency are derived
+    CaffeineCacheMetrics.monitor(meterRegistry, locations.synchronous(), METRIC_NAME);
+  }
+
+  /**
+   * Gets a resource and its storage, looking them up with the given loader when they are not cached yet. Concurrent requests for the
+   * same resource share a single lookup, it is not bound to the transaction of the request which started it. Empty for a resource that
+   * does not exist, which is not cached.
+   */
+  public Mono<BaseContext> get(long id, Supplier<Mono<BaseContext>> loader) {
+    if (!enabled) {
+      return loads.execute(id, () -> loader.get().contextWrite(context -> Context.empty()));
+    }
+    // the lookup goes on for the other requests when the one which started it is cancelled, only the copy given to it is cancelled
+    return Mono.fromFuture(() -> locations.get(id, (key, executor) -> loader.get().toFuture()).copy());
+  }
+
+  public void put(BaseContext context) {
+    if (enabled) {
+      locations.put(context.getResource().getId(), CompletableFuture.completedFuture(context));
+    }
+  }
+
+  public void invalidate(long id) {
+    locations.synchronous().invalidate(id);
+  }
+
+  /**
+   * Invalidates all resources referring to the stored object of the given key, e.g. when the object has been moved. The whole cache is
+   * scanned, objects are moved once per upload.
+   */
+  public void invalidateByKey(String key) {
+    locations.synchronous().asMap().values().removeIf(context -> key.equals(context.getResource().getKey()));
+  }
+}
@@ -1,11 +1,69 @@
 package com.epam.training.microservicefoundation.resourceservice.repository;
 
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import java.util.Collection;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface ResourceRepository extends ReactiveCrudRepository<Resource, Long> {
+public interface ResourceRepository extends ReactiveCrudRepository<Resource, Long>, ResourceBatchRepository {
   Mono<Boolean> existsByName(String name);
+
+  Flux<Resource> findAllByNameIn(Collection<String> names);
+
+  /**
+   * A resource whose stored object a new resource with the same content may refer to. The lock is held until the new resource is
+   * committed, a resource cannot be marked as deleting meanwhile. Only processed resources are found, the object of a staged one is
+   * still moved to the permanent storage and its key is deleted then.
+   */
+  @Query("SELECT * FROM RESOURCES WHERE content_hash = :contentHash AND status = 'PROCESSED' ORDER BY id LIMIT 1 FOR SHARE")
+  Mono<Resource> findFirstByContentHashForShare(String contentHash);
+
+  @Query("SELECT * FROM RESOURCES WHERE content_hash = ANY(:contentHashes) AND status = 'PROCESSED' FOR SHARE")
+  Flux<Resource> findAllByContentHashesForShare(String[] contentHashes);
+
+  @Query("SELECT * FROM RESOURCES WHERE id = ANY(:ids)")
+  Flux<Resource> findAllByIds(Long[] ids);
+
+  /**
+   * Resources with identical content share the stored object. Locking them makes concurrent deletions of the last references see each
+   * other, so the object is deleted exactly once, and makes a deletion wait for a resource reusing the object under a share lock. The
+   * statement does not see the resources committed while it waited, they are read once the locks are held.
+   *
+   * @return ids of the locked resources
+   */
+  @Query("SELECT id FROM RESOURCES WHERE key = ANY(:keys) FOR UPDATE")
+  Flux<Long> lockAllByKeys(String[] keys);
+
+  @Query("SELECT * FROM RESOURCES WHERE key = ANY(:keys)")
+  Flux<Resource> findAllByKeys(String[] keys);
+
+  @Modifying
+  @Query("DELETE FROM RESOURCES WHERE id = ANY(:ids)")
+  Mono<Integer> deleteAllByIds(Long[] ids);
+
+  /**
+   * Marks resources with the given status, the ones already having it are left out. The marked resources are returned.
+   */
+  @Query("UPDATE RESOURCES SET status = :status, last_modified_date = now() WHERE id = ANY(:ids) AND status <> :status RETURNING *")
+  Flux<Resource> updateAllStatusByIds(Long[] ids, String status);
+
+  @Query("SELECT DISTINCT storage_id FROM RESOURCES WHERE status = :status")
+  Flux<Long> findAllStorageIdsByStatus(String status);
+
+  /**
+   * Resources locked by another transaction are skipped, so that concurrent reapers take different resources.
+   */
+  @Query("SELECT * FROM RESOURCES WHERE status = :status AND storage_id = :storageId ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED")
+  Flux<Resource> findAllByStatusAndStorageIdForUpdate(String status, long storageId, int limit);
+
+  // resources being deleted keep their status, they follow the object so that it is deleted together with its last reference
+  @Modifying
+  @Query("UPDATE RESOURCES SET key = :newKey, storage_id = :storageId, "
+      + "status = CASE WHEN status = 'DELETING' THEN status ELSE :status END, last_modified_date = now() WHERE key = :key")
+  Mono<Integer> updateAllByKey(String key, String newKey, long storageId, String status);
 }
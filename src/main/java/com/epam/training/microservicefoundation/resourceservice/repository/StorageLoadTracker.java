@@ -0,0 +1,173 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Measures the load of every bucket: the bytes of uploads in progress, and moving averages of the request latency and of the share of
+ * failed requests. The averages weigh the samples by how recent they are, and fade while a bucket gets no requests. The latency is the
+ * one of control requests only, in milliseconds until their response, requests carrying file content take as long as their size makes
+ * them and count towards the failed requests only.
+ */
+public class StorageLoadTracker {
+  private static final String METRIC_NAME = "s3.bucket";
+  private final MeterRegistry meterRegistry;
+  private final double decayNanos;
+  private final LongSupplier clock;
+  private final Map<String, BucketState> buckets = new ConcurrentHashMap<>();
+
+  public StorageLoadTracker(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, System::nanoTime);
+  }
+
+  StorageLoadTracker(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+    this.meterRegistry = meterRegistry;
+    this.decayNanos = properties.getPlacement().getDecay().toNanos();
+    this.clock = clock;
+  }
+
+  /**
+   * Measures a control request to a bucket until its response or error, e.g. a head object request, or a get object request until the
+   * response starts. Errors of the client, e.g. a missing object, do not count as failures.
+   */
+  public <T> Mono<T> measure(String bucket, Mono<T> request) {
+    return measure(bucket, request, true);
+  }
+
+  /**
+   * Measures a request sending file content to a bucket, e.g. a put object or an upload part request. Only whether it has failed is
+   * recorded, its latency depends on the size of the content.
+   */
+  public <T> Mono<T> measureTransfer(String bucket, Mono<T> request) {
+    return measure(bucket, request, false);
+  }
+
+  private <T> Mono<T> measure(String bucket, Mono<T> request, boolean timed) {
+    return Mono.defer(() -> {
+      final long start = clock.getAsLong();
+      return request
+          .doOnSuccess(response -> record(bucket, timed ? start : -1, false))
+          .doOnError(error -> record(bucket, timed ? start : -1, !isClientError(error)));
+    });
+  }
+
+  public void addInFlight(String bucket, long bytes) {
+    state(bucket).inFlightBytes.addAndGet(bytes);
+  }
+
+  public void removeInFlight(String bucket, long bytes) {
+    state(bucket).inFlightBytes.addAndGet(-bytes);
+  }
+
+  public BucketLoad getLoad(String bucket) {
+    final BucketState state = state(bucket);
+    final long now = clock.getAsLong();
+    return new BucketLoad(state.inFlightBytes.get(), state.latency.get(now) / 1_000_000, state.errorRate.get(now));
+  }
+
+  // a request without a start is not timed
+  private void record(String bucket, long start, boolean failed) {
+    final BucketState state = state(bucket);
+    final long now = clock.getAsLong();
+    if (start >= 0) {
+      state.latency.update(now - start, now);
+    }
+    state.errorRate.update(failed ? 1 : 0, now);
+  }
+
+  private boolean isClientError(Throwable error) {
+    return error instanceof S3Exception exception && exception.statusCode() >= 400 && exception.statusCode() < 500;
+  }
+
+  private BucketState state(String bucket) {
+    return buckets.computeIfAbsent(bucket, this::register);
+  }
+
+  private BucketState register(String bucket) {
+    final BucketState state = new BucketState(decayNanos);
+    Gauge.builder(METRIC_NAME + ".inflight", state, current -> current.inFlightBytes.get())
+        .description("Bytes of uploads in progress")
+        .baseUnit("bytes")
+        .tag("bucket", bucket)
+        .register(meterRegistry);
+    Gauge.builder(METRIC_NAME + ".latency", state, current -> current.latency.get(clock.getAsLong()) / 1_000_000)
+        .description("Moving average of the latency of control requests")
+        .baseUnit("milliseconds")
+        .tag("bucket", bucket)
+        .register(meterRegistry);
+    Gauge.builder(METRIC_NAME + ".error.rate", state, current -> current.errorRate.get(clock.getAsLong()))
+        .description("Moving average of the share of failed requests")
+        .tag("bucket", bucket)
+        .register(meterRegistry);
+    return state;
+  }
+
+  /**
+   * Load of a bucket at a point in time.
+   */
+  public static final class BucketLoad {
+    private final long inFlightBytes;
+    // moving average of the latency of control requests, in milliseconds
+    private final double latencyMillis;
+    private final double errorRate;
+
+    public BucketLoad(long inFlightBytes, double latencyMillis, double errorRate) {
+      this.inFlightBytes = inFlightBytes;
+      this.latencyMillis = latencyMillis;
+      this.errorRate = errorRate;
+    }
+
+    public long getInFlightBytes() {
+      return inFlightBytes;
+    }
+
+    public double getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    public double getErrorRate() {
+      return errorRate;
+    }
+  }
+
+  private static final class BucketState {
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final MovingAverage latency;
+    private final MovingAverage errorRate;
+
+    private BucketState(double decayNanos) {
+      this.latency = new MovingAverage(decayNanos);
+      this.errorRate = new MovingAverage(decayNanos);
+    }
+  }
+
+  // a sample weighs more the longer it has been since the previous one, the average fades towards zero without samples
+  private static final class MovingAverage {
+    private final double decayNanos;
+    private double value;
+    private long updated;
+    private boolean sampled;
+
+    private MovingAverage(double decayNanos) {
+      this.decayNanos = decayNanos;
+    }
+
+    private synchronized void update(double sample, long now) {
+      final double weight = sampled ? Math.exp(-(now - updated) / decayNanos) : 0;
+      value = value * weight + sample * (1 - weight);
+      updated = now;
+      sampled = true;
+    }
+
+    private synchronized double get(long now) {
+      return sampled ? value * Math.exp(-(now - updated) / decayNanos) : 0;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Node-wide limit of the bytes held in upload part buffers. A part reserves its size before its buffers are read from the file part and
+ * gives it back once the part is uploaded. Reservations are granted in the order they are requested, a reservation waiting longer than
+ * the configured time is rejected, so that the client can retry on a less loaded instance.
+ */
+public class UploadMemoryBudget {
+  private static final Logger log = LoggerFactory.getLogger(UploadMemoryBudget.class);
+  private final long capacity;
+  private final Duration maxWait;
+  private final Duration retryAfter;
+  private final Scheduler scheduler;
+  private final Counter rejections;
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private long available;
+
+  public UploadMemoryBudget(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, Schedulers.parallel());
+  }
+
+  UploadMemoryBudget(S3ClientConfigurationProperties properties, MeterRegistry meterRegistry, Scheduler scheduler) {
+    final S3ClientConfigurationProperties.Upload upload = properties.getUpload();
+    this.capacity = upload.getMemoryBudget();
+    this.maxWait = upload.getMemoryBudgetMaxWait();
+    this.retryAfter = upload.getMemoryBudgetRetryAfter();
+    this.scheduler = scheduler;
+    this.available = capacity;
+
+    Gauge.builder("s3.upload.memory.used", this, UploadMemoryBudget::used)
+        .description("Bytes reserved by upload parts being assembled or uploaded")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    Gauge.builder("s3.upload.memory.waiters", this, UploadMemoryBudget::waiting)
+        .description("Upload parts waiting for the memory budget")
+        .register(meterRegistry);
+    this.rejections = Counter.builder("s3.upload.memory.rejections")
+        .description("Upload parts rejected after waiting for the memory budget too long")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Reserves the given number of bytes. A reservation larger than the whole budget waits until the budget is not used at all.
+   */
+  public Mono<Permit> acquire(long bytes) {
+    final long reserved = Math.min(Math.max(bytes, 0), capacity);
+    return Mono.<Permit>create(sink -> {
+          final Waiter waiter = new Waiter(reserved, sink);
+          sink.onCancel(() -> cancel(waiter));
+          // scheduled before the waiter is queued, so that whoever grants it finds the timeout to dispose
+          waiter.timeout = scheduler.schedule(() -> reject(waiter), maxWait.toMillis(), TimeUnit.MILLISECONDS);
+          final boolean granted;
+          synchronized (this) {
+            // waiters are served first, so that large reservations are not starved by small ones
+            granted = waiters.isEmpty() && available >= reserved;
+            if (granted) {
+              available -= reserved;
+            } else {
+              waiters.addLast(waiter);
+            }
+          }
+          if (granted) {
+            waiter.timeout.dispose();
+            sink.success(new Permit(reserved));
+          }
+        })
+        // a reservation granted at the moment its subscriber is cancelled is never used
+        .doOnDiscard(Permit.class, Permit::release);
+  }
+
+  private void reject(Waiter waiter) {
+    synchronized (this) {
+      if (!waiters.remove(waiter)) {
+        return;
+      }
+    }
+    log.warn("Rejecting upload part of {} bytes, the memory budget has not been available for {}", waiter.bytes, maxWait);
+    rejections.increment();
+    waiter.sink.error(ExceptionSupplier.uploadCapacityExceeded(retryAfter).get());
+    // the rejected waiter may have blocked smaller ones behind it
+    grantWaiters(0);
+  }
+
+  private void cancel(Waiter waiter) {
+    if (waiter.timeout != null) {
+      waiter.timeout.dispose();
+    }
+    final boolean removed;
+    synchronized (this) {
+      removed = waiters.remove(waiter);
+    }
+    if (removed) {
+      grantWaiters(0);
+    }
+  }
+
+  private void grantWaiters(long released) {
+    final List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      available += released;
+      while (!waiters.isEmpty() && waiters.peekFirst().bytes <= available) {
+        final Waiter waiter = waiters.pollFirst();
+        available -= waiter.bytes;
+        granted.add(waiter);
+      }
+    }
+    // subscribers are signalled outside of the lock, they may go on with reading and uploading right away
+    granted.forEach(waiter -> {
+      waiter.timeout.dispose();
+      waiter.sink.success(new Permit(waiter.bytes));
+    });
+  }
+
+  private synchronized long used() {
+    return capacity - available;
+  }
+
+  private synchronized int waiting() {
+    return waiters.size();
+  }
+
+  public final class Permit {
+    private final long bytes;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(long bytes) {
+      this.bytes = bytes;
+    }
+
+    public long bytes() {
+      return bytes;
+    }
+
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        grantWaiters(bytes);
+      }
+    }
+  }
+
+  private static final class Waiter {
+    private final long bytes;
+    private final MonoSink<Permit> sink;
+    private volatile Disposable timeout;
+
+    private Waiter(long bytes, MonoSink<Permit> sink) {
+      this.bytes = bytes;
+      this.sink = sink;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSessionPart;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface UploadSessionPartRepository extends ReactiveCrudRepository<UploadSessionPart, Long> {
+  Flux<UploadSessionPart> findAllBySessionIdOrderByPartNumber(long sessionId);
+
+  /**
+   * A part that is uploaded again, e.g. after a lost response, replaces the previous upload of the same part in the storage.
+   */
+  @Modifying
+  @Query("INSERT INTO UPLOAD_SESSION_PARTS (session_id, part_number, etag, checksum, size, created_date) "
+      + "VALUES (:sessionId, :partNumber, :etag, :checksum, :size, now()) "
+      + "ON CONFLICT (session_id, part_number) DO UPDATE SET etag = EXCLUDED.etag, checksum = EXCLUDED.checksum, size = EXCLUDED.size, "
+      + "created_date = now()")
+  Mono<Integer> upsert(long sessionId, int partNumber, String etag, String checksum, long size);
+}
@@ -0,0 +1,16 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSession;
+import java.time.LocalDateTime;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, Long> {
+  @Modifying
+  @Query("DELETE FROM UPLOAD_SESSIONS WHERE created_date < :createdDate")
+  Mono<Integer> deleteAllCreatedBefore(LocalDateTime createdDate);
+}
@@ -1,12 +1,28 @@
 package com.epam.training.microservicefoundation.resourceservice.service;
 
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.DeleteResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import java.net.URI;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.async.ResponsePublisher;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 
 public interface BaseResourceService {
-  Mono<ResponsePublisher<GetObjectResponse>> getById(final long id);
+  Mono<GetResourceMetadataDTO> getMetadataById(final long id);
+  Mono<ResponsePublisher<GetObjectResponse>> getById(final GetResourceMetadataDTO metadata);
+  Mono<CachedFile> getCachedById(final GetResourceMetadataDTO metadata);
+  void releaseCachedFile(final CachedFile file);
+  Mono<CachedContent> getCachedContentById(final long id);
+  void recordContentServed(final CachedContent content);
+  Mono<CachedContent> getContentById(final GetResourceMetadataDTO metadata);
+  Mono<URI> getDownloadUrlById(final GetResourceMetadataDTO metadata, final boolean requested);
+  Mono<ResponsePublisher<GetObjectResponse>> getRangeById(final GetResourceMetadataDTO metadata, final String range,
+      final String ifRange);
   Flux<DeleteResourceDTO> deleteByIds(final Long[] ids);
+  Flux<DeleteResourceDTO> markDeletingByIds(final Long[] ids);
+  Mono<Long> purgeDeletingByStorage(final GetStorageDTO storage, final int batchSize);
 }
@@ -1,19 +1,40 @@
 package com.epam.training.microservicefoundation.resourceservice.service.implementation;
 
 import com.epam.training.microservicefoundation.resourceservice.service.mapper.DeleteResourceMapper;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.context.BaseContext;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.DeleteResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectFileCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectMemoryCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import com.epam.training.microservicefoundation.resourceservice.service.BaseResourceService;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.async.ResponsePublisher;
@@ -27,39 +48,289 @@ public class BaseResourceServiceImpl implements BaseResourceService {
   private final CloudStorageRepository cloudStorageRepository;
   private final StorageManager storageManager;
   private final DeleteResourceMapper deleteResourceMapper;
+  private final ObjectFileCache objectFileCache;
+  private final ObjectMemoryCache objectMemoryCache;
+  private final ResourceLocationCache resourceLocationCache;
 
   @Autowired
   public BaseResourceServiceImpl(ResourceRepository resourceRepository, CloudStorageRepository cloudStorageRepository,
-      StorageManager storageManager, DeleteResourceMapper deleteResourceMapper) {
+      StorageManager storageManager, DeleteResourceMapper deleteResourceMapper, ObjectFileCache objectFileCache,
+      ObjectMemoryCache objectMemoryCache, ResourceLocationCache resourceLocationCache) {
 
     this.resourceRepository = resourceRepository;
     this.cloudStorageRepository = cloudStorageRepository;
     this.storageManager = storageManager;
     this.deleteResourceMapper = deleteResourceMapper;
+    this.objectFileCache = objectFileCache;
+    this.objectMemoryCache = objectMemoryCache;
+    this.resourceLocationCache = resourceLocationCache;
   }
 
+  /**
+   * Gets the metadata of a resource along with the location of its file, which the reads of the request are given, the resource is
+   * looked up once per request at most.
+   */
   @Override
-  public Mono<ResponsePublisher<GetObjectResponse>> getById(final long id) {
-    log.info("Getting file by id '{}'.", id);
-    return resourceRepository.findById(id)
-        .map(BaseContext::new)
-        .flatMap(this::getStorage)
-        .flatMap(context -> cloudStorageRepository.getByKey(context.getResource().getKey(), context.getStorage().getBucket()))
+  public Mono<GetResourceMetadataDTO> getMetadataById(final long id) {
+    log.info("Getting metadata of file by id '{}'.", id);
+    return getContext(id)
+        .map(context -> {
+          final Resource resource = context.getResource();
+          return new GetResourceMetadataDTO(resource.getId(), resource.getName(), resource.getEtag(), resource.getContentType(),
+              resource.getContentLength(), getLastModified(resource), resource.getKey(), context.getStorage().getBucket());
+        })
         .switchIfEmpty(Mono.error(ExceptionSupplier.entityNotFound(Resource.class, id)));
   }
 
+  @Override
+  public Mono<ResponsePublisher<GetObjectResponse>> getById(final GetResourceMetadataDTO metadata) {
+    log.info("Getting file by id '{}'.", metadata.getId());
+    return Mono.defer(() -> cloudStorageRepository.getByKey(metadata.getKey(), metadata.getBucket()));
+  }
+
+  /**
+   * Gets a file from the local file cache, it is downloaded from the storage when it is not cached yet. Empty for a file the cache does
+   * not take, the file is read from the storage by {@link #getById(GetResourceMetadataDTO)} then. The file is kept until it is released
+   * by {@link #releaseCachedFile(CachedFile)}.
+   */
+  @Override
+  public Mono<CachedFile> getCachedById(final GetResourceMetadataDTO metadata) {
+    if (!objectFileCache.isCacheable(metadata.getContentLength())) {
+      return Mono.empty();
+    }
+    log.info("Getting cached file by id '{}'.", metadata.getId());
+    final String key = metadata.getKey();
+    final String bucket = metadata.getBucket();
+    return objectFileCache.get(bucket, key, () -> cloudStorageRepository.getByKey(key, bucket));
+  }
+
+  /**
+   * Releases a file got by {@link #getCachedById(GetResourceMetadataDTO)} once it has been sent, the cache does not delete it before.
+   */
+  @Override
+  public void releaseCachedFile(final CachedFile file) {
+    objectFileCache.release(file);
+  }
+
+  /**
+   * Gets a small file held in memory, its resource is not looked up. Empty when the file is not held in memory, the ones of resources
+   * deleted on this instance are not.
+   */
+  @Override
+  public Mono<CachedContent> getCachedContentById(final long id) {
+    return Mono.justOrEmpty(objectMemoryCache.getIfPresent(id));
+  }
+
+  /**
+   * Records a small file got from memory as served, once it has been written.
+   */
+  @Override
+  public void recordContentServed(final CachedContent content) {
+    objectMemoryCache.recordServed(content);
+  }
+
+  /**
+   * Gets a small file from memory, it is downloaded from the storage when it is not held yet. Empty for a file too large to be held in
+   * memory.
+   */
+  @Override
+  public Mono<CachedContent> getContentById(final GetResourceMetadataDTO metadata) {
+    if (!objectMemoryCache.isCacheable(metadata.getContentLength())) {
+      return Mono.empty();
+    }
+    log.info("Getting file content by id '{}'.", metadata.getId());
+    return objectMemoryCache.get(metadata, () -> cloudStorageRepository.getByKey(metadata.getKey(), metadata.getBucket()));
+  }
+
+  /**
+   * Gets a short-lived URL the file can be downloaded from directly from the storage, when the client asks for it or the file is large
+   * enough not to be passed through the service. Empty otherwise.
+   */
+  @Override
+  public Mono<URI> getDownloadUrlById(final GetResourceMetadataDTO metadata, final boolean requested) {
+    if (!requested && !cloudStorageRepository.isRedirectedDownload(metadata.getContentLength())) {
+      return Mono.empty();
+    }
+    log.info("Getting download url of file by id '{}'.", metadata.getId());
+    return Mono.defer(() -> cloudStorageRepository.presignGetByKey(metadata.getKey(), metadata.getBucket(), metadata.getName()));
+  }
+
+  /**
+   * Gets a byte range of a file. An {@code If-Range} entity tag or date is compared with the ones stored for the resource, or checked by
+   * the storage along with the read for resources stored without them. A weak entity tag or an invalid date never matches, the whole file
+   * is returned then.
+   */
+  @Override
+  public Mono<ResponsePublisher<GetObjectResponse>> getRangeById(final GetResourceMetadataDTO metadata, final String range,
+      final String ifRange) {
+    log.info("Getting range '{}' of file by id '{}'.", range, metadata.getId());
+    return Mono.defer(() -> {
+      final String key = metadata.getKey();
+      final String bucket = metadata.getBucket();
+      if (!StringUtils.hasText(ifRange)) {
+        return cloudStorageRepository.getRangeByKey(key, bucket, range, null, null);
+      }
+      if (StringUtils.hasText(metadata.getEtag())) {
+        return isIfRangeMatching(metadata, ifRange) ?
+            cloudStorageRepository.getRangeByKey(key, bucket, range, null, null) : cloudStorageRepository.getByKey(key, bucket);
+      }
+      if (ifRange.startsWith("\"")) {
+        return cloudStorageRepository.getRangeByKey(key, bucket, range, ifRange, null);
+      }
+      final Instant lastModified = parseDate(ifRange);
+      return lastModified != null ? cloudStorageRepository.getRangeByKey(key, bucket, range, null, lastModified) :
+          cloudStorageRepository.getByKey(key, bucket);
+    });
+  }
+
+  /**
+   * Deletes resources with a query for all of them, a lookup per storage and a request per thousand stored objects of a bucket. A resource
+   * whose file the storage could not delete is kept and reported with the reason, the others are deleted with a single statement.
+   */
   @Transactional
   @Override
   public Flux<DeleteResourceDTO> deleteByIds(final Long[] ids) {
     log.info("Deleting file(s) by id(s) '{}'", Arrays.toString(ids));
-    return Flux.fromArray(ids)
-        .flatMap(resourceRepository::findById)
+    if (ids.length == 0) {
+      return Flux.empty();
+    }
+    return resourceRepository.findAllByIds(ids)
+        .collectList()
+        .filter(resources -> !resources.isEmpty())
+        .flatMap(resources -> getStorages(resources)
+            // resources whose storage is unknown are not deleted
+            .map(storages -> resources.stream()
+                .filter(resource -> storages.containsKey(resource.getStorageId()))
+                .map(resource -> new BaseContext(resource, storages.get(resource.getStorageId())))
+                .toList()))
+        .filter(contexts -> !contexts.isEmpty())
+        .flatMapMany(this::deleteAll);
+  }
+
+  /**
+   * Marks resources as deleting with a single statement, they are not found anymore from then on. Their files and rows are removed later
+   * by the reaper.
+   */
+  @Transactional
+  @Override
+  public Flux<DeleteResourceDTO> markDeletingByIds(final Long[] ids) {
+    log.info("Marking file(s) by id(s) '{}' as deleting", Arrays.toString(ids));
+    if (ids.length == 0) {
+      return Flux.empty();
+    }
+    return resourceRepository.updateAllStatusByIds(ids, ResourceStatus.DELETING.name())
+        .doOnNext(resource -> {
+          resourceLocationCache.invalidate(resource.getId());
+          objectMemoryCache.invalidate(resource.getId());
+        })
+        .map(deleteResourceMapper::toDto);
+  }
+
+  /**
+   * Removes a batch of resources marked as deleting in a storage, together with their files. A resource whose file the storage could not
+   * delete stays marked, it is taken again by a later batch.
+   *
+   * @return number of removed resources
+   */
+  @Transactional
+  @Override
+  public Mono<Long> purgeDeletingByStorage(final GetStorageDTO storage, final int batchSize) {
+    return resourceRepository.findAllByStatusAndStorageIdForUpdate(ResourceStatus.DELETING.name(), storage.getId(), batchSize)
+        .map(resource -> new BaseContext(resource, storage))
+        .collectList()
+        .filter(contexts -> !contexts.isEmpty())
+        .flatMapMany(this::deleteAll)
+        .filter(deleted -> deleted.getError() == null)
+        .count();
+  }
+
+  private Mono<Map<Long, GetStorageDTO>> getStorages(final List<Resource> resources) {
+    return Flux.fromStream(resources.stream().map(Resource::getStorageId).distinct())
+        .flatMap(storageId -> storageManager.getById(storageId).map(storage -> Map.entry(storageId, storage)))
+        .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+  }
+
+  private Flux<DeleteResourceDTO> deleteAll(final List<BaseContext> contexts) {
+    final Set<Long> ids = contexts.stream().map(context -> context.getResource().getId()).collect(Collectors.toSet());
+    final String[] keys = contexts.stream().map(context -> context.getResource().getKey()).distinct().toArray(String[]::new);
+    // resources with identical content share the stored object, which is deleted together with its last reference. The references are
+    // read once they are locked, a resource reusing the object under a share lock has been committed by then or waits for the deletion
+    return resourceRepository.lockAllByKeys(keys)
+        .thenMany(Flux.defer(() -> resourceRepository.findAllByKeys(keys)))
+        .filter(reference -> !ids.contains(reference.getId()))
+        .map(Resource::getKey)
+        .collect(Collectors.toSet())
+        .flatMap(referencedKeys -> deleteStoredObjects(contexts, referencedKeys))
+        .flatMapMany(failures -> {
+          final List<BaseContext> deleted = new ArrayList<>();
+          final List<DeleteResourceDTO> failed = new ArrayList<>();
+          for (BaseContext context : contexts) {
+            final String failure = failures.get(getLocation(context));
+            if (failure == null) {
+              deleted.add(context);
+            } else {
+              failed.add(DeleteResourceDTO.failed(context.getResource().getId(), failure));
+            }
+          }
+          final Mono<Integer> deletion = deleted.isEmpty() ? Mono.empty() : resourceRepository.deleteAllByIds(deleted.stream()
+              .map(context -> context.getResource().getId())
+              .toArray(Long[]::new));
+          return deletion.thenMany(Flux.fromIterable(deleted))
+              .doOnNext(context -> {
+                resourceLocationCache.invalidate(context.getResource().getId());
+                objectMemoryCache.invalidate(context.getResource().getId());
+              })
+              .map(context -> deleteResourceMapper.toDto(context.getResource()))
+              .concatWith(Flux.fromIterable(failed));
+        });
+  }
+
+  // the objects of every bucket are deleted concurrently, the ones that could not be deleted are returned by their location
+  private Mono<Map<String, String>> deleteStoredObjects(final List<BaseContext> contexts, final Set<String> referencedKeys) {
+    final Map<String, Set<String>> keysByBucket = contexts.stream()
+        .filter(context -> !referencedKeys.contains(context.getResource().getKey()))
+        .collect(Collectors.groupingBy(context -> context.getStorage().getBucket(),
+            Collectors.mapping(context -> context.getResource().getKey(), Collectors.toSet())));
+    return Flux.fromIterable(keysByBucket.entrySet())
+        .flatMap(bucket -> cloudStorageRepository.deleteAllByKeys(bucket.getValue(), bucket.getKey())
+            .flatMapIterable(Map::entrySet)
+            .map(failure -> Map.entry(bucket.getKey() + '/' + failure.getKey(), failure.getValue())))
+        .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+  }
+
+  private String getLocation(final BaseContext context) {
+    return context.getStorage().getBucket() + '/' + context.getResource().getKey();
+  }
+
+  private boolean isIfRangeMatching(final GetResourceMetadataDTO metadata, final String ifRange) {
+    if (ifRange.startsWith("\"")) {
+      return ifRange.equals(metadata.getEtag());
+    }
+    final Instant date = parseDate(ifRange);
+    return date != null && date.equals(metadata.getLastModified());
+  }
+
+  // the content of a resource is not modified after it has been uploaded
+  private Instant getLastModified(final Resource resource) {
+    return resource.getCreatedDate() == null ? null :
+        resource.getCreatedDate().atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.SECONDS);
+  }
+
+  private Instant parseDate(final String value) {
+    try {
+      return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+    } catch (DateTimeParseException exception) {
+      return null;
+    }
+  }
+
+  // the storage is looked up along with the resource, a request reading the metadata of a file goes on to read the file. A cached
+  // resource is not checked again, the ones deleted or moved on another instance are seen once their entry expires
+  private Mono<BaseContext> getContext(final long id) {
+    return resourceLocationCache.get(id, () -> resourceRepository.findById(id)
+        .filter(resource -> resource.getStatus() != ResourceStatus.DELETING)
         .map(BaseContext::new)
-        .flatMap(this::getStorage)
-        .flatMap(context -> cloudStorageRepository.deleteByKey(context.getResource().getKey(), context.getStorage().getBucket())
-            .thenReturn(context))
-        .flatMap(context -> resourceRepository.delete(context.getResource()).thenReturn(context))
-        .map(context -> deleteResourceMapper.toDto(context.getResource()));
+        .flatMap(this::getStorage));
   }
 
   private Mono<BaseContext> getStorage(final BaseContext context) {
@@ -0,0 +1,241 @@
+package com.epam.training.microservicefoundation.resourceservice.service.implementation;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
+import com.epam.training.microservicefoundation.resourceservice.domain.context.BaseContext;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.SaveResourceResultDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
+import com.epam.training.microservicefoundation.resourceservice.domain.event.ResourceStagedEvent;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityExistsException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
+import com.epam.training.microservicefoundation.resourceservice.kafka.producer.KafkaProducer;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stores the files of a batch upload. The files are stored concurrently as they are read from the request, the stored ones are saved and
+ * published in groups, so that a group takes a single query for existing names and contents, a single insert and a single producer
+ * batch. A result is returned for every file as soon as its group has been saved.
+ */
+@Service
+public class BatchResourceService {
+  private static final Logger log = LoggerFactory.getLogger(BatchResourceService.class);
+  private final ResourceRepository resourceRepository;
+  private final CloudStorageRepository cloudStorageRepository;
+  private final KafkaProducer kafkaProducer;
+  private final StorageManager storageManager;
+  private final StageResourceService stageResourceService;
+  private final ResourceLocationCache resourceLocationCache;
+  private final TransactionalOperator transactionalOperator;
+  private final S3ClientConfigurationProperties.Upload properties;
+
+  @Autowired
+  public BatchResourceService(ResourceRepository resourceRepository, CloudStorageRepository cloudStorageRepository,
+      KafkaProducer kafkaProducer, StorageManager storageManager, StageResourceService stageResourceService,
+      ResourceLocationCache resourceLocationCache, TransactionalOperator transactionalOperator,
+      S3ClientConfigurationProperties properties) {
+    this.resourceRepository = resourceRepository;
+    this.cloudStorageRepository = cloudStorageRepository;
+    this.kafkaProducer = kafkaProducer;
+    this.storageManager = storageManager;
+    this.stageResourceService = stageResourceService;
+    this.resourceLocationCache = resourceLocationCache;
+    this.transactionalOperator = transactionalOperator;
+    this.properties = properties.getUpload();
+  }
+
+  public Flux<SaveResourceResultDTO> saveAllToStage(Flux<FilePart> files) {
+    log.info("Saving batch of files.");
+    // the staging storage is looked up once for the whole batch
+    final Mono<GetStorageDTO> storage = storageManager.getByType(StorageType.STAGING).cache();
+
+    return files
+        .index()
+        .map(file -> {
+          if (file.getT1() >= properties.getBatchMaxFiles()) {
+            throw ExceptionSupplier.invalidRequest(FilePart.class).get();
+          }
+          return file.getT2();
+        })
+        // the response has started by the time a file fails, the failure is reported along with the results of the other files
+        .flatMap(file -> storage.flatMap(staging -> cloudStorageRepository.upload(new ResourceFile(file, staging)))
+            .cast(Object.class)
+            .onErrorResume(error -> {
+              log.warn("Storing file '{}' of batch upload failed", file.filename(), error);
+              return Mono.just(SaveResourceResultDTO.failed(file.filename(), error.getMessage()));
+            }), properties.getBatchConcurrency())
+        .bufferTimeout(properties.getBatchSize(), properties.getBatchWindow())
+        .concatMap(results -> {
+          final List<ResourceFile> stored = results.stream()
+              .filter(ResourceFile.class::isInstance)
+              .map(ResourceFile.class::cast)
+              .toList();
+          final Flux<SaveResourceResultDTO> saved = stored.isEmpty() ? Flux.empty() :
+              storage.flatMapMany(staging -> saveStored(stored, staging));
+          return saved.concatWith(Flux.fromStream(results.stream()
+              .filter(SaveResourceResultDTO.class::isInstance)
+              .map(SaveResourceResultDTO.class::cast)));
+        })
+        // files stored but not saved yet, when the batch fails
+        .doOnDiscard(ResourceFile.class, this::deleteStoredFile);
+  }
+
+  private Flux<SaveResourceResultDTO> saveStored(List<ResourceFile> files, GetStorageDTO storage) {
+    return resourceRepository.findAllByNameIn(files.stream().map(ResourceFile::getFilename).toList())
+        .map(Resource::getName)
+        .collect(Collectors.toSet())
+        .flatMapMany(existing -> {
+          final List<SaveResourceResultDTO> rejected = new ArrayList<>();
+          final Map<String, ResourceFile> filesByName = new LinkedHashMap<>();
+          final Set<String> names = new HashSet<>(existing);
+          for (ResourceFile file : files) {
+            if (!names.add(file.getFilename())) {
+              rejected.add(SaveResourceResultDTO.failed(file.getFilename(),
+                  ExceptionSupplier.entityAlreadyExists(Resource.class, null).get().getMessage()));
+              deleteStoredFile(file);
+            } else {
+              filesByName.put(file.getFilename(), file);
+            }
+          }
+          if (filesByName.isEmpty()) {
+            return Flux.fromIterable(rejected);
+          }
+
+          // the resources are saved only if their staged events are published, otherwise they would never be processed
+          return transactionalOperator.transactional(stageAll(List.copyOf(filesByName.values()), storage))
+              .collectList()
+              .doOnNext(saved -> {
+                cacheLocations(saved, storage);
+                deleteReusedCopies(saved, filesByName);
+              })
+              .flatMapIterable(saved -> saved)
+              .map(resource -> SaveResourceResultDTO.saved(resource.getName(), resource.getId()))
+              .onErrorResume(error -> !(error instanceof DataIntegrityViolationException), error -> {
+                log.error("Saving batch of {} files failed", filesByName.size(), error);
+                filesByName.values().forEach(this::deleteStoredFile);
+                return Flux.fromIterable(filesByName.keySet()).map(name -> SaveResourceResultDTO.failed(name, error.getMessage()));
+              })
+              .onErrorResume(DataIntegrityViolationException.class, error -> {
+                log.warn("Saving batch of {} files failed, saving them one by one", filesByName.size(), error);
+                return Flux.fromIterable(filesByName.values()).concatMap(file -> saveOne(file, storage));
+              })
+              .concatWith(Flux.fromIterable(rejected));
+        });
+  }
+
+  // the resources with stored content are locked until the ones reusing it are committed, so that the objects are not deleted meanwhile
+  private Flux<Resource> stageAll(List<ResourceFile> files, GetStorageDTO storage) {
+    final String[] hashes = files.stream()
+        .map(ResourceFile::getContentHash)
+        .filter(StringUtils::hasText)
+        .distinct()
+        .toArray(String[]::new);
+
+    return (hashes.length == 0 ? Mono.just(Map.<String, Resource>of()) : resourceRepository.findAllByContentHashesForShare(hashes)
+            .collectMap(Resource::getContentHash, Function.identity()))
+        .flatMapMany(stored -> {
+          final List<Resource> staged = new ArrayList<>();
+          final List<Resource> duplicates = new ArrayList<>();
+          for (ResourceFile file : files) {
+            final Resource reused = stored.get(file.getContentHash());
+            if (reused == null) {
+              staged.add(toResource(file, storage));
+            } else {
+              // the resource refers to the object already stored with the same content by a processed resource
+              duplicates.add(toResource(file, storage).toBuilder()
+                  .key(reused.getKey())
+                  .status(reused.getStatus())
+                  .storageId(reused.getStorageId())
+                  .checksum(reused.getChecksum())
+                  .etag(reused.getEtag())
+                  .contentType(reused.getContentType())
+                  .contentLength(reused.getContentLength())
+                  .build());
+            }
+          }
+
+          final List<Resource> resources = new ArrayList<>(staged);
+          resources.addAll(duplicates);
+          return resourceRepository.insertAll(resources)
+              .collectList()
+              .flatMapMany(saved -> publishStaged(saved, staged.size()));
+        });
+  }
+
+  private Flux<Resource> publishStaged(List<Resource> saved, int stagedCount) {
+    // duplicates refer to content that has already been staged
+    final List<Resource> staged = saved.subList(0, stagedCount);
+    if (staged.isEmpty()) {
+      return Flux.fromIterable(saved);
+    }
+    return kafkaProducer.publishAll(staged.stream().map(resource -> new ResourceStagedEvent(resource.getId())).toList())
+        .thenMany(Flux.fromIterable(saved));
+  }
+
+  // duplicates refer to the storage of the content they reuse, which is looked up on their first read
+  private void cacheLocations(List<Resource> saved, GetStorageDTO storage) {
+    saved.stream()
+        .filter(resource -> resource.getStorageId() == storage.getId())
+        .forEach(resource -> resourceLocationCache.put(new BaseContext(resource, storage)));
+  }
+
+  // the resource is staged on its own, it reuses stored content the same way as a single upload
+  private Mono<SaveResourceResultDTO> saveOne(ResourceFile file, GetStorageDTO storage) {
+    return stageResourceService.saveToStage(toResource(file, storage), storage)
+        .map(saved -> SaveResourceResultDTO.saved(file.getFilename(), saved.getId()))
+        .onErrorResume(EntityExistsException.class, error -> Mono.just(SaveResourceResultDTO.failed(file.getFilename(),
+            error.getMessage())))
+        .onErrorResume(error -> !(error instanceof EntityExistsException), error -> {
+          log.error("Saving file '{}' of batch upload failed", file.getFilename(), error);
+          return Mono.just(SaveResourceResultDTO.failed(file.getFilename(), error.getMessage()));
+        });
+  }
+
+  private Resource toResource(ResourceFile file, GetStorageDTO storage) {
+    return Resource.builder()
+        .key(file.getKey())
+        .name(file.getFilename())
+        .status(ResourceStatus.STAGED)
+        .storageId(storage.getId())
+        .contentHash(file.getContentHash())
+        .checksum(file.getChecksum())
+        .etag(file.getEtag())
+        .contentType(file.getContentType())
+        .contentLength(file.getContentLength())
+        .build();
+  }
+
+  // the uploaded copies of reused content are not kept once the resources referring to the stored objects are committed
+  private void deleteReusedCopies(List<Resource> saved, Map<String, ResourceFile> filesByName) {
+    saved.stream()
+        .filter(resource -> !resource.getKey().equals(filesByName.get(resource.getName()).getKey()))
+        .forEach(resource -> deleteStoredFile(filesByName.get(resource.getName())));
+  }
+
+  private void deleteStoredFile(ResourceFile file) {
+    cloudStorageRepository.deleteByKey(file.getKey(), file.getStorage().getBucket())
+        .subscribe(null, error -> log.warn("Deleting stored file '{}' of batch upload failed", file.getKey(), error));
+  }
+}
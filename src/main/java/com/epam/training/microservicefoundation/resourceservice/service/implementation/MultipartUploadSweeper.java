@@ -0,0 +1,129 @@
+package com.epam.training.microservicefoundation.resourceservice.service.implementation;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+
+/**
+ * Aborts multipart uploads that were neither completed nor aborted by the upload pipeline, e.g. when the instance was stopped in the
+ * middle of an upload. The storage keeps and bills the parts of such uploads until they are aborted.
+ */
+@Service
+@ConditionalOnProperty(prefix = S3ClientConfigurationProperties.PREFIX + ".sweeper", name = "enabled", havingValue = "true",
+    matchIfMissing = true)
+public class MultipartUploadSweeper {
+  private static final Logger log = LoggerFactory.getLogger(MultipartUploadSweeper.class);
+  private final StorageManager storageManager;
+  private final CloudStorageRepository cloudStorageRepository;
+  private final UploadSessionRepository uploadSessionRepository;
+  private final S3ClientConfigurationProperties.Sweeper properties;
+  private final MeterRegistry meterRegistry;
+  private final Timer sweepTimer;
+  private Disposable subscription;
+
+  @Autowired
+  public MultipartUploadSweeper(StorageManager storageManager, CloudStorageRepository cloudStorageRepository,
+      UploadSessionRepository uploadSessionRepository, S3ClientConfigurationProperties properties, MeterRegistry meterRegistry) {
+    this.storageManager = storageManager;
+    this.cloudStorageRepository = cloudStorageRepository;
+    this.uploadSessionRepository = uploadSessionRepository;
+    this.properties = properties.getSweeper();
+    this.meterRegistry = meterRegistry;
+    this.sweepTimer = Timer.builder("s3.multipart.sweeper.duration")
+        .description("Time taken to look up and abort orphaned multipart uploads in all storages")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationStartedEvent.class)
+  public void subscribe() {
+    subscription = Flux.interval(properties.getInitialDelay(), properties.getInterval())
+        .onBackpressureDrop(tick -> log.warn("Skipping multipart upload sweep, the previous one is still running"))
+        .flatMap(tick -> sweep(), 1)
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void dispose() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  public Mono<Long> sweep() {
+    return Mono.defer(() -> {
+      final Instant initiatedBefore = Instant.now().minus(properties.getMaxAge());
+      final Timer.Sample sample = Timer.start(meterRegistry);
+      log.info("Sweeping multipart uploads initiated before {}", initiatedBefore);
+
+      return Flux.fromArray(StorageType.values())
+          .concatMap(storageManager::getAllByType)
+          .distinct(storage -> storage.getBucket() + "/" + storage.getPath())
+          .concatMap(storage -> sweep(storage, initiatedBefore))
+          .reduce(0L, Long::sum)
+          // resumable upload sessions cannot be continued once their uploads are aborted
+          .flatMap(aborted -> uploadSessionRepository
+              .deleteAllCreatedBefore(LocalDateTime.ofInstant(initiatedBefore, ZoneId.systemDefault()))
+              .doOnNext(deleted -> log.info("Multipart upload sweep deleted {} expired upload sessions", deleted))
+              .thenReturn(aborted))
+          .doOnNext(aborted -> log.info("Multipart upload sweep aborted {} orphaned uploads", aborted))
+          .doOnError(error -> log.error("Multipart upload sweep failed", error))
+          .onErrorResume(error -> Mono.just(0L))
+          .doFinally(signal -> sample.stop(sweepTimer));
+    });
+  }
+
+  private Mono<Long> sweep(GetStorageDTO storage, Instant initiatedBefore) {
+    final Counter aborted = counter("s3.multipart.sweeper.aborted", storage.getBucket());
+    final Counter failed = counter("s3.multipart.sweeper.failed", storage.getBucket());
+
+    return cloudStorageRepository.getMultipartUploads(storage.getBucket(), storage.getPath())
+        .filter(upload -> upload.initiated() != null && upload.initiated().isBefore(initiatedBefore))
+        // throttles abort requests as well as listing of further pages
+        .delayElements(properties.getAbortDelay())
+        .concatMap(upload -> abort(storage, upload)
+            .doOnNext(success -> (success ? aborted : failed).increment()))
+        .filter(Boolean::booleanValue)
+        .count()
+        .onErrorResume(error -> {
+          log.error("Listing multipart uploads in bucket '{}' failed", storage.getBucket(), error);
+          return Mono.just(0L);
+        });
+  }
+
+  private Mono<Boolean> abort(GetStorageDTO storage, MultipartUpload upload) {
+    log.info("Aborting orphaned multipart upload '{}' of file '{}' initiated at {}", upload.uploadId(), upload.key(),
+        upload.initiated());
+    return cloudStorageRepository.abortMultipartUpload(storage.getBucket(), upload.key(), upload.uploadId())
+        .thenReturn(true)
+        .onErrorResume(error -> {
+          log.warn("Aborting orphaned multipart upload '{}' of file '{}' failed", upload.uploadId(), upload.key(), error);
+          return Mono.just(false);
+        });
+  }
+
+  private Counter counter(String name, String bucket) {
+    return Counter.builder(name)
+        .tag("bucket", bucket)
+        .register(meterRegistry);
+  }
+}
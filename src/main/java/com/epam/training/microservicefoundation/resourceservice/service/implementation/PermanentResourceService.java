@@ -7,10 +7,10 @@ import com.epam.training.microservicefoundation.resourceservice.domain.entity.Re
 import com.epam.training.microservicefoundation.resourceservice.domain.event.ResourceProcessedEvent;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
@@ -22,23 +22,26 @@ public class PermanentResourceService {
   private final StorageManager storageManager;
   private final ResourceRepository resourceRepository;
   private final CloudStorageRepository cloudStorageRepository;
+  private final ResourceLocationCache resourceLocationCache;
 
   public PermanentResourceService(StorageManager storageManager, ResourceRepository resourceRepository,
-      CloudStorageRepository cloudStorageRepository) {
+      CloudStorageRepository cloudStorageRepository, ResourceLocationCache resourceLocationCache) {
     this.storageManager = storageManager;
     this.resourceRepository = resourceRepository;
     this.cloudStorageRepository = cloudStorageRepository;
+    this.resourceLocationCache = resourceLocationCache;
   }
 
   @Transactional
   public Mono<Void> saveToPermanent(final ResourceProcessedEvent event) {
     log.info("Moving resource with id = {} to permanent.", event.getId());
     return resourceRepository.findById(event.getId())
+        // a resource deleted while it was being processed is left to the reaper
+        .filter(resource -> resource.getStatus() != ResourceStatus.DELETING)
         .map(resource -> new ResourcePermanentContext().withResource(resource))
         .flatMap(this::getStorage)
         .flatMap(this::getDestinationStorage)
-        .flatMap(this::moveToPermanentStorage)
-        .flatMap(this::saveProcessedResource);
+        .flatMap(this::moveToPermanentStorage);
   }
 
   private Mono<ResourcePermanentContext> getStorage(final ResourcePermanentContext context) {
@@ -50,19 +53,17 @@ public class PermanentResourceService {
         .map(context::withDestinationStorage);
   }
 
-  private Mono<ResourcePermanentContext> moveToPermanentStorage(final ResourcePermanentContext context) {
-    return cloudStorageRepository.move(context.getResource().getKey(), context.getSourceStorage(), context.getDestinationStorage())
-        .map(key -> context.withResource(context.getResource().toBuilder().key(key).build()));
-  }
-
-  private Mono<Void> saveProcessedResource(final ResourcePermanentContext context) {
-    final Resource resource = context.getResource().toBuilder()
-        .status(ResourceStatus.PROCESSED)
-        .storageId(context.getDestinationStorage().getId())
-        .build();
-
-    return resourceRepository.save(resource)
-        .onErrorMap(TransientDataAccessException.class, error -> ExceptionSupplier.entityNotFound(Resource.class, resource.getId()).get())
+  // the update sets the key, storage and status of every resource of the object, one marked as deleting meanwhile keeps its mark
+  private Mono<Void> moveToPermanentStorage(final ResourcePermanentContext context) {
+    final Resource resource = context.getResource();
+    return cloudStorageRepository.move(resource.getKey(), context.getSourceStorage(), context.getDestinationStorage())
+        // resources with identical content refer to the same object and follow it to the permanent storage
+        .flatMap(key -> resourceRepository.updateAllByKey(resource.getKey(), key, context.getDestinationStorage().getId(),
+                ResourceStatus.PROCESSED.name())
+            // the cached resources still refer to the staging object, which is gone
+            .doOnSuccess(updated -> resourceLocationCache.invalidateByKey(resource.getKey()))
+            .filter(updated -> updated > 0)
+            .switchIfEmpty(Mono.error(ExceptionSupplier.entityNotFound(Resource.class, resource.getId()))))
         .then();
   }
 }
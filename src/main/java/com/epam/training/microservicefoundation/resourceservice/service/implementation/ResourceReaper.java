@@ -0,0 +1,103 @@
+package com.epam.training.microservicefoundation.resourceservice.service.implementation;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.BaseResourceService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Removes the files and rows of resources marked as deleting. The storages are reaped in parallel, the resources of a storage in
+ * batches with a pause in between, until a batch comes out smaller than requested.
+ */
+@Service
+@ConditionalOnProperty(prefix = ResourceDeletionProperties.PREFIX + ".reaper", name = "enabled", havingValue = "true",
+    matchIfMissing = true)
+public class ResourceReaper {
+  private static final Logger log = LoggerFactory.getLogger(ResourceReaper.class);
+  private final BaseResourceService baseResourceService;
+  private final ResourceRepository resourceRepository;
+  private final StorageManager storageManager;
+  private final ResourceDeletionProperties.Reaper properties;
+  private final MeterRegistry meterRegistry;
+  private final Timer reapTimer;
+  private Disposable subscription;
+
+  @Autowired
+  public ResourceReaper(BaseResourceService baseResourceService, ResourceRepository resourceRepository, StorageManager storageManager,
+      ResourceDeletionProperties properties, MeterRegistry meterRegistry) {
+    this.baseResourceService = baseResourceService;
+    this.resourceRepository = resourceRepository;
+    this.storageManager = storageManager;
+    this.properties = properties.getReaper();
+    this.meterRegistry = meterRegistry;
+    this.reapTimer = Timer.builder("resource.reaper.duration")
+        .description("Time taken to remove the resources marked as deleting in all storages")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationStartedEvent.class)
+  public void subscribe() {
+    subscription = Flux.interval(properties.getInitialDelay(), properties.getInterval())
+        .onBackpressureDrop(tick -> log.warn("Skipping resource reaping, the previous one is still running"))
+        .flatMap(tick -> reap(), 1)
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void dispose() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  public Mono<Long> reap() {
+    return Mono.defer(() -> {
+      final Timer.Sample sample = Timer.start(meterRegistry);
+      return resourceRepository.findAllStorageIdsByStatus(ResourceStatus.DELETING.name())
+          .flatMap(storageId -> storageManager.getById(storageId)
+              .switchIfEmpty(Mono.fromRunnable(() -> log.warn("Storage '{}' of resources marked as deleting not found", storageId)))
+              .onErrorResume(error -> {
+                log.error("Getting storage '{}' of resources marked as deleting failed", storageId, error);
+                return Mono.empty();
+              }), properties.getConcurrency())
+          .flatMap(this::reap, properties.getConcurrency())
+          .reduce(0L, Long::sum)
+          .doOnNext(purged -> log.info("Resource reaping removed {} resources", purged))
+          .doOnError(error -> log.error("Resource reaping failed", error))
+          .onErrorResume(error -> Mono.just(0L))
+          .doFinally(signal -> sample.stop(reapTimer));
+    });
+  }
+
+  private Mono<Long> reap(GetStorageDTO storage) {
+    final Counter purged = Counter.builder("resource.reaper.purged")
+        .tag("bucket", storage.getBucket())
+        .register(meterRegistry);
+
+    return baseResourceService.purgeDeletingByStorage(storage, properties.getBatchSize())
+        .doOnNext(purged::increment)
+        // the next batch is taken after a pause, as long as the last one was full
+        .repeatWhen(batches -> batches.delayElements(properties.getBatchDelay()))
+        .takeUntil(count -> count < properties.getBatchSize())
+        .reduce(0L, Long::sum)
+        .onErrorResume(error -> {
+          log.error("Removing resources marked as deleting in bucket '{}' failed", storage.getBucket(), error);
+          return Mono.just(0L);
+        });
+  }
+}
@@ -0,0 +1,258 @@
+package com.epam.training.microservicefoundation.resourceservice.service.implementation;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreatePresignedUploadDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreateUploadSessionDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetPresignedPartDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetPresignedUploadDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetUploadPartDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetUploadSessionDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSession;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSessionPart;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionPartRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+/**
+ * Uploads a file in numbered parts over several requests. The session and the completed parts are persisted, so that an interrupted
+ * upload can be continued on any instance. No transaction is spanned over storage calls, a part upload must not hold a connection.
+ * Parts of presigned sessions bypass the service, they are sent to the storage by the client.
+ */
+@Service
+public class ResumableUploadService {
+  private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+  private final UploadSessionRepository uploadSessionRepository;
+  private final UploadSessionPartRepository uploadSessionPartRepository;
+  private final ResourceRepository resourceRepository;
+  private final CloudStorageRepository cloudStorageRepository;
+  private final StorageManager storageManager;
+  private final StageResourceService stageResourceService;
+  private final S3ClientConfigurationProperties properties;
+
+  @Autowired
+  public ResumableUploadService(UploadSessionRepository uploadSessionRepository, UploadSessionPartRepository uploadSessionPartRepository,
+      ResourceRepository resourceRepository, CloudStorageRepository cloudStorageRepository, StorageManager storageManager,
+      StageResourceService stageResourceService, S3ClientConfigurationProperties properties) {
+    this.uploadSessionRepository = uploadSessionRepository;
+    this.uploadSessionPartRepository = uploadSessionPartRepository;
+    this.resourceRepository = resourceRepository;
+    this.cloudStorageRepository = cloudStorageRepository;
+    this.storageManager = storageManager;
+    this.stageResourceService = stageResourceService;
+    this.properties = properties;
+  }
+
+  public Mono<GetUploadSessionDTO> create(CreateUploadSessionDTO request) {
+    log.info("Creating upload session for file '{}'", request.getFilename());
+    return createSession(request.getFilename(), request.getContentType(), null, CreateUploadSessionDTO.class)
+        .map(sessionAndStorage -> toDto(sessionAndStorage.getT1(), List.of()));
+  }
+
+  /**
+   * Creates an upload session whose parts are sent by the client to the storage directly, over the returned presigned URLs. The file is
+   * not read by the service, it is verified in the storage when the session is completed.
+   */
+  public Mono<GetPresignedUploadDTO> createPresigned(CreatePresignedUploadDTO request) {
+    log.info("Creating presigned upload session for file '{}' of {} bytes", request.getFilename(), request.getContentLength());
+    if (request.getContentLength() <= 0
+        || request.getContentLength() > properties.getMultipartMaxParts() * properties.getMultipartMaxPartSize()) {
+      return Mono.error(ExceptionSupplier.invalidRequest(CreatePresignedUploadDTO.class).get());
+    }
+
+    return createSession(request.getFilename(), request.getContentType(), request.getContentLength(), CreatePresignedUploadDTO.class)
+        .map(sessionAndStorage -> {
+          final UploadSession session = sessionAndStorage.getT1();
+          final List<GetPresignedPartDTO> parts = cloudStorageRepository.presignUploadParts(sessionAndStorage.getT2().getBucket(),
+              session.getKey(), session.getUploadId(), request.getContentLength());
+          return new GetPresignedUploadDTO(session.getId(), session.getName(), session.getContentType(), request.getContentLength(),
+              parts);
+        });
+  }
+
+  private Mono<Tuple2<UploadSession, GetStorageDTO>> createSession(String filename, String contentType, Long contentLength,
+      Class<?> requestClass) {
+    if (!StringUtils.hasText(filename)) {
+      return Mono.error(ExceptionSupplier.invalidRequest(requestClass).get());
+    }
+    final MediaType mediaType;
+    try {
+      mediaType = StringUtils.hasText(contentType) ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+    } catch (InvalidMediaTypeException exception) {
+      return Mono.error(ExceptionSupplier.invalidRequest(requestClass).get());
+    }
+
+    return resourceRepository.existsByName(filename)
+        .flatMap(exists -> Boolean.TRUE.equals(exists) ?
+            Mono.<GetStorageDTO>error(ExceptionSupplier.entityAlreadyExists(Resource.class, null).get()) :
+            storageManager.getByType(StorageType.STAGING))
+        .flatMap(storage -> {
+          final String key = storage.getPath() + UUID.randomUUID();
+          return cloudStorageRepository.createMultipartUpload(storage.getBucket(), key, mediaType, Map.of("filename", filename),
+                  isChecksumEnabled(contentLength))
+              .flatMap(uploadId -> uploadSessionRepository.save(UploadSession.builder()
+                      .uploadId(uploadId)
+                      .key(key)
+                      .name(filename)
+                      .contentType(mediaType.toString())
+                      .contentLength(contentLength)
+                      .storageId(storage.getId())
+                      .build())
+                  .onErrorResume(error -> cloudStorageRepository.abortMultipartUpload(storage.getBucket(), key, uploadId)
+                      .onErrorResume(abortError -> Mono.empty())
+                      .then(Mono.error(error))))
+              .map(session -> Tuples.of(session, storage));
+        });
+  }
+
+  /**
+   * Uploads a part, it is held in memory until it has been sent, so it may not be larger than the upload memory budget. Every part but the
+   * last one has to take the minimal part size, a part breaking this with the parts uploaded already is rejected before it is sent.
+   */
+  public Mono<GetUploadPartDTO> uploadPart(long sessionId, int partNumber, long contentLength, Flux<DataBuffer> content) {
+    log.info("Uploading part {} of upload session {}", partNumber, sessionId);
+    if (partNumber < 1 || partNumber > properties.getMultipartMaxParts() || contentLength < 0
+        || contentLength > Math.min(properties.getMultipartMaxPartSize(), properties.getUpload().getMemoryBudget())) {
+      return Mono.error(ExceptionSupplier.invalidRequest(UploadSessionPart.class).get());
+    }
+
+    return getSession(sessionId)
+        .flatMap(session -> getParts(sessionId)
+            .filter(parts -> isPartSizeValid(parts, partNumber, contentLength))
+            .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(UploadSessionPart.class)))
+            .then(getStorage(session))
+            .flatMap(storage -> cloudStorageRepository.uploadPart(storage.getBucket(), session.getKey(), session.getUploadId(), partNumber,
+                contentLength, content, isChecksumEnabled(session.getContentLength()))))
+        .flatMap(part -> uploadSessionPartRepository.upsert(sessionId, partNumber, part.eTag(), part.checksumCRC32C(), contentLength)
+            .thenReturn(new GetUploadPartDTO(partNumber, part.eTag(), part.checksumCRC32C(), contentLength)));
+  }
+
+  public Mono<GetUploadSessionDTO> getById(long sessionId) {
+    log.info("Getting upload session {}", sessionId);
+    return getSession(sessionId)
+        .zipWith(getParts(sessionId), this::toDto);
+  }
+
+  public Mono<GetResourceDTO> complete(long sessionId) {
+    log.info("Completing upload session {}", sessionId);
+    return getSession(sessionId)
+        .flatMap(session -> getStorage(session)
+            .flatMap(storage -> getCompletedParts(session, storage)
+                // the storage would reject a part smaller than the minimal part size only once all of them have been uploaded
+                .filter(parts -> !parts.isEmpty() && parts.subList(0, parts.size() - 1).stream()
+                    .allMatch(part -> part.getSize() >= properties.getMultipartMinPartSize()))
+                .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(UploadSessionPart.class)))
+                .flatMap(parts -> {
+                  final List<CompletedPart> completedParts = parts.stream()
+                      .map(part -> CompletedPart.builder()
+                          .partNumber(part.getPartNumber())
+                          .eTag(part.getEtag())
+                          .checksumCRC32C(part.getChecksum())
+                          .build())
+                      .toList();
+                  return cloudStorageRepository.completeMultipartUpload(storage.getBucket(), session.getKey(), session.getUploadId(),
+                          completedParts)
+                      .then(verifyStoredFile(session, storage, parts));
+                })
+                .flatMap(metadata -> stageResourceService.saveToStage(Resource.builder()
+                    .key(session.getKey())
+                    .name(session.getName())
+                    .etag(metadata.eTag())
+                    .contentType(metadata.contentType())
+                    .contentLength(metadata.contentLength())
+                    .build(), storage))))
+        .flatMap(resource -> uploadSessionRepository.deleteById(sessionId).thenReturn(resource));
+  }
+
+  public Mono<Void> abort(long sessionId) {
+    log.info("Aborting upload session {}", sessionId);
+    return getSession(sessionId)
+        .flatMap(session -> getStorage(session)
+            .flatMap(storage -> cloudStorageRepository.abortMultipartUpload(storage.getBucket(), session.getKey(), session.getUploadId())))
+        .then(uploadSessionRepository.deleteById(sessionId));
+  }
+
+  private Mono<UploadSession> getSession(long sessionId) {
+    return uploadSessionRepository.findById(sessionId)
+        .switchIfEmpty(Mono.error(ExceptionSupplier.entityNotFound(UploadSession.class, sessionId)));
+  }
+
+  private Mono<List<GetUploadPartDTO>> getParts(long sessionId) {
+    return uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(sessionId)
+        .map(part -> new GetUploadPartDTO(part.getPartNumber(), part.getEtag(), part.getChecksum(), part.getSize()))
+        .collectList();
+  }
+
+  // a part smaller than the minimal part size is the last one, no part is uploaded after it
+  private boolean isPartSizeValid(List<GetUploadPartDTO> parts, int partNumber, long contentLength) {
+    final long minPartSize = properties.getMultipartMinPartSize();
+    return parts.stream().noneMatch(part -> part.getPartNumber() < partNumber && part.getSize() < minPartSize
+        || part.getPartNumber() > partNumber && contentLength < minPartSize);
+  }
+
+  // parts sent through the service go with their checksum, the ones sent over presigned URLs are not seen by the service
+  private boolean isChecksumEnabled(Long contentLength) {
+    return contentLength == null && properties.getUpload().isChecksumEnabled();
+  }
+
+  // parts sent over presigned URLs are not seen by the service, they are listed from the storage
+  private Mono<List<GetUploadPartDTO>> getCompletedParts(UploadSession session, GetStorageDTO storage) {
+    if (session.getContentLength() == null) {
+      return getParts(session.getId());
+    }
+    return cloudStorageRepository.getUploadedParts(storage.getBucket(), session.getKey(), session.getUploadId())
+        .map(part -> new GetUploadPartDTO(part.partNumber(), part.eTag(), part.checksumCRC32C(), part.size()))
+        .collectList();
+  }
+
+  /**
+   * Compares the size of the assembled file with the declared content length, or with the recorded parts. A file of another size is
+   * deleted together with its session, it has to be uploaded again.
+   */
+  private Mono<HeadObjectResponse> verifyStoredFile(UploadSession session, GetStorageDTO storage, List<GetUploadPartDTO> parts) {
+    final long expectedLength = session.getContentLength() != null ? session.getContentLength() :
+        parts.stream().mapToLong(GetUploadPartDTO::getSize).sum();
+    return cloudStorageRepository.getMetadataByKey(session.getKey(), storage.getBucket())
+        .flatMap(metadata -> {
+          if (Long.valueOf(expectedLength).equals(metadata.contentLength())) {
+            return Mono.just(metadata);
+          }
+          log.warn("Stored file '{}' of upload session {} has {} bytes instead of {}", session.getKey(), session.getId(),
+              metadata.contentLength(), expectedLength);
+          return cloudStorageRepository.deleteByKey(session.getKey(), storage.getBucket())
+              .then(uploadSessionRepository.deleteById(session.getId()))
+              .then(Mono.<HeadObjectResponse>error(ExceptionSupplier.invalidRequest(UploadSessionPart.class)));
+        });
+  }
+
+  private Mono<GetStorageDTO> getStorage(UploadSession session) {
+    return storageManager.getById(session.getStorageId())
+        .switchIfEmpty(Mono.error(ExceptionSupplier.entityNotFound(GetStorageDTO.class, session.getStorageId())));
+  }
+
+  private GetUploadSessionDTO toDto(UploadSession session, List<GetUploadPartDTO> parts) {
+    return new GetUploadSessionDTO(session.getId(), session.getName(), session.getContentType(), parts);
+  }
+}
@@ -3,14 +3,17 @@ package com.epam.training.microservicefoundation.resourceservice.service.impleme
 import com.epam.training.microservicefoundation.resourceservice.kafka.producer.KafkaProducer;
 import com.epam.training.microservicefoundation.resourceservice.service.mapper.GetResourceMapper;
 import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
+import com.epam.training.microservicefoundation.resourceservice.domain.context.BaseContext;
 import com.epam.training.microservicefoundation.resourceservice.domain.context.ResourceStagingContext;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
 import com.epam.training.microservicefoundation.resourceservice.domain.event.ResourceStagedEvent;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +21,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
@@ -31,15 +37,18 @@ public class StageResourceService {
   private final KafkaProducer kafkaProducer;
   private final StorageManager storageManager;
   private final GetResourceMapper getResourceMapper;
+  private final ResourceLocationCache resourceLocationCache;
 
   @Autowired
   public StageResourceService(ResourceRepository resourceRepository, CloudStorageRepository cloudStorageRepository,
-      KafkaProducer kafkaProducer, StorageManager storageManager, GetResourceMapper getResourceMapper) {
+      KafkaProducer kafkaProducer, StorageManager storageManager, GetResourceMapper getResourceMapper,
+      ResourceLocationCache resourceLocationCache) {
     this.resourceRepository = resourceRepository;
     this.cloudStorageRepository = cloudStorageRepository;
     this.kafkaProducer = kafkaProducer;
     this.storageManager = storageManager;
     this.getResourceMapper = getResourceMapper;
+    this.resourceLocationCache = resourceLocationCache;
   }
 
 
@@ -57,6 +66,18 @@ public class StageResourceService {
         .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(FilePart.class).get()));
   }
 
+  /**
+   * Saves a resource whose file has already been stored in the given staging storage, e.g. by a resumable upload.
+   */
+  @Transactional
+  public Mono<GetResourceDTO> saveToStage(Resource resource, GetStorageDTO storage) {
+    log.info("Saving uploaded file '{}'.", resource.getKey());
+    return Mono.just(new ResourceStagingContext().withResource(resource).withStorage(storage))
+        .flatMap(this::saveStagedResource)
+        .flatMap(this::publishResourceStagingEvent)
+        .map(context -> getResourceMapper.toDto(context.getResource()));
+  }
+
   private Mono<ResourceStagingContext> refuseIfResourceExistsByName(final ResourceStagingContext context) {
     return resourceRepository.existsByName(context.getFilePart().filename())
         .filter(result -> Boolean.FALSE.equals(result) || !StringUtils.hasLength(context.getFilePart().filename()))
@@ -66,23 +87,92 @@ public class StageResourceService {
   private Mono<ResourceStagingContext> uploadResourceFile(final ResourceStagingContext context) {
     final ResourceFile resourceFile = new ResourceFile(context.getFilePart(), context.getStorage());
     return cloudStorageRepository.upload(resourceFile)
-        .map(result -> context.withResource(Resource.builder().key(result.getKey()).name(result.getFilename()).build()));
+        .map(result -> context.withResource(Resource.builder().key(result.getKey()).name(result.getFilename())
+            .contentHash(result.getContentHash()).checksum(result.getChecksum()).etag(result.getEtag())
+            .contentType(result.getContentType()).contentLength(result.getContentLength()).build()));
   }
 
   private Mono<ResourceStagingContext> publishResourceStagingEvent(final ResourceStagingContext context) {
+    if (context.isDuplicate()) {
+      // the stored content has already been processed
+      return Mono.just(context);
+    }
     return kafkaProducer.publish(new ResourceStagedEvent(context.getResource().getId())).thenReturn(context);
   }
 
   private Mono<ResourceStagingContext> saveStagedResource(final ResourceStagingContext context) {
-    final Resource resource = context.getResource().toBuilder()
-        .status(ResourceStatus.STAGED)
-        .storageId(context.getStorage().getId())
-        .build();
+    final ResourceStagingContext stagedContext = context.withUploadedKey(context.getResource().getKey())
+        .withResource(context.getResource().toBuilder()
+            .status(ResourceStatus.STAGED)
+            .storageId(context.getStorage().getId())
+            .build());
+
+    return reuseStoredContent(stagedContext)
+        .defaultIfEmpty(stagedContext)
+        .flatMap(this::saveResource)
+        .flatMap(this::deleteUploadedCopy)
+        .doOnNext(this::cacheLocation);
+  }
+
+  // a resource reusing stored content refers to the storage of that content, which is looked up on its first read
+  private void cacheLocation(final ResourceStagingContext context) {
+    if (context.getResource().getStorageId() == context.getStorage().getId()) {
+      resourceLocationCache.put(new BaseContext(context.getResource(), context.getStorage()));
+    }
+  }
+
+  private Mono<ResourceStagingContext> reuseStoredContent(final ResourceStagingContext context) {
+    final Resource resource = context.getResource();
+    if (!StringUtils.hasText(resource.getContentHash())) {
+      return Mono.empty();
+    }
+    // the resource refers to the object already stored with the same content, the stored resource is locked until the new one is
+    // committed, so that the object is not deleted meanwhile. Content of a staged resource is not reused, its object is still moved
+    return resourceRepository.findFirstByContentHashForShare(resource.getContentHash())
+        .map(stored -> context.withDuplicate(true).withResource(resource.toBuilder()
+            .key(stored.getKey())
+            .status(stored.getStatus())
+            .storageId(stored.getStorageId())
+            .checksum(stored.getChecksum())
+            .etag(stored.getEtag())
+            .contentType(stored.getContentType())
+            .contentLength(stored.getContentLength())
+            .build()));
+  }
+
+  // the uploaded copy of reused content is not kept, it is deleted once the transaction saving the resource has completed
+  private Mono<ResourceStagingContext> deleteUploadedCopy(final ResourceStagingContext context) {
+    if (!context.isDuplicate()) {
+      return Mono.just(context);
+    }
+    final Mono<Void> deletion = Mono.defer(() -> cloudStorageRepository.deleteByKey(context.getUploadedKey(),
+            context.getStorage().getBucket()))
+        .onErrorResume(error -> {
+          log.warn("Deleting uploaded copy '{}' of stored content failed", context.getUploadedKey(), error);
+          return Mono.empty();
+        });
+    return TransactionSynchronizationManager.forCurrentTransaction()
+        .filter(TransactionSynchronizationManager::isSynchronizationActive)
+        .map(manager -> {
+          manager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public Mono<Void> afterCompletion(int status) {
+              return deletion;
+            }
+          });
+          return context;
+        })
+        .onErrorResume(NoTransactionException.class, error -> Mono.empty())
+        .switchIfEmpty(deletion.thenReturn(context));
+  }
 
+  private Mono<ResourceStagingContext> saveResource(final ResourceStagingContext context) {
+    final Resource resource = context.getResource();
     return resourceRepository.save(resource)
         .map(context::withResource)
-        .onErrorResume(DataIntegrityViolationException.class, error -> // fallback call to clean up resource in cloud.
-            cloudStorageRepository.deleteByKey(resource.getKey(), context.getStorage().getBucket()).then(Mono.error(error)))
+        // fallback call to clean up resource in cloud, the uploaded copy of reused content is not referred to either.
+        .onErrorResume(DataIntegrityViolationException.class, error -> cloudStorageRepository.deleteByKey(context.getUploadedKey(),
+            context.getStorage().getBucket()).then(Mono.error(error)))
         .onErrorMap(DataIntegrityViolationException.class, error -> ExceptionSupplier.entityAlreadyExists(Resource.class, error).get());
   }
 
@@ -0,0 +1,191 @@
+package com.epam.training.microservicefoundation.resourceservice.service.implementation;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.WarmUpProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.UploadPartBuffer;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.annotation.PreDestroy;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Warms the instance up after a start: the storages of every type are looked up, connections are opened to the database and to every
+ * bucket, and synthetic parts are passed through the upload pipeline until its hot methods are compiled. The instance is reported out
+ * of service, to the discovery service and to the readiness probe, until the warm-up completes, fails or times out.
+ */
+@Service
+public class StartupWarmUp implements HealthIndicator {
+  private static final Logger log = LoggerFactory.getLogger(StartupWarmUp.class);
+  private static final int PART_CHUNKS = 4;
+  private final StorageManager storageManager;
+  private final CloudStorageRepository cloudStorageRepository;
+  private final ResourceRepository resourceRepository;
+  private final ConnectionFactory connectionFactory;
+  private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+  private final WarmUpProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+  private volatile boolean warmedUp;
+  private Disposable subscription;
+
+  @Autowired
+  public StartupWarmUp(StorageManager storageManager, CloudStorageRepository cloudStorageRepository, ResourceRepository resourceRepository,
+      ConnectionFactory connectionFactory, ObjectProvider<ApplicationInfoManager> applicationInfoManager, WarmUpProperties properties,
+      MeterRegistry meterRegistry) {
+    this.storageManager = storageManager;
+    this.cloudStorageRepository = cloudStorageRepository;
+    this.resourceRepository = resourceRepository;
+    this.connectionFactory = connectionFactory;
+    this.applicationInfoManager = applicationInfoManager;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @EventListener(ApplicationStartedEvent.class)
+  public void subscribe() {
+    if (!properties.isEnabled()) {
+      complete();
+      return;
+    }
+    subscription = warmUp().subscribe();
+  }
+
+  @PreDestroy
+  public void dispose() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  @Override
+  public Health health() {
+    return warmedUp ? Health.up().build() : Health.outOfService().withDetail("reason", "Warming up").build();
+  }
+
+  public boolean isWarmedUp() {
+    return warmedUp;
+  }
+
+  public Mono<Void> warmUp() {
+    return Mono.defer(() -> {
+      final Timer.Sample sample = Timer.start(meterRegistry);
+      log.info("Warming up");
+      return preloadStorages()
+          .flatMap(storages -> Mono.when(openStorageConnections(storages), openDatabaseConnections(), runSyntheticPasses()))
+          .timeout(properties.getTimeout())
+          .thenReturn("completed")
+          .onErrorResume(error -> {
+            log.warn("Warm-up did not complete, the instance is taken into service anyway", error);
+            return Mono.just("failed");
+          })
+          .doOnNext(outcome -> {
+            final long duration = sample.stop(Timer.builder("resource.warm-up.duration")
+                .description("Time taken to warm the instance up after a start")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+            log.info("Warm-up {} in {} ms", outcome, duration / 1_000_000);
+            complete();
+          })
+          .then();
+    });
+  }
+
+  // a type whose storages cannot be looked up is looked up again by the first request that needs it
+  private Mono<List<GetStorageDTO>> preloadStorages() {
+    return Flux.fromArray(StorageType.values())
+        .flatMap(type -> storageManager.getAllByType(type)
+            .onErrorResume(error -> {
+              log.warn("Preloading storages of type '{}' failed", type, error);
+              return Mono.empty();
+            }))
+        .collectList();
+  }
+
+  // concurrent requests take a connection each, which the client keeps open for the following ones
+  private Mono<Void> openStorageConnections(List<GetStorageDTO> storages) {
+    return Flux.fromIterable(storages)
+        .map(GetStorageDTO::getBucket)
+        .distinct()
+        .flatMap(bucket -> Flux.range(0, properties.getConnections())
+            .flatMap(connection -> cloudStorageRepository.headBucket(bucket), properties.getConnections())
+            .then()
+            .onErrorResume(error -> {
+              log.warn("Opening connections to bucket '{}' failed", bucket, error);
+              return Mono.empty();
+            }))
+        .then();
+  }
+
+  // the queries are prepared on every connection they run on
+  private Mono<Void> openDatabaseConnections() {
+    final Mono<Integer> pool = connectionFactory instanceof ConnectionPool connectionPool ? connectionPool.warmup() : Mono.empty();
+    return pool
+        .thenMany(Flux.range(0, properties.getConnections()))
+        .flatMap(connection -> resourceRepository.findAllByIds(new Long[] {0L}).then(), properties.getConnections())
+        .then()
+        .onErrorResume(error -> {
+          log.warn("Opening connections to the database failed", error);
+          return Mono.empty();
+        });
+  }
+
+  // the same pass over the buffers as an uploaded part takes, checksum and content digest included
+  private Mono<Void> runSyntheticPasses() {
+    return Mono.<Void>fromRunnable(() -> {
+          final byte[] chunk = new byte[Math.max(properties.getPartSize() / PART_CHUNKS, 1)];
+          ThreadLocalRandom.current().nextBytes(chunk);
+          for (int pass = 0; pass < properties.getPasses(); pass++) {
+            final List<DataBuffer> buffers = new ArrayList<>(PART_CHUNKS);
+            for (int i = 0; i < PART_CHUNKS; i++) {
+              buffers.add(bufferFactory.wrap(chunk));
+            }
+            final UploadPartBuffer part = new UploadPartBuffer(buffers, contentDigest(), null);
+            part.checksum();
+            part.release();
+          }
+        })
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private MessageDigest contentDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exception) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  // the discovery service is told right away rather than on the next replication of the instance
+  private void complete() {
+    warmedUp = true;
+    applicationInfoManager.ifAvailable(manager -> manager.setInstanceStatus(InstanceInfo.InstanceStatus.UP));
+  }
+}
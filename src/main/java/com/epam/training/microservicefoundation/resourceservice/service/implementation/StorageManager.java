@@ -1,47 +1,136 @@
 package com.epam.training.microservicefoundation.resourceservice.service.implementation;
 
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.StorageCacheProperties;
+import com.epam.training.microservicefoundation.resourceservice.service.placement.StoragePlacementStrategy;
 import com.epam.training.microservicefoundation.resourceservice.web.client.StorageServiceClient;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
-import java.util.HashMap;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * Registry of the storages known to the storage service, cached by id and by type. A cached storage is looked up again in the
+ * background once it gets older than the refresh interval, requests keep getting the cached one meanwhile. Concurrent requests for a
+ * storage which is not cached share a single lookup. When the storage service cannot be reached, e.g. while its circuit breaker is open,
+ * the storages looked up last are served.
+ */
 @Service
 public class StorageManager {
+  private static final Logger log = LoggerFactory.getLogger(StorageManager.class);
+  private static final String METRIC_NAME = "storage.cache";
+  private static final String METRIC_PLACEMENT = "storage.placement";
   private final StorageServiceClient storageServiceClient;
-  private final Map<StorageType, List<GetStorageDTO>> storageCache = new HashMap<>();
-  private static final Random RANDOM = new Random();
+  private final StoragePlacementStrategy placementStrategy;
+  private final MeterRegistry meterRegistry;
+  private final AsyncLoadingCache<Long, GetStorageDTO> storagesById;
+  private final AsyncLoadingCache<StorageType, List<GetStorageDTO>> storagesByType;
+  // the storages looked up last, they outlive the expiry of the cached ones
+  private final Map<Long, GetStorageDTO> lastStoragesById = new ConcurrentHashMap<>();
+  private final Map<StorageType, List<GetStorageDTO>> lastStoragesByType = new ConcurrentHashMap<>();
 
   @Autowired
-  public StorageManager(StorageServiceClient storageServiceClient) {
+  public StorageManager(StorageServiceClient storageServiceClient, StorageCacheProperties properties,
+      StoragePlacementStrategy placementStrategy, MeterRegistry meterRegistry) {
     this.storageServiceClient = storageServiceClient;
+    this.placementStrategy = placementStrategy;
+    this.meterRegistry = meterRegistry;
+    this.storagesById = Caffeine.newBuilder()
+        .maximumSize(properties.getMaxSize())
+        .refreshAfterWrite(properties.getRefreshAfter())
+        .expireAfterWrite(properties.getExpiry())
+        .recordStats()
+        .buildAsync((id, executor) -> loadById(id).toFuture());
+    this.storagesByType = Caffeine.newBuilder()
+        .refreshAfterWrite(properties.getRefreshAfter())
+        .expireAfterWrite(properties.getExpiry())
+        .recordStats()
+        .buildAsync((type, executor) -> loadByType(type).toFuture());
+
+    // hits, misses and the time taken by loads, from which the hit ratio and the load latency are derived
+    CaffeineCacheMetrics.monitor(meterRegistry, storagesById.synchronous(), METRIC_NAME, "index", "id");
+    CaffeineCacheMetrics.monitor(meterRegistry, storagesByType.synchronous(), METRIC_NAME, "index", "type");
   }
 
+  /**
+   * Chooses the storage of the given type a new file is stored in.
+   */
   public Mono<GetStorageDTO> getByType(StorageType type) {
-    if (!storageCache.containsKey(type)) {
-      return storageServiceClient.getByType(type)
-          .collectList()
-          .doOnNext(storages -> storageCache.put(type, storages))
-          .map(storages -> storageCache.get(type).get(randomElementIndex(storageCache.get(type).size())))
-          .onErrorMap(IndexOutOfBoundsException.class, error -> ExceptionSupplier.entityNotFound(GetStorageDTO.class, type).get())
-          .onErrorMap(Exceptions::isRetryExhausted, error -> ExceptionSupplier.retryExhausted(error).get());
-    }
-    return Mono.just(storageCache.get(type).get(randomElementIndex(storageCache.get(type).size())));
+    return getStoragesByType(type)
+        .filter(storages -> !storages.isEmpty())
+        .map(placementStrategy::choose)
+        .doOnNext(this::recordPlacement)
+        .switchIfEmpty(Mono.error(ExceptionSupplier.entityNotFound(GetStorageDTO.class, type)))
+        .onErrorMap(Exceptions::isRetryExhausted, error -> ExceptionSupplier.retryExhausted(error).get());
   }
 
-  private int randomElementIndex(int size) {
-    return size > 0 ? RANDOM.nextInt(size) : size;
+  public Flux<GetStorageDTO> getAllByType(StorageType type) {
+    return getStoragesByType(type)
+        .flatMapIterable(storages -> storages)
+        .onErrorMap(Exceptions::isRetryExhausted, error -> ExceptionSupplier.retryExhausted(error).get());
   }
 
   public Mono<GetStorageDTO> getById(long id) {
-    return storageServiceClient.getById(id)
+    // the lookup goes on for the other requests when the one which started it is cancelled
+    return Mono.fromFuture(() -> storagesById.get(id).copy())
         .onErrorMap(Exceptions::isRetryExhausted, error -> ExceptionSupplier.retryExhausted(error).get());
   }
+
+  private void recordPlacement(GetStorageDTO storage) {
+    Counter.builder(METRIC_PLACEMENT)
+        .description("Number of times a storage has been chosen for a new file")
+        .tag("storage", String.valueOf(storage.getId()))
+        .tag("bucket", storage.getBucket())
+        .tag("type", String.valueOf(storage.getType()))
+        .register(meterRegistry)
+        .increment();
+  }
+
+  private Mono<List<GetStorageDTO>> getStoragesByType(StorageType type) {
+    return Mono.fromFuture(() -> storagesByType.get(type).copy());
+  }
+
+  // a storage that does not exist is not cached
+  private Mono<GetStorageDTO> loadById(long id) {
+    return storageServiceClient.getById(id)
+        .doOnNext(storage -> lastStoragesById.put(id, storage))
+        .switchIfEmpty(Mono.fromRunnable(() -> lastStoragesById.remove(id)))
+        .onErrorResume(error -> lastStoragesById.containsKey(id), error -> {
+          log.warn("Getting storage by id '{}' failed, serving the one got last", id, error);
+          return Mono.justOrEmpty(lastStoragesById.get(id));
+        });
+  }
+
+  // the storages of a type are cached by their ids as well, the files stored in them are read by the id of their storage
+  private Mono<List<GetStorageDTO>> loadByType(StorageType type) {
+    return storageServiceClient.getByType(type)
+        .collectList()
+        .filter(storages -> !storages.isEmpty())
+        .map(List::copyOf)
+        .doOnNext(storages -> {
+          lastStoragesByType.put(type, storages);
+          storages.forEach(storage -> {
+            lastStoragesById.put(storage.getId(), storage);
+            storagesById.put(storage.getId(), CompletableFuture.completedFuture(storage));
+          });
+        })
+        .onErrorResume(error -> lastStoragesByType.containsKey(type), error -> {
+          log.warn("Getting storages by type '{}' failed, serving the ones got last", type, error);
+          return Mono.justOrEmpty(lastStoragesByType.get(type));
+        });
+  }
 }
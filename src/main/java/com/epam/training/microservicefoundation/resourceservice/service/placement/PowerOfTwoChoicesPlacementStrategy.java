@@ -0,0 +1,42 @@
+package com.epam.training.microservicefoundation.resourceservice.service.placement;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.repository.StorageLoadTracker;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two storages at random and chooses the less loaded one, by the latency of control requests and the error rate of its bucket, and
+ * the bytes being uploaded to it. Uploads weigh by their bytes in flight only, their latency tells the size of the files rather than the
+ * load of the bucket. Comparing two storages only keeps a storage that has just become the least loaded from getting all new files at once,
+ * before its load shows up. A failing bucket gets fewer and fewer files, until its error rate has faded.
+ */
+public class PowerOfTwoChoicesPlacementStrategy implements StoragePlacementStrategy {
+  // bytes in flight counting as one more millisecond of control request latency
+  private static final double BYTES_PER_MILLISECOND = 1024 * 1024;
+  private final StorageLoadTracker storageLoadTracker;
+  private final double errorPenalty;
+
+  public PowerOfTwoChoicesPlacementStrategy(StorageLoadTracker storageLoadTracker, S3ClientConfigurationProperties properties) {
+    this.storageLoadTracker = storageLoadTracker;
+    this.errorPenalty = properties.getPlacement().getErrorPenalty();
+  }
+
+  @Override
+  public GetStorageDTO choose(List<GetStorageDTO> storages) {
+    if (storages.size() == 1) {
+      return storages.get(0);
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final int first = random.nextInt(storages.size());
+    // the second storage is another one than the first
+    final int second = (first + 1 + random.nextInt(storages.size() - 1)) % storages.size();
+    return cost(storages.get(first)) <= cost(storages.get(second)) ? storages.get(first) : storages.get(second);
+  }
+
+  private double cost(GetStorageDTO storage) {
+    final StorageLoadTracker.BucketLoad load = storageLoadTracker.getLoad(storage.getBucket());
+    return (1 + load.getLatencyMillis() + load.getInFlightBytes() / BYTES_PER_MILLISECOND) * (1 + errorPenalty * load.getErrorRate());
+  }
+}
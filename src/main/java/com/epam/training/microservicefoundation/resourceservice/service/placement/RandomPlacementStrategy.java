@@ -0,0 +1,12 @@
+package com.epam.training.microservicefoundation.resourceservice.service.placement;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class RandomPlacementStrategy implements StoragePlacementStrategy {
+  @Override
+  public GetStorageDTO choose(List<GetStorageDTO> storages) {
+    return storages.get(ThreadLocalRandom.current().nextInt(storages.size()));
+  }
+}
@@ -0,0 +1,14 @@
+package com.epam.training.microservicefoundation.resourceservice.service.placement;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import java.util.List;
+
+/**
+ * Chooses the storage a new file is stored in.
+ */
+public interface StoragePlacementStrategy {
+  /**
+   * Chooses one of the given storages, there is at least one of them.
+   */
+  GetStorageDTO choose(List<GetStorageDTO> storages);
+}
@@ -0,0 +1,49 @@
+package com.epam.training.microservicefoundation.resourceservice.web.handler;
+
+import com.epam.training.microservicefoundation.resourceservice.common.StreamingFilePart;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.SaveResourceResultDTO;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.BatchResourceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Component
+public class ResourceBatchHandler {
+  private static final Logger log = LoggerFactory.getLogger(ResourceBatchHandler.class);
+  private static final String FILE_PART = "file";
+  private final BatchResourceService batchResourceService;
+
+  @Autowired
+  public ResourceBatchHandler(BatchResourceService batchResourceService) {
+    this.batchResourceService = batchResourceService;
+  }
+
+  public Mono<ServerResponse> saveAll(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    // every "file" part is piped to the storage as it arrives, the next part is read once the content of the previous one is consumed
+    final Flux<FilePart> files = request.bodyToFlux(PartEvent.class)
+        .windowUntil(PartEvent::isLast)
+        .concatMap(partEvents -> partEvents.<FilePart>switchOnFirst((signal, events) -> {
+          if (signal.get() instanceof FilePartEvent event && FILE_PART.equals(event.name())) {
+            return Mono.just(new StreamingFilePart(event, events.map(PartEvent::content)));
+          }
+          return events.doOnNext(event -> DataBufferUtils.release(event.content())).then(Mono.empty());
+        }, false))
+        .doOnDiscard(PartEvent.class, event -> DataBufferUtils.release(event.content()));
+
+    // results are written as soon as the files of a group are saved
+    return ServerResponse.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(batchResourceService.saveAllToStage(files), SaveResourceResultDTO.class);
+  }
+}
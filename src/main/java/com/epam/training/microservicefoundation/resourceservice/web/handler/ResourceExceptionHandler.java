@@ -6,21 +6,27 @@ import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.METHOD_NOT_ALLOWED;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.CloudStorageException;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityExistsException;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.RangeNotSatisfiableException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.UploadCapacityExceededException;
 import com.google.common.base.Throwables;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
@@ -60,6 +66,12 @@ public class ResourceExceptionHandler extends AbstractErrorWebExceptionHandler {
     exceptionServerResponse.put(NoSuchKeyException.class, (exception, request) -> buildResponseAttributes(request, NOT_FOUND, exception));
     exceptionServerResponse.put(CloudStorageException.class, (exception, request) -> buildResponseAttributes(request,
         HttpStatus.valueOf(((CloudStorageException)exception).getStatusCode()), exception));
+    exceptionServerResponse.put(UploadCapacityExceededException.class, (exception, request) -> buildResponseAttributes(request,
+        SERVICE_UNAVAILABLE, exception, headers -> headers.set(HttpHeaders.RETRY_AFTER,
+            String.valueOf(((UploadCapacityExceededException) exception).getRetryAfter().toSeconds()))));
+    exceptionServerResponse.put(RangeNotSatisfiableException.class, (exception, request) -> buildResponseAttributes(request,
+        REQUESTED_RANGE_NOT_SATISFIABLE, exception, headers -> headers.set(HttpHeaders.CONTENT_RANGE,
+            "bytes */" + ((RangeNotSatisfiableException) exception).getContentLength())));
   }
 
   @Override
@@ -75,6 +87,11 @@ public class ResourceExceptionHandler extends AbstractErrorWebExceptionHandler {
   }
 
   private Mono<ServerResponse> buildResponseAttributes(ServerRequest request, HttpStatusCode status, Throwable exception) {
+    return buildResponseAttributes(request, status, exception, headers -> {});
+  }
+
+  private Mono<ServerResponse> buildResponseAttributes(ServerRequest request, HttpStatusCode status, Throwable exception,
+      Consumer<HttpHeaders> headers) {
     request.attributes().put(ERROR_STATUS_CODE, status.value());
     request.attributes().put(ERROR_REQUEST_URI, request.uri());
 
@@ -89,6 +106,7 @@ public class ResourceExceptionHandler extends AbstractErrorWebExceptionHandler {
     fixBindingErrors(exception, body);
     return ServerResponse
         .status(status)
+        .headers(headers)
         .contentType(MediaType.APPLICATION_JSON)
         .body(BodyInserters.fromValue(body));
   }
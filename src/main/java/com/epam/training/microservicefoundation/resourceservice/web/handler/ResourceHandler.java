@@ -1,56 +1,104 @@
 package com.epam.training.microservicefoundation.resourceservice.web.handler;
 
+import com.epam.training.microservicefoundation.resourceservice.common.StreamingFilePart;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.DeleteResourceDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
 import com.epam.training.microservicefoundation.resourceservice.service.BaseResourceService;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
 import com.epam.training.microservicefoundation.resourceservice.web.validator.RequestQueryParamValidator;
 import java.net.URI;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
 import org.springframework.stereotype.Component;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 
 @Component
 public class ResourceHandler {
   private static final Logger log = LoggerFactory.getLogger(ResourceHandler.class);
+  private static final String FILE_PART = "file";
+  private static final String BYTES = "bytes";
+  private static final String REDIRECT = "redirect";
+  private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+  // chunks of a stored file read ahead of the connection, a slow client holds back the download instead of having it buffered
+  private static final int READ_AHEAD = 16;
   private final BaseResourceService baseService;
   private final StageResourceService stageResourceService;
   private final RequestQueryParamValidator idQueryParamValidator;
+  private final ResourceDeletionProperties deletionProperties;
 
   @Autowired
   public ResourceHandler(BaseResourceService baseService, StageResourceService stageResourceService,
-      RequestQueryParamValidator idQueryParamValidator) {
+      RequestQueryParamValidator idQueryParamValidator, ResourceDeletionProperties deletionProperties) {
     this.baseService = baseService;
     this.stageResourceService = stageResourceService;
     this.idQueryParamValidator = idQueryParamValidator;
+    this.deletionProperties = deletionProperties;
   }
 
   public Mono<ServerResponse> save(final ServerRequest request) {
     log.info("Incoming request: {}", request);
-    Mono<MultiValueMap<String, Part>> multiValueMapMono = request.body(BodyExtractors.toMultipartData());
-    Mono<FilePart> filePart = multiValueMapMono.flatMap(map -> Mono.justOrEmpty(map.getFirst("file"))).ofType(FilePart.class);
+    final AtomicBoolean fileReceived = new AtomicBoolean();
+    // the body is read part by part, the file content is piped to the storage as it arrives instead of being spooled to disk first
+    final Mono<GetResourceDTO> resource = request.bodyToFlux(PartEvent.class)
+        .windowUntil(PartEvent::isLast)
+        .concatMap(partEvents -> partEvents.<GetResourceDTO>switchOnFirst((signal, events) -> {
+          if (signal.get() instanceof FilePartEvent event && FILE_PART.equals(event.name()) && fileReceived.compareAndSet(false, true)) {
+            return stageResourceService.saveToStage(Mono.just(new StreamingFilePart(event, events.map(PartEvent::content))));
+          }
+          return events.doOnNext(event -> DataBufferUtils.release(event.content())).then(Mono.empty());
+        }))
+        .doOnDiscard(PartEvent.class, event -> DataBufferUtils.release(event.content()))
+        .singleOrEmpty()
+        .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(FilePart.class)));
 
     return ServerResponse.created(URI.create(request.path()))
         .contentType(MediaType.APPLICATION_JSON)
-        .body(stageResourceService.saveToStage(filePart), GetResourceDTO.class);
+        .body(resource, GetResourceDTO.class);
   }
 
   public Mono<ServerResponse> deleteByIds(final ServerRequest request, final String queryParam) {
     log.info("Incoming request: {}", request);
     final String validQueryParamValue = idQueryParamValidator.validateQueryParam(request.queryParam(queryParam), queryParam);
+    // deferred deletions are acknowledged once the resources are marked, whatever the number of files to delete
+    if (deletionProperties.isDeferred()) {
+      return ServerResponse.accepted()
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(baseService.markDeletingByIds(getIds(validQueryParamValue)), DeleteResourceDTO.class);
+    }
 
     return ServerResponse.ok()
         .contentType(MediaType.APPLICATION_JSON)
@@ -60,13 +108,233 @@ public class ResourceHandler {
   public Mono<ServerResponse> getById(final ServerRequest request) {
     log.info("Incoming request: {}", request);
     final long id = Long.parseLong(request.pathVariable("id"));
-    return baseService.getById(id)
-        .flatMap(responsePublisher -> ServerResponse.ok()
-            .header(HttpHeaders.CONTENT_TYPE, responsePublisher.response().contentType())
-            .header(HttpHeaders.CONTENT_LENGTH, Long.toString(responsePublisher.response().contentLength()))
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + responsePublisher.response().metadata()
-                    .getOrDefault("filename", "UNKNOWN") + "\"")
-            .body(Flux.from(responsePublisher), ByteBuffer.class));
+    // small files held in memory are served without looking up their resource, unless the client asks to be redirected
+    return (isRedirectRequested(request) ? Mono.<CachedContent>empty() : baseService.getCachedContentById(id))
+        .flatMap(content -> isNotModified(request, content.getMetadata()) ? getNotModified(content.getMetadata()) :
+            getContent(request, content))
+        // conditional requests are answered from the stored metadata, the storage is not read for a file the client already has
+        .switchIfEmpty(Mono.defer(() -> baseService.getMetadataById(id)
+            .flatMap(metadata -> isNotModified(request, metadata) ? getNotModified(metadata) : getContent(request, metadata))));
+  }
+
+  // ranges of small files are rare, they are read from the storage. The location held along with the content may be outdated, it is
+  // resolved again
+  private Mono<ServerResponse> getContent(final ServerRequest request, CachedContent content) {
+    return getRanges(request).isEmpty() ? getCachedContent(content) : baseService.getMetadataById(content.getMetadata().getId())
+        .flatMap(metadata -> getContent(request, metadata));
+  }
+
+  // large files are downloaded from the storage directly, ranges included, the service does not pass their content through. Every read
+  // is given the location resolved along with the metadata, the resource is not looked up again
+  private Mono<ServerResponse> getContent(final ServerRequest request, GetResourceMetadataDTO metadata) {
+    return baseService.getDownloadUrlById(metadata, isRedirectRequested(request))
+        .flatMap(this::getRedirect)
+        .switchIfEmpty(Mono.defer(() -> getStoredContent(request, metadata)));
+  }
+
+  private Mono<ServerResponse> getStoredContent(final ServerRequest request, GetResourceMetadataDTO metadata) {
+    final List<HttpRange> ranges = getRanges(request);
+    if (ranges.isEmpty()) {
+      return baseService.getContentById(metadata)
+          .flatMap(this::getCachedContent)
+          .switchIfEmpty(Mono.defer(() -> baseService.getCachedById(metadata)
+              .flatMap(file -> getCachedFile(metadata, file))))
+          .switchIfEmpty(Mono.defer(() -> baseService.getById(metadata)
+              .flatMap(responsePublisher -> getFile(metadata, responsePublisher))));
+    }
+
+    // the storage serves a single range per request, further ranges are read one after another while the response is written
+    return baseService.getRangeById(metadata, HttpRange.toString(ranges.subList(0, 1)),
+            request.headers().firstHeader(HttpHeaders.IF_RANGE))
+        .flatMap(responsePublisher -> {
+          if (responsePublisher.response().contentRange() == null) {
+            return getFile(metadata, responsePublisher);
+          }
+          return ranges.size() == 1 ? getRange(metadata, responsePublisher) :
+              getMultipleRanges(metadata, responsePublisher, ranges.subList(1, ranges.size()));
+        });
+  }
+
+  private boolean isNotModified(final ServerRequest request, GetResourceMetadataDTO metadata) {
+    final List<String> ifNoneMatch = request.headers().header(HttpHeaders.IF_NONE_MATCH);
+    if (!ifNoneMatch.isEmpty()) {
+      // entity tags are compared weakly for a GET, If-Modified-Since is ignored along with If-None-Match
+      return StringUtils.hasText(metadata.getEtag()) && ifNoneMatch.stream()
+          .flatMap(value -> Arrays.stream(value.split(",")))
+          .map(String::trim)
+          .anyMatch(tag -> "*".equals(tag) || toOpaqueTag(tag).equals(toOpaqueTag(metadata.getEtag())));
+    }
+    final long ifModifiedSince = request.headers().asHttpHeaders().getIfModifiedSince();
+    return ifModifiedSince >= 0 && metadata.getLastModified() != null && metadata.getLastModified().toEpochMilli() <= ifModifiedSince;
+  }
+
+  private String toOpaqueTag(String tag) {
+    return tag.startsWith("W/") ? tag.substring(2) : tag;
+  }
+
+  private Mono<ServerResponse> getNotModified(GetResourceMetadataDTO metadata) {
+    return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+        .headers(headers -> setCacheHeaders(headers, metadata, null, null))
+        .build();
+  }
+
+  // the presigned URL expires shortly, unlike the content it points to
+  private Mono<ServerResponse> getRedirect(URI location) {
+    return ServerResponse.temporaryRedirect(location)
+        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+        .build();
+  }
+
+  private Mono<ServerResponse> getFile(GetResourceMetadataDTO metadata, ResponsePublisher<GetObjectResponse> responsePublisher) {
+    return ServerResponse.ok()
+        .header(HttpHeaders.CONTENT_TYPE, responsePublisher.response().contentType())
+        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(responsePublisher.response().contentLength()))
+        .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+        .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(responsePublisher))
+        .headers(headers -> setCacheHeaders(headers, metadata, responsePublisher.response().eTag(),
+            responsePublisher.response().lastModified()))
+        .body(fromDataBuffers(bufferFactory -> toDataBuffers(responsePublisher, bufferFactory)));
+  }
+
+  // the file resource is written by a zero-copy transfer from the file to the connection, the content is not read into the heap. The file
+  // is released once it has been written, it is not deleted by an eviction meanwhile
+  private Mono<ServerResponse> getCachedFile(GetResourceMetadataDTO metadata, CachedFile file) {
+    // the file is released exactly once, when its body terminates, or when the response fails or is cancelled before it has been built
+    final AtomicBoolean released = new AtomicBoolean();
+    final Runnable release = () -> {
+      if (released.compareAndSet(false, true)) {
+        baseService.releaseCachedFile(file);
+      }
+    };
+    final BodyInserter<FileSystemResource, ReactiveHttpOutputMessage> resource =
+        BodyInserters.fromResource(new FileSystemResource(file.getPath()));
+    final BodyInserter<FileSystemResource, ReactiveHttpOutputMessage> body = (outputMessage, context) ->
+        Mono.defer(() -> resource.insert(outputMessage, context)).doFinally(signal -> release.run());
+    return ServerResponse.ok()
+        .header(HttpHeaders.CONTENT_TYPE, file.getContentType())
+        .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+        .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(file.getMetadata()))
+        .headers(headers -> setCacheHeaders(headers, metadata, file.getETag(), file.getLastModified()))
+        .body(body)
+        .doOnError(error -> release.run())
+        .doOnCancel(release);
+  }
+
+  // the content is wrapped into a buffer the server writes as it is, it is not copied into the heap. It is counted as served once written
+  private Mono<ServerResponse> getCachedContent(CachedContent content) {
+    final BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> buffer =
+        fromDataBuffers(bufferFactory -> Mono.fromSupplier(() -> bufferFactory.wrap(content.getContent())).flux());
+    final BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> body = (outputMessage, context) ->
+        buffer.insert(outputMessage, context).doOnSuccess(written -> baseService.recordContentServed(content));
+    return ServerResponse.ok()
+        .header(HttpHeaders.CONTENT_TYPE, content.getContentType())
+        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(content.getContent().remaining()))
+        .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+        .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(content.getFilename()))
+        .headers(headers -> setCacheHeaders(headers, content.getMetadata(), null, null))
+        .body(body);
+  }
+
+  private Mono<ServerResponse> getRange(GetResourceMetadataDTO metadata, ResponsePublisher<GetObjectResponse> responsePublisher) {
+    return ServerResponse.status(HttpStatus.PARTIAL_CONTENT)
+        .header(HttpHeaders.CONTENT_TYPE, responsePublisher.response().contentType())
+        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(responsePublisher.response().contentLength()))
+        .header(HttpHeaders.CONTENT_RANGE, responsePublisher.response().contentRange())
+        .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+        .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(responsePublisher))
+        .headers(headers -> setCacheHeaders(headers, metadata, responsePublisher.response().eTag(),
+            responsePublisher.response().lastModified()))
+        .body(fromDataBuffers(bufferFactory -> toDataBuffers(responsePublisher, bufferFactory)));
+  }
+
+  private Mono<ServerResponse> getMultipleRanges(GetResourceMetadataDTO metadata, ResponsePublisher<GetObjectResponse> first,
+      List<HttpRange> ranges) {
+    final String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+    final String contentType = first.response().contentType();
+    // the remaining ranges are read only while the file still has the entity tag of the first one
+    final String eTag = StringUtils.hasText(metadata.getEtag()) ? metadata.getEtag() : first.response().eTag();
+    final Function<DataBufferFactory, Flux<DataBuffer>> body = bufferFactory -> Flux.concat(
+        getRangePart(boundary, contentType, first, bufferFactory),
+        Flux.fromIterable(ranges).concatMap(range -> baseService.getRangeById(metadata, HttpRange.toString(List.of(range)), eTag)
+            .flatMapMany(responsePublisher -> getRangePart(boundary, contentType, responsePublisher, bufferFactory))),
+        Mono.fromSupplier(() -> toDataBuffer("\r\n--" + boundary + "--\r\n", bufferFactory)));
+
+    return ServerResponse.status(HttpStatus.PARTIAL_CONTENT)
+        .header(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary)
+        .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+        .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(first))
+        .headers(headers -> setCacheHeaders(headers, metadata, first.response().eTag(), first.response().lastModified()))
+        .body(fromDataBuffers(body));
+  }
+
+  /**
+   * The content of a resource never changes, so it may be cached for as long as caches keep anything. Resources stored before their
+   * entity tag was recorded get the one of the stored file.
+   */
+  private void setCacheHeaders(HttpHeaders headers, GetResourceMetadataDTO metadata, String storedETag, Instant storedLastModified) {
+    final String eTag = StringUtils.hasText(metadata.getEtag()) ? metadata.getEtag() : storedETag;
+    if (StringUtils.hasText(eTag)) {
+      headers.setETag(eTag);
+    }
+    final Instant lastModified = metadata.getLastModified() != null ? metadata.getLastModified() : storedLastModified;
+    if (lastModified != null) {
+      headers.setLastModified(lastModified);
+    }
+    headers.setCacheControl(CACHE_CONTROL);
+  }
+
+  private Flux<DataBuffer> getRangePart(String boundary, String contentType, ResponsePublisher<GetObjectResponse> responsePublisher,
+      DataBufferFactory bufferFactory) {
+    final String headers = "\r\n--" + boundary + "\r\n"
+        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+        + HttpHeaders.CONTENT_RANGE + ": " + responsePublisher.response().contentRange() + "\r\n\r\n";
+    return Flux.concat(Mono.fromSupplier(() -> toDataBuffer(headers, bufferFactory)), toDataBuffers(responsePublisher, bufferFactory));
+  }
+
+  // the body is made of buffers of the response being written, whichever server it is written by
+  private BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> fromDataBuffers(Function<DataBufferFactory, Flux<DataBuffer>> body) {
+    return (outputMessage, context) -> outputMessage.writeWith(body.apply(outputMessage.bufferFactory()));
+  }
+
+  /**
+   * The chunks received by the storage client are wrapped into buffers of the response as they are, they are not copied again before
+   * being written to the connection. Buffers still queued when the client goes away are released.
+   */
+  private Flux<DataBuffer> toDataBuffers(ResponsePublisher<GetObjectResponse> responsePublisher, DataBufferFactory bufferFactory) {
+    return Flux.from(responsePublisher)
+        .limitRate(READ_AHEAD)
+        .<DataBuffer>map(bufferFactory::wrap)
+        .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+  }
+
+  private boolean isRedirectRequested(final ServerRequest request) {
+    return request.queryParam(REDIRECT).map(Boolean::parseBoolean).orElse(false);
+  }
+
+  // an invalid Range header is ignored, the whole file is sent
+  private List<HttpRange> getRanges(final ServerRequest request) {
+    try {
+      return request.headers().range();
+    } catch (IllegalArgumentException exception) {
+      log.debug("Ignoring invalid range of request {}", request, exception);
+      return List.of();
+    }
+  }
+
+  private String getContentDisposition(ResponsePublisher<GetObjectResponse> responsePublisher) {
+    return getContentDisposition(responsePublisher.response().metadata());
+  }
+
+  private String getContentDisposition(Map<String, String> metadata) {
+    return getContentDisposition(metadata.get("filename"));
+  }
+
+  private String getContentDisposition(String filename) {
+    return "attachment; filename=\"" + (filename == null ? "UNKNOWN" : filename) + "\"";
+  }
+
+  private DataBuffer toDataBuffer(String value, DataBufferFactory bufferFactory) {
+    return bufferFactory.wrap(value.getBytes(StandardCharsets.US_ASCII));
   }
 
   private Long[] getIds(final String paramValue) {
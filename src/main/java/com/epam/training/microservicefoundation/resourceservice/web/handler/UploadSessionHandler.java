@@ -0,0 +1,94 @@
+package com.epam.training.microservicefoundation.resourceservice.web.handler;
+
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreatePresignedUploadDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreateUploadSessionDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetUploadPartDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetUploadSessionDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.ResumableUploadService;
+import java.net.URI;
+import java.util.OptionalLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+@Component
+public class UploadSessionHandler {
+  private static final Logger log = LoggerFactory.getLogger(UploadSessionHandler.class);
+  private static final String RESOURCES_PATH = "/api/v1/resources/";
+  private static final String UPLOADS_PATH = "/api/v1/resources/uploads/";
+  private final ResumableUploadService resumableUploadService;
+
+  @Autowired
+  public UploadSessionHandler(ResumableUploadService resumableUploadService) {
+    this.resumableUploadService = resumableUploadService;
+  }
+
+  public Mono<ServerResponse> create(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    return request.bodyToMono(CreateUploadSessionDTO.class)
+        .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(CreateUploadSessionDTO.class)))
+        .flatMap(resumableUploadService::create)
+        .flatMap(session -> ServerResponse.created(URI.create(request.path() + "/" + session.getId()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(session));
+  }
+
+  public Mono<ServerResponse> createPresigned(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    return request.bodyToMono(CreatePresignedUploadDTO.class)
+        .switchIfEmpty(Mono.error(ExceptionSupplier.invalidRequest(CreatePresignedUploadDTO.class)))
+        .flatMap(resumableUploadService::createPresigned)
+        .flatMap(upload -> ServerResponse.created(URI.create(UPLOADS_PATH + upload.getId()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(upload));
+  }
+
+  public Mono<ServerResponse> uploadPart(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    final long id = Long.parseLong(request.pathVariable("id"));
+    final int partNumber = Integer.parseInt(request.pathVariable("partNumber"));
+    // the storage requires the size of a part before its content is sent
+    final OptionalLong contentLength = request.headers().contentLength();
+    if (contentLength.isEmpty()) {
+      return Mono.error(ExceptionSupplier.invalidRequest(HttpHeaders.class));
+    }
+
+    return ServerResponse.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(resumableUploadService.uploadPart(id, partNumber, contentLength.getAsLong(), request.body(BodyExtractors.toDataBuffers())),
+            GetUploadPartDTO.class);
+  }
+
+  public Mono<ServerResponse> getById(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    final long id = Long.parseLong(request.pathVariable("id"));
+    return ServerResponse.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(resumableUploadService.getById(id), GetUploadSessionDTO.class);
+  }
+
+  public Mono<ServerResponse> complete(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    final long id = Long.parseLong(request.pathVariable("id"));
+    return resumableUploadService.complete(id)
+        .flatMap(resource -> ServerResponse.created(URI.create(RESOURCES_PATH + resource.getId()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(resource));
+  }
+
+  public Mono<ServerResponse> abort(final ServerRequest request) {
+    log.info("Incoming request: {}", request);
+    final long id = Long.parseLong(request.pathVariable("id"));
+    return resumableUploadService.abort(id)
+        .then(ServerResponse.noContent().build());
+  }
+}
@@ -0,0 +1,24 @@
+package com.epam.training.microservicefoundation.resourceservice.web.router;
+
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.MULTIPART_FORM_DATA;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+import com.epam.training.microservicefoundation.resourceservice.web.handler.ResourceBatchHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+@Configuration
+public class ResourceBatchRouter {
+
+  @Bean
+  RouterFunction<ServerResponse> batchRoutes(ResourceBatchHandler handler) {
+    return RouterFunctions.route(POST("/api/v1/resources/batch").and(accept(APPLICATION_NDJSON)).and(contentType(MULTIPART_FORM_DATA)),
+        handler::saveAll);
+  }
+}
@@ -0,0 +1,33 @@
+package com.epam.training.microservicefoundation.resourceservice.web.router;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+import com.epam.training.microservicefoundation.resourceservice.web.handler.UploadSessionHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+@Configuration
+public class UploadSessionRouter {
+
+  @Bean
+  RouterFunction<ServerResponse> uploadSessionRoutes(UploadSessionHandler handler) {
+    return RouterFunctions.nest(RequestPredicates.path("/api/v1/resources/uploads"),
+        RouterFunctions
+            .route(POST("").and(accept(APPLICATION_JSON)).and(contentType(APPLICATION_JSON)), handler::create)
+            .andRoute(POST("/presigned").and(accept(APPLICATION_JSON)).and(contentType(APPLICATION_JSON)), handler::createPresigned)
+            .andRoute(PUT("/{id}/parts/{partNumber}").and(accept(APPLICATION_JSON)), handler::uploadPart)
+            .andRoute(GET("/{id}").and(accept(APPLICATION_JSON)), handler::getById)
+            .andRoute(POST("/{id}/complete").and(accept(APPLICATION_JSON)), handler::complete)
+            .andRoute(DELETE("/{id}"), handler::abort));
+  }
+}
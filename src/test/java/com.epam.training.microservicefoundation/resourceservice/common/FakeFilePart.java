@@ -19,11 +19,17 @@ public final class FakeFilePart implements FilePart {
   private final String filename;
   private final byte[] content;
   private final HttpHeaders headers;
+  private final int chunkSize;
 
   public FakeFilePart(String filename, byte[] content, HttpHeaders headers) {
+    this(filename, content, headers, content.length);
+  }
+
+  public FakeFilePart(String filename, byte[] content, HttpHeaders headers, int chunkSize) {
     this.filename = filename;
     this.content = content;
     this.headers = headers;
+    this.chunkSize = Math.max(chunkSize, 1);
   }
 
   @Override
@@ -47,7 +53,12 @@ public final class FakeFilePart implements FilePart {
 
   @Override
   public Flux<DataBuffer> content() {
-    return Flux.just(new DefaultDataBufferFactory().wrap(ByteBuffer.wrap(content)));
+    if (content.length <= chunkSize) {
+      return Flux.just(new DefaultDataBufferFactory().wrap(ByteBuffer.wrap(content)));
+    }
+    return Flux.range(0, (content.length + chunkSize - 1) / chunkSize)
+        .map(chunk -> new DefaultDataBufferFactory().wrap(ByteBuffer.wrap(content, chunk * chunkSize,
+            Math.min(chunkSize, content.length - chunk * chunkSize))));
   }
 
   public InputStream contentStream() throws IOException {
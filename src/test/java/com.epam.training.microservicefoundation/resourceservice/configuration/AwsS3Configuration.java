@@ -2,6 +2,10 @@ package com.epam.training.microservicefoundation.resourceservice.configuration;
 
 import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.PartSizePlanner;
+import com.epam.training.microservicefoundation.resourceservice.repository.StorageLoadTracker;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadMemoryBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -17,6 +21,7 @@ import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 @TestConfiguration
 @EnableConfigurationProperties(value = S3ClientConfigurationProperties.class)
@@ -28,7 +33,9 @@ public class AwsS3Configuration {
   private String secretKey;
   @Bean
   public CloudStorageRepository cloudStorageRepository(S3ClientConfigurationProperties properties) {
-    return new CloudStorageRepository(properties, s3Client(properties));
+    return new CloudStorageRepository(properties, s3Client(properties), s3Presigner(properties),
+        new PartSizePlanner(properties, new SimpleMeterRegistry()), new UploadMemoryBudget(properties, new SimpleMeterRegistry()),
+        new StorageLoadTracker(properties, new SimpleMeterRegistry()));
   }
 
   private S3AsyncClient s3Client(S3ClientConfigurationProperties properties) {
@@ -52,6 +59,14 @@ public class AwsS3Configuration {
         .build();
   }
 
+  private S3Presigner s3Presigner(S3ClientConfigurationProperties properties) {
+    return S3Presigner.builder()
+        .credentialsProvider(getStaticCredentialsProvider())
+        .region(properties.getRegion())
+        .endpointOverride(properties.getEndpoint())
+        .build();
+  }
+
   private StaticCredentialsProvider getStaticCredentialsProvider() {
     return StaticCredentialsProvider.create(getAwsBasicCredentials());
   }
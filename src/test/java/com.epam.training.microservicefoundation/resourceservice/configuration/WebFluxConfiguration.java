@@ -1,5 +1,8 @@
 package com.epam.training.microservicefoundation.resourceservice.configuration;
 
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceLocationCacheProperties;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.web.handler.ResourceExceptionHandler;
 import com.epam.training.microservicefoundation.resourceservice.web.handler.ResourceHandler;
 import com.epam.training.microservicefoundation.resourceservice.web.router.ResourceRouter;
@@ -8,6 +11,7 @@ import com.epam.training.microservicefoundation.resourceservice.service.implemen
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
 import com.epam.training.microservicefoundation.resourceservice.web.validator.IdQueryParamValidator;
 import com.epam.training.microservicefoundation.resourceservice.web.validator.RequestQueryParamValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.HashSet;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,7 +37,7 @@ import org.springframework.web.reactive.config.WebFluxConfigurer;
 @EnableWebFlux
 @Import(value = {ResourceRouter.class, ResourceHandler.class, IdQueryParamValidator.class, BaseResourceServiceImpl.class,
     StageResourceService.class, PermanentResourceService.class})
-@EnableConfigurationProperties({WebProperties.class, RetryProperties.class})
+@EnableConfigurationProperties({WebProperties.class, RetryProperties.class, ResourceDeletionProperties.class})
 public class WebFluxConfiguration implements WebFluxConfigurer {
 
   @Order(Ordered.HIGHEST_PRECEDENCE)
@@ -63,6 +67,14 @@ public class WebFluxConfiguration implements WebFluxConfigurer {
     configurer.defaultCodecs().maxInMemorySize(512 * 1024);
   }
 
+  // resources are stubbed per test, they are not kept between the tests sharing the context
+  @Bean
+  public ResourceLocationCache resourceLocationCache() {
+    final ResourceLocationCacheProperties properties = new ResourceLocationCacheProperties();
+    properties.setEnabled(false);
+    return new ResourceLocationCache(properties, new SimpleMeterRegistry());
+  }
+
   @Bean
   public RequestQueryParamValidator requestQueryParamValidator(IdQueryParamValidator idQueryParamValidator) {
     return new RequestQueryParamValidator(idQueryParamValidator);
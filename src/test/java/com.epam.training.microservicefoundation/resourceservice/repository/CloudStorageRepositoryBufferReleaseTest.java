@@ -0,0 +1,382 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+@ExtendWith(MockitoExtension.class)
+class CloudStorageRepositoryBufferReleaseTest {
+  private static final int PART_SIZE = 8 * 1024 * 1024;
+  private static final int CHUNK_SIZE = 256 * 1024;
+  private static final byte[] CHUNK = new byte[CHUNK_SIZE];
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(998L, "resource-staging", "files/", StorageType.STAGING);
+
+  @Mock
+  private S3AsyncClient s3Client;
+  @Mock
+  private S3Presigner s3Presigner;
+  @Mock
+  private FilePart filePart;
+
+  private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+  private final List<NettyDataBuffer> allocatedBuffers = new CopyOnWriteArrayList<>();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+  private CloudStorageRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    repository = new CloudStorageRepository(properties, s3Client, s3Presigner, new PartSizePlanner(properties, new SimpleMeterRegistry()),
+        new UploadMemoryBudget(properties, meterRegistry), new StorageLoadTracker(properties, meterRegistry));
+    when(filePart.filename()).thenReturn("mpthreetest.mp3");
+    // multipart uploads of a file of unknown size unless a test stores a small file
+    lenient().when(filePart.headers()).thenReturn(new HttpHeaders());
+    lenient().when(filePart.content()).thenReturn(content(3 * PART_SIZE + CHUNK_SIZE));
+    lenient().when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CreateMultipartUploadResponse) CreateMultipartUploadResponse.builder().uploadId("upload-id").sdkHttpResponse(ok()).build()));
+  }
+
+  @AfterEach
+  void assertBuffersReleased() {
+    assertFalse(allocatedBuffers.isEmpty());
+    allocatedBuffers.forEach(buffer -> assertEquals(0, buffer.getNativeBuffer().refCnt()));
+    // the memory budget reserved for the parts is given back together with their buffers
+    assertEquals(0.0, meterRegistry.get("s3.upload.memory.used").gauge().value());
+  }
+
+  @Test
+  void shouldReleaseBuffersWhenUploadSucceeds() {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (UploadPartResponse) UploadPartResponse.builder().eTag("etag-" + request.partNumber())
+              .sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CompleteMultipartUploadResponse) CompleteMultipartUploadResponse.builder().sdkHttpResponse(ok()).build()));
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotAbortCompletedUploadWhenChecksumsDisabled() {
+    properties.getUpload().setChecksumEnabled(false);
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (UploadPartResponse) UploadPartResponse.builder().eTag("etag-" + request.partNumber())
+              .sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CompleteMultipartUploadResponse) CompleteMultipartUploadResponse.builder().eTag("etag").sdkHttpResponse(ok()).build()));
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .assertNext(file -> {
+          assertEquals("etag", file.getEtag());
+          assertNull(file.getChecksum());
+        })
+        .verifyComplete();
+
+    // the upload is cancelled once the file is saved, the completed upload is not aborted then
+    verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldSendPartAndCompositeChecksums() {
+    final List<String> partChecksums = new CopyOnWriteArrayList<>();
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final AsyncRequestBody body = invocation.getArgument(1);
+      partChecksums.add(request.checksumCRC32C());
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (UploadPartResponse) UploadPartResponse.builder().eTag("etag-" + request.partNumber())
+              .sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CompleteMultipartUploadResponse) CompleteMultipartUploadResponse.builder().sdkHttpResponse(ok()).build()));
+
+    final String fullPartChecksum = checksum(new byte[PART_SIZE]);
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .assertNext(file -> assertEquals(compositeChecksum(fullPartChecksum, fullPartChecksum, fullPartChecksum, checksum(CHUNK)),
+            file.getChecksum()))
+        .verifyComplete();
+
+    assertEquals(List.of(fullPartChecksum, fullPartChecksum, fullPartChecksum, checksum(CHUNK)), partChecksums);
+    final ArgumentCaptor<CreateMultipartUploadRequest> createRequest = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+    verify(s3Client).createMultipartUpload(createRequest.capture());
+    assertEquals(ChecksumAlgorithm.CRC32C, createRequest.getValue().checksumAlgorithm());
+    final ArgumentCaptor<CompleteMultipartUploadRequest> completeRequest = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(s3Client).completeMultipartUpload(completeRequest.capture());
+    assertEquals(partChecksums, completeRequest.getValue().multipartUpload().parts().stream().map(CompletedPart::checksumCRC32C).toList());
+    // the composite checksum is not a checksum of the whole object, it is compared with the one the storage responds with
+    assertNull(completeRequest.getValue().checksumCRC32C());
+  }
+
+  @Test
+  void shouldDeleteObjectWhenCompositeChecksumDoesNotMatch() {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (UploadPartResponse) UploadPartResponse.builder().eTag("etag-" + request.partNumber())
+              .sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CompleteMultipartUploadResponse) CompleteMultipartUploadResponse.builder().checksumCRC32C("AAAAAA==-4").sdkHttpResponse(ok())
+            .build()));
+    when(s3Client.deleteObject(any(DeleteObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (DeleteObjectResponse) DeleteObjectResponse.builder().sdkHttpResponse(ok()).build()));
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    // the upload has been completed, the object is deleted instead of aborting the upload
+    verify(s3Client).deleteObject(any(DeleteObjectRequest.class));
+    verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldReleaseBuffersWhenUploadFails() {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.<UploadPartResponse>error(SdkClientException.create("Connection reset")))
+          .toFuture();
+    });
+
+    when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(abortResponse());
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectError(SdkClientException.class)
+        .verify();
+
+    verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldReleaseBuffersWhenUploadIsCancelled() {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+        .thenAnswer(invocation -> new CompletableFuture<UploadPartResponse>());
+    when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(abortResponse());
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .thenAwait(Duration.ofMillis(200))
+        .thenCancel()
+        .verify();
+
+    verify(s3Client, timeout(1000)).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldReserveOnlyDeclaredLengthOfSmallFile() {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.setContentLength(2L * CHUNK_SIZE);
+    when(filePart.headers()).thenReturn(headers);
+    when(filePart.content()).thenReturn(content(2 * CHUNK_SIZE));
+    final List<Double> reserved = new CopyOnWriteArrayList<>();
+    when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      reserved.add(meterRegistry.get("s3.upload.memory.used").gauge().value());
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (PutObjectResponse) PutObjectResponse.builder().eTag("etag").sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    // the file takes the budget of its size, not of a whole first part
+    assertEquals(List.of(2.0 * CHUNK_SIZE), reserved);
+  }
+
+  @Test
+  void shouldPutFileBelowMultipartThresholdWithSingleRequest() {
+    when(filePart.content()).thenReturn(content(2 * CHUNK_SIZE));
+    when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (PutObjectResponse) PutObjectResponse.builder().eTag("etag").sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .assertNext(file -> {
+          assertEquals(2L * CHUNK_SIZE, file.getContentLength());
+          assertEquals("etag", file.getEtag());
+          assertEquals(checksum(new byte[2 * CHUNK_SIZE]), file.getChecksum());
+        })
+        .verifyComplete();
+
+    final ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+    verify(s3Client, times(1)).putObject(request.capture(), any(AsyncRequestBody.class));
+    assertEquals(2L * CHUNK_SIZE, request.getValue().contentLength());
+    assertEquals(checksum(new byte[2 * CHUNK_SIZE]), request.getValue().checksumCRC32C());
+    verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldUploadFileOfMultipartThresholdInParts() {
+    properties.getUpload().setMultipartThreshold(PART_SIZE);
+    when(filePart.content()).thenReturn(content(PART_SIZE));
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final AsyncRequestBody body = invocation.getArgument(1);
+      return Flux.from(body)
+          .then(Mono.fromCallable(() -> (UploadPartResponse) UploadPartResponse.builder().eTag("etag-" + request.partNumber())
+              .sdkHttpResponse(ok()).build()))
+          .toFuture();
+    });
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        (CompleteMultipartUploadResponse) CompleteMultipartUploadResponse.builder().sdkHttpResponse(ok()).build()));
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .assertNext(file -> assertEquals((long) PART_SIZE, file.getContentLength()))
+        .verifyComplete();
+
+    verify(s3Client, times(1)).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    verify(s3Client, times(1)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+  }
+
+  @Test
+  void shouldReleaseBuffersWhenPutObjectFails() {
+    when(filePart.content()).thenReturn(content(2 * CHUNK_SIZE));
+    // the request fails before the storage client has read the body
+    when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+        .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("Connection refused")));
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectError(SdkClientException.class)
+        .verify();
+
+    verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldKeepBuffersUntilBodyOfFailedRequestTerminates() {
+    when(filePart.content()).thenReturn(content(2 * CHUNK_SIZE));
+    final AtomicReference<Subscription> body = new AtomicReference<>();
+    // the storage client goes on reading the body after the request has failed
+    when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+      final AsyncRequestBody requestBody = invocation.getArgument(1);
+      requestBody.subscribe(new BaseSubscriber<ByteBuffer>() {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+          body.set(subscription);
+          subscription.request(1);
+        }
+      });
+      return CompletableFuture.failedFuture(SdkClientException.create("Connection reset"));
+    });
+
+    StepVerifier.create(repository.upload(new ResourceFile(filePart, STAGING_STORAGE)))
+        .expectError(SdkClientException.class)
+        .verify();
+
+    allocatedBuffers.forEach(buffer -> assertEquals(1, buffer.getNativeBuffer().refCnt()));
+    body.get().cancel();
+  }
+
+  private Flux<DataBuffer> content(int size) {
+    return Flux.range(0, size / CHUNK_SIZE)
+        .map(chunk -> {
+          final NettyDataBuffer buffer = bufferFactory.allocateBuffer(CHUNK_SIZE);
+          buffer.write(CHUNK);
+          allocatedBuffers.add(buffer);
+          return buffer;
+        });
+  }
+
+  private static CompletableFuture<AbortMultipartUploadResponse> abortResponse() {
+    return CompletableFuture.completedFuture(
+        (AbortMultipartUploadResponse) AbortMultipartUploadResponse.builder().sdkHttpResponse(ok()).build());
+  }
+
+  private static String checksum(byte[] content) {
+    final CRC32C crc = new CRC32C();
+    crc.update(content);
+    return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+  }
+
+  private static String compositeChecksum(String... partChecksums) {
+    final CRC32C crc = new CRC32C();
+    for (String partChecksum : partChecksums) {
+      crc.update(Base64.getDecoder().decode(partChecksum));
+    }
+    return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array()) + "-"
+        + partChecksums.length;
+  }
+
+  private static SdkHttpResponse ok() {
+    return SdkHttpResponse.builder().statusCode(200).build();
+  }
+}
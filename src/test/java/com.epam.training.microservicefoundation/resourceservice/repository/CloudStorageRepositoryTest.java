@@ -71,6 +71,24 @@ class CloudStorageRepositoryTest {
     assertResourceFile(resourceFile, repository.upload(resourceFile));
   }
 
+  @Test
+  void shouldUploadLargeSongInParallelParts() {
+    final byte[] content = new byte[17 * 1024 * 1024];
+    random.nextBytes(content);
+    final HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    final FilePart filePart = new FakeFilePart("large-mpthreetest.mp3", content, headers, 64 * 1024);
+    final ResourceFile resourceFile = new ResourceFile(filePart, storage(StorageType.STAGING));
+
+    Mono<Long> contentLength = repository.upload(resourceFile)
+        .flatMap(result -> repository.getByKey(result.getKey(), result.getStorage().getBucket()))
+        .map(result -> result.response().contentLength());
+
+    StepVerifier.create(contentLength)
+        .assertNext(result -> assertEquals(content.length, result))
+        .verifyComplete();
+  }
+
   @Test
   void shouldGetSong() throws IOException {
     ResourceFile resourceFile = resourceFile();
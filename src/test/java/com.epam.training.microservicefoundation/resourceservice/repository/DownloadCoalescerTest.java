@@ -0,0 +1,206 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.scheduler.VirtualTimeScheduler;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class DownloadCoalescerTest {
+  private static final int CHUNK_SIZE = 1024;
+  private static final int CHUNKS = 10;
+  private static final String KEY = "resource-permanent/files/song";
+  private static final Duration IDLE_TIMEOUT = Duration.ofSeconds(10);
+  private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+  private final DownloadCoalescer coalescer = new DownloadCoalescer(4 * CHUNK_SIZE, IDLE_TIMEOUT, scheduler);
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final List<Long> resumedOffsets = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean upstreamCancelled = new AtomicBoolean();
+  private final byte[] content = new byte[CHUNKS * CHUNK_SIZE];
+  private Sinks.Many<ByteBuffer> upstream;
+
+  @BeforeEach
+  void setUp() {
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    upstream = Sinks.many().unicast().onBackpressureBuffer();
+  }
+
+  @Test
+  void shouldShareDownloadBetweenConcurrentReaders() {
+    final Reader first = new Reader(Long.MAX_VALUE);
+    final Reader second = new Reader(Long.MAX_VALUE);
+    get().subscribe(first);
+    get().subscribe(second);
+
+    emitContent();
+
+    assertArrayEquals(content, first.read());
+    assertArrayEquals(content, second.read());
+    assertEquals(1, fetches.get());
+    assertEquals(List.of(), resumedOffsets);
+  }
+
+  @Test
+  void shouldResumeSlowReaderFromItsOffset() {
+    final Reader fast = new Reader(Long.MAX_VALUE);
+    final Reader slow = new Reader(1);
+    get().subscribe(fast);
+    get().subscribe(slow);
+
+    emitContent();
+    // the chunks after the first one have left the window before the slow reader asked for them
+    slow.requestMore(Long.MAX_VALUE);
+
+    assertArrayEquals(content, fast.read());
+    assertArrayEquals(content, slow.read());
+    assertEquals(1, fetches.get());
+    assertEquals(List.of((long) CHUNK_SIZE), resumedOffsets);
+  }
+
+  @Test
+  void shouldStartNewDownloadWhenBeginningHasLeftWindow() {
+    final Reader first = new Reader(Long.MAX_VALUE);
+    get().subscribe(first);
+    for (int chunk = 0; chunk < 5; chunk++) {
+      upstream.tryEmitNext(ByteBuffer.wrap(content, chunk * CHUNK_SIZE, CHUNK_SIZE));
+    }
+
+    coalescer.get(KEY, this::fetch, this::resume).block();
+
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  void shouldCancelDownloadWhenAllReadersCancel() {
+    final Reader first = new Reader(Long.MAX_VALUE);
+    final Reader second = new Reader(Long.MAX_VALUE);
+    get().subscribe(first);
+    get().subscribe(second);
+    upstream.tryEmitNext(ByteBuffer.wrap(content, 0, CHUNK_SIZE));
+
+    first.dispose();
+    second.dispose();
+
+    assertTrue(upstreamCancelled.get());
+  }
+
+  @Test
+  void shouldCancelDownloadNobodyReadsWithinIdleTimeout() {
+    coalescer.get(KEY, this::fetch, this::resume).block();
+
+    scheduler.advanceTimeBy(IDLE_TIMEOUT.minusSeconds(1));
+    assertFalse(upstreamCancelled.get());
+    scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+    assertTrue(upstreamCancelled.get());
+    coalescer.get(KEY, this::fetch, this::resume).block();
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  void shouldCancelDownloadWhenReaderCancelsBeforeItStarts() {
+    final Reader reader = new Reader(0);
+    get().subscribe(reader);
+
+    reader.dispose();
+
+    assertTrue(upstreamCancelled.get());
+    coalescer.get(KEY, this::fetch, this::resume).block();
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  void shouldKeepDownloadReadWithinIdleTimeout() {
+    final Reader reader = new Reader(Long.MAX_VALUE);
+    get().subscribe(reader);
+
+    scheduler.advanceTimeBy(IDLE_TIMEOUT);
+    emitContent();
+
+    assertArrayEquals(content, reader.read());
+    assertFalse(upstreamCancelled.get());
+  }
+
+  private Flux<ByteBuffer> get() {
+    return coalescer.get(KEY, this::fetch, this::resume).flatMapMany(Flux::from);
+  }
+
+  private Mono<ResponsePublisher<GetObjectResponse>> fetch() {
+    return Mono.fromSupplier(() -> {
+      fetches.incrementAndGet();
+      final GetObjectResponse response = GetObjectResponse.builder().contentLength((long) content.length).build();
+      return new ResponsePublisher<>(response, SdkPublisher.adapt(upstream.asFlux().doOnCancel(() -> upstreamCancelled.set(true))));
+    });
+  }
+
+  private Publisher<ByteBuffer> resume(long offset) {
+    resumedOffsets.add(offset);
+    return Flux.just(ByteBuffer.wrap(content, (int) offset, content.length - (int) offset));
+  }
+
+  private void emitContent() {
+    for (int chunk = 0; chunk < CHUNKS; chunk++) {
+      upstream.tryEmitNext(ByteBuffer.wrap(content, chunk * CHUNK_SIZE, CHUNK_SIZE));
+    }
+    upstream.tryEmitComplete();
+  }
+
+  private static final class Reader extends BaseSubscriber<ByteBuffer> {
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private final long initialRequest;
+    private boolean completed;
+
+    private Reader(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+      if (initialRequest > 0) {
+        request(initialRequest);
+      }
+    }
+
+    @Override
+    protected void hookOnNext(ByteBuffer chunk) {
+      final byte[] bytes = new byte[chunk.remaining()];
+      chunk.get(bytes);
+      received.writeBytes(bytes);
+    }
+
+    @Override
+    protected void hookOnComplete() {
+      completed = true;
+    }
+
+    private void requestMore(long count) {
+      request(count);
+    }
+
+    private byte[] read() {
+      assertTrue(completed);
+      return received.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuple2;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class ObjectFileCacheTest {
+  private static final String BUCKET = "resource-permanent";
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger downloads = new AtomicInteger();
+  @TempDir
+  Path directory;
+  private S3ClientConfigurationProperties properties;
+
+  @BeforeEach
+  void setUp() {
+    properties = new S3ClientConfigurationProperties();
+    properties.getFileCache().setEnabled(true);
+    properties.getFileCache().setDirectory(directory);
+    properties.getFileCache().setMaxSize(3 * 1024);
+    properties.getFileCache().setMaxObjectSize(2 * 1024);
+  }
+
+  @Test
+  void shouldDownloadFileOnceForConcurrentRequests() throws IOException {
+    final ObjectFileCache cache = new ObjectFileCache(properties, meterRegistry, Runnable::run);
+    final byte[] content = content(2 * 1024);
+
+    final Tuple2<CachedFile, CachedFile> files = Mono.zip(cache.get(BUCKET, "files/first", () -> download(content)),
+        cache.get(BUCKET, "files/first", () -> download(content))).block();
+    assertSame(files.getT1(), files.getT2());
+    assertArrayEquals(content, Files.readAllBytes(files.getT1().getPath()));
+    assertEquals("audio/mpeg", files.getT1().getContentType());
+
+    StepVerifier.create(cache.get(BUCKET, "files/first", () -> download(content)))
+        .expectNext(files.getT1())
+        .verifyComplete();
+    assertEquals(1, downloads.get());
+    assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    assertEquals(3.0 * content.length, meterRegistry.get("resource.file.cache.served").counter().count());
+  }
+
+  @Test
+  void shouldEvictFilesBeyondMaxSize() throws IOException {
+    final ObjectFileCache cache = new ObjectFileCache(properties, meterRegistry, Runnable::run);
+
+    for (String key : new String[] {"files/first", "files/second", "files/third"}) {
+      cache.release(cache.get(BUCKET, key, () -> download(content(2 * 1024))).block());
+    }
+
+    assertEquals(1, countFiles());
+    assertEquals(2.0, meterRegistry.get("cache.evictions").functionCounter().count());
+    assertEquals(2.0 * 1024, meterRegistry.get("resource.file.cache.used").gauge().value());
+  }
+
+  @Test
+  void shouldKeepEvictedFileUntilReleased() throws IOException {
+    final ObjectFileCache cache = new ObjectFileCache(properties, meterRegistry, Runnable::run);
+    final byte[] content = content(2 * 1024);
+
+    final CachedFile first = cache.get(BUCKET, "files/first", () -> download(content)).block();
+    final CachedFile second = cache.get(BUCKET, "files/second", () -> download(content)).block();
+
+    // one of the files has been evicted while both are being sent, it is deleted once its request has released it
+    assertEquals(1.0, meterRegistry.get("cache.evictions").functionCounter().count());
+    assertEquals(2, countFiles());
+    assertArrayEquals(content, Files.readAllBytes(first.getPath()));
+    assertArrayEquals(content, Files.readAllBytes(second.getPath()));
+    cache.release(first);
+    cache.release(second);
+    assertEquals(1, countFiles());
+  }
+
+  @Test
+  void shouldDeleteFileOfFailedDownload() throws IOException {
+    final ObjectFileCache cache = new ObjectFileCache(properties, meterRegistry, Runnable::run);
+    final GetObjectResponse response = GetObjectResponse.builder().contentLength(2048L).build();
+
+    final Flux<ByteBuffer> interrupted = Flux.concat(Mono.just(ByteBuffer.wrap(content(1024))), Mono.error(new IOException("Reset")));
+
+    StepVerifier.create(cache.get(BUCKET, "files/first", () -> Mono.just(new ResponsePublisher<>(response,
+            SdkPublisher.adapt(interrupted)))))
+        .expectError(IOException.class)
+        .verify();
+    assertEquals(0, countFiles());
+
+    // a failed download is not remembered
+    StepVerifier.create(cache.get(BUCKET, "files/first", () -> download(content(1024))))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertEquals(1, downloads.get());
+  }
+
+  @Test
+  void shouldTakeOnlyFilesOfKnownSizeUpToMaxObjectSize() {
+    final ObjectFileCache cache = new ObjectFileCache(properties, meterRegistry, Runnable::run);
+
+    assertTrue(cache.isCacheable(2048L));
+    assertFalse(cache.isCacheable(2049L));
+    assertFalse(cache.isCacheable(null));
+
+    properties.getFileCache().setEnabled(false);
+    assertFalse(new ObjectFileCache(properties, new SimpleMeterRegistry(), Runnable::run).isCacheable(1L));
+  }
+
+  @Test
+  void shouldDeleteCachedFilesOfEarlierRun() throws IOException {
+    final Path cached = Files.createFile(directory.resolve(UUID.randomUUID().toString()));
+    final Path other = Files.createFile(directory.resolve("other.txt"));
+
+    new ObjectFileCache(properties, meterRegistry, Runnable::run);
+
+    assertFalse(Files.exists(cached));
+    assertTrue(Files.exists(other));
+  }
+
+  private Mono<ResponsePublisher<GetObjectResponse>> download(byte[] content) {
+    return Mono.fromSupplier(() -> {
+      downloads.incrementAndGet();
+      final GetObjectResponse response = GetObjectResponse.builder().contentLength((long) content.length).contentType("audio/mpeg")
+          .eTag("\"etag\"").build();
+      return new ResponsePublisher<>(response, SdkPublisher.adapt(Flux.just(ByteBuffer.wrap(content))));
+    });
+  }
+
+  private byte[] content(int size) {
+    final byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  private long countFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+}
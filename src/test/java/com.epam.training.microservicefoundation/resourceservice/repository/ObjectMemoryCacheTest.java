@@ -0,0 +1,129 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class ObjectMemoryCacheTest {
+  private static final Instant UPLOADED = Instant.parse("2024-05-06T11:40:15Z");
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger downloads = new AtomicInteger();
+  private ObjectMemoryCache cache;
+
+  @BeforeEach
+  void setUp() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getMemoryCache().setMaxSize(1024 * 1024);
+    properties.getMemoryCache().setMaxObjectSize(64 * 1024);
+    cache = new ObjectMemoryCache(properties, meterRegistry, Runnable::run);
+  }
+
+  @Test
+  void shouldDownloadContentOnceIntoDirectMemory() {
+    final GetResourceMetadataDTO metadata = new GetResourceMetadataDTO(1L, "jingle.mp3", "\"etag\"", null, 4096L, UPLOADED, null, null);
+    final byte[] content = content(4096);
+
+    final Tuple2<CachedContent, CachedContent> contents = Mono.zip(cache.get(metadata, () -> download(content)),
+        cache.get(metadata, () -> download(content))).block();
+    assertSame(contents.getT1(), contents.getT2());
+    assertEquals(1, downloads.get());
+
+    final CachedContent cached = cache.getIfPresent(1L).orElseThrow();
+    assertTrue(cached.getContent().isDirect());
+    assertArrayEquals(content, toArray(cached.getContent()));
+    assertEquals("audio/mpeg", cached.getContentType());
+    assertEquals("jingle.mp3", cached.getFilename());
+    // only the content written to a response is counted as served
+    assertEquals(0.0, meterRegistry.get("resource.memory.cache.served").counter().count());
+    cache.recordServed(cached);
+    assertEquals(content.length, meterRegistry.get("resource.memory.cache.served").counter().count());
+    assertEquals(4096.0, meterRegistry.get("resource.memory.cache.used").gauge().value());
+  }
+
+  @Test
+  void shouldGiveEntityTagOfStoredFileToResourceWithoutOne() {
+    final GetResourceMetadataDTO metadata = new GetResourceMetadataDTO(2L, "jingle.mp3", null, null, null, null, null, null);
+
+    final CachedContent cached = cache.get(metadata, () -> download(content(16))).block();
+
+    assertEquals("\"stored\"", cached.getMetadata().getEtag());
+    assertEquals(UPLOADED, cached.getMetadata().getLastModified());
+    assertEquals(16L, cached.getMetadata().getContentLength());
+  }
+
+  @Test
+  void shouldForgetInvalidatedContent() {
+    final GetResourceMetadataDTO metadata = new GetResourceMetadataDTO(3L, "jingle.mp3", "\"etag\"", null, 16L, UPLOADED, null, null);
+    cache.get(metadata, () -> download(content(16))).block();
+
+    cache.invalidate(3L);
+
+    assertFalse(cache.getIfPresent(3L).isPresent());
+  }
+
+  @Test
+  void shouldNotCacheContentInvalidatedWhileDownloading() {
+    final GetResourceMetadataDTO metadata = new GetResourceMetadataDTO(4L, "jingle.mp3", "\"etag\"", null, 16L, UPLOADED, null, null);
+
+    // the resource is deleted while its file is being downloaded
+    final CachedContent downloaded = cache.get(metadata, () -> download(content(16))
+        .doOnNext(responsePublisher -> cache.invalidate(4L))).block();
+
+    assertEquals(16, downloaded.getContent().remaining());
+    assertFalse(cache.getIfPresent(4L).isPresent());
+    cache.get(metadata, () -> download(content(16))).block();
+    assertTrue(cache.getIfPresent(4L).isPresent());
+  }
+
+  @Test
+  void shouldTakeOnlyContentOfKnownSizeUpToMaxObjectSize() {
+    assertTrue(cache.isCacheable(64L * 1024));
+    assertFalse(cache.isCacheable(64L * 1024 + 1));
+    assertFalse(cache.isCacheable(null));
+  }
+
+  private Mono<ResponsePublisher<GetObjectResponse>> download(byte[] content) {
+    return Mono.fromSupplier(() -> {
+      downloads.incrementAndGet();
+      final GetObjectResponse response = GetObjectResponse.builder().contentLength((long) content.length).contentType("audio/mpeg")
+          .eTag("\"stored\"").lastModified(UPLOADED).metadata(Map.of("filename", "jingle.mp3")).build();
+      // the content arrives in two chunks, as it does from the storage client
+      final int half = content.length / 2;
+      return new ResponsePublisher<>(response, SdkPublisher.adapt(Flux.just(ByteBuffer.wrap(content, 0, half),
+          ByteBuffer.wrap(content, half, content.length - half))));
+    });
+  }
+
+  private byte[] content(int size) {
+    final byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  private byte[] toArray(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,54 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PartSizePlannerTest {
+  private static final long MB = 1024 * 1024;
+  private S3ClientConfigurationProperties properties;
+  private PartSizePlanner planner;
+
+  @BeforeEach
+  void setUp() {
+    properties = new S3ClientConfigurationProperties();
+    planner = new PartSizePlanner(properties, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void shouldUsePreferredPartSizeForSmallKnownLength() {
+    final PartSizePlanner.Plan plan = planner.plan(200 * MB);
+    assertEquals(properties.getUpload().getPartSize(), plan.partSize(1));
+    assertEquals(properties.getUpload().getPartSize(), plan.partSize(25));
+  }
+
+  @Test
+  void shouldStayWithinPartCountLimitForLargeKnownLength() {
+    final long contentLength = 60L * 1024 * MB;
+    final PartSizePlanner.Plan plan = planner.plan(contentLength);
+    assertTrue(plan.partSize(1) * properties.getMultipartMaxParts() >= contentLength);
+    assertEquals(plan.partSize(1), plan.partSize(properties.getMultipartMaxParts()));
+  }
+
+  @Test
+  void shouldGrowPartSizeGeometricallyForUnknownLength() {
+    final PartSizePlanner.Plan plan = planner.plan(-1);
+    final int interval = properties.getUpload().getPartSizeGrowthInterval();
+    assertEquals(properties.getUpload().getPartSize(), plan.partSize(interval));
+    assertEquals(2 * properties.getUpload().getPartSize(), plan.partSize(interval + 1));
+    assertEquals(4 * properties.getUpload().getPartSize(), plan.partSize(2 * interval + 1));
+  }
+
+  @Test
+  void shouldRespectConfiguredPartSizeBounds() {
+    properties.setMultipartMinPartSize((int) (16 * MB));
+    properties.setMultipartMaxPartSize(32 * MB);
+    final PartSizePlanner.Plan plan = planner.plan(-1);
+    assertEquals(16 * MB, plan.partSize(1));
+    assertEquals(32 * MB, plan.partSize(properties.getUpload().getPartSizeGrowthInterval() * 5 + 1));
+  }
+}
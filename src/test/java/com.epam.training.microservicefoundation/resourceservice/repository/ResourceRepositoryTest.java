@@ -1,6 +1,7 @@
 package com.epam.training.microservicefoundation.resourceservice.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -9,6 +10,8 @@ import com.epam.training.microservicefoundation.resourceservice.common.PostgresE
 import com.epam.training.microservicefoundation.resourceservice.configuration.DatasourceConfiguration;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
+import java.time.Duration;
+import java.util.List;
 import java.util.Random;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -23,6 +26,9 @@ import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -34,6 +40,8 @@ import reactor.test.StepVerifier;
 class ResourceRepositoryTest {
   @Autowired
   ResourceRepository resourceRepository;
+  @Autowired
+  ReactiveTransactionManager transactionManager;
 
   @AfterEach
   public void cleanUp() {
@@ -248,6 +256,82 @@ class ResourceRepositoryTest {
         .verifyComplete();
   }
 
+  @Test
+  void shouldMarkOnlyResourcesNotMarkedYet() {
+    final Resource marked = resourceRepository.save(resourceByStatus(ResourceStatus.DELETING).toBuilder().storageId(1L).build()).block();
+    final Resource processed = resourceRepository.save(resourceByStatus(ResourceStatus.PROCESSED).toBuilder().storageId(2L).build())
+        .block();
+
+    StepVerifier.create(resourceRepository.updateAllStatusByIds(new Long[]{marked.getId(), processed.getId()},
+            ResourceStatus.DELETING.name()))
+        .assertNext(result -> {
+          assertEquals(processed.getId(), result.getId());
+          assertEquals(ResourceStatus.DELETING, result.getStatus());
+        })
+        .verifyComplete();
+    StepVerifier.create(resourceRepository.findAllByStatusAndStorageIdForUpdate(ResourceStatus.DELETING.name(),
+            processed.getStorageId(), 10))
+        .assertNext(result -> assertEquals(processed.getId(), result.getId()))
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldFindOnlyProcessedResourcesWithContent() {
+    final Resource marked = resourceRepository.save(resourceByStatus(ResourceStatus.DELETING).toBuilder().contentHash("hash-1").build())
+        .block();
+    final Resource staged = resourceRepository.save(resourceByStatus(ResourceStatus.STAGED).toBuilder().contentHash("hash-1").build())
+        .block();
+    final Resource processed = resourceRepository.save(resourceByStatus(ResourceStatus.PROCESSED).toBuilder().contentHash("hash-1")
+        .build()).block();
+
+    StepVerifier.create(resourceRepository.findFirstByContentHashForShare("hash-1"))
+        .assertNext(result -> assertEquals(processed.getId(), result.getId()))
+        .verifyComplete();
+    StepVerifier.create(resourceRepository.findAllByContentHashesForShare(new String[]{"hash-1"}).map(Resource::getId)
+            .collectList())
+        .assertNext(result -> {
+          assertEquals(List.of(processed.getId()), result);
+          assertFalse(result.contains(marked.getId()));
+          assertFalse(result.contains(staged.getId()));
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotFindStagedResourceWithContent() {
+    resourceRepository.save(resourceByStatus(ResourceStatus.STAGED).toBuilder().contentHash("hash-1").build()).block();
+
+    // the object of the staged resource is moved to the permanent storage, its key would be gone from under a resource reusing it
+    StepVerifier.create(resourceRepository.findFirstByContentHashForShare("hash-1"))
+        .verifyComplete();
+    StepVerifier.create(resourceRepository.findAllByContentHashesForShare(new String[]{"hash-1"}))
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotMarkResourceAsDeletingWhileItsContentIsReused() {
+    final Resource stored = resourceRepository.save(resourceByStatus(ResourceStatus.PROCESSED).toBuilder().contentHash("hash-1").build())
+        .block();
+    final TransactionalOperator transactionalOperator = TransactionalOperator.create(transactionManager);
+    final Mono<String> reuse = transactionalOperator.transactional(resourceRepository.findFirstByContentHashForShare("hash-1")
+            .delayElement(Duration.ofMillis(500))
+            .flatMap(reused -> resourceRepository.save(resourceByStatus(ResourceStatus.STAGED).toBuilder().key(reused.getKey()).build())))
+        .thenReturn("reused");
+    final Mono<String> mark = Mono.delay(Duration.ofMillis(100))
+        .then(transactionalOperator.transactional(resourceRepository.updateAllStatusByIds(new Long[]{stored.getId()},
+            ResourceStatus.DELETING.name()).then()))
+        .thenReturn("marked");
+
+    // the resource is marked only once the one reusing its content has been committed, the deletion then sees the new reference
+    StepVerifier.create(Flux.merge(reuse, mark))
+        .expectNext("reused", "marked")
+        .verifyComplete();
+    StepVerifier.create(resourceRepository.lockAllByKeys(new String[]{stored.getKey()})
+            .thenMany(resourceRepository.findAllByKeys(new String[]{stored.getKey()})))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
   private void assertResourceResult(Resource expected, Mono<Resource> actual) {
     StepVerifier.create(actual)
         .assertNext(result -> {
@@ -0,0 +1,97 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class StorageLoadTrackerTest {
+  private static final String BUCKET = "resource-staging";
+  private static final long MILLISECOND = Duration.ofMillis(1).toNanos();
+  private final AtomicLong clock = new AtomicLong();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final StorageLoadTracker tracker = new StorageLoadTracker(properties(), meterRegistry, clock::get);
+
+  @Test
+  void shouldMeasureLatencyOfRequest() {
+    StepVerifier.create(tracker.measure(BUCKET, Mono.fromSupplier(() -> clock.addAndGet(200 * MILLISECOND))))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertEquals(200, tracker.getLoad(BUCKET).getLatencyMillis(), 0.001);
+    assertEquals(0, tracker.getLoad(BUCKET).getErrorRate());
+    assertEquals(200, meterRegistry.get("s3.bucket.latency").tag("bucket", BUCKET).gauge().value(), 0.001);
+  }
+
+  @Test
+  void shouldCountServerErrorsOnly() {
+    StepVerifier.create(tracker.measure(BUCKET, Mono.error(NoSuchKeyException.builder().statusCode(404).build())))
+        .expectError(NoSuchKeyException.class)
+        .verify();
+    assertEquals(0, tracker.getLoad(BUCKET).getErrorRate());
+
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    StepVerifier.create(tracker.measure(BUCKET, Mono.error(S3Exception.builder().statusCode(503).build())))
+        .expectError(S3Exception.class)
+        .verify();
+    assertTrue(tracker.getLoad(BUCKET).getErrorRate() > 0);
+  }
+
+  @Test
+  void shouldNotMeasureLatencyOfTransfer() {
+    StepVerifier.create(tracker.measure(BUCKET, Mono.fromSupplier(() -> clock.addAndGet(20 * MILLISECOND))))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(tracker.measureTransfer(BUCKET, Mono.fromSupplier(() -> clock.addAndGet(5000 * MILLISECOND))))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertTrue(tracker.getLoad(BUCKET).getLatencyMillis() <= 20);
+    assertEquals(0, tracker.getLoad(BUCKET).getErrorRate());
+  }
+
+  @Test
+  void shouldCountServerErrorsOfTransfer() {
+    StepVerifier.create(tracker.measureTransfer(BUCKET, Mono.error(S3Exception.builder().statusCode(503).build())))
+        .expectError(S3Exception.class)
+        .verify();
+
+    assertEquals(1, tracker.getLoad(BUCKET).getErrorRate());
+    assertEquals(0, tracker.getLoad(BUCKET).getLatencyMillis());
+  }
+
+  @Test
+  void shouldFadeLoadOfIdleBucket() {
+    StepVerifier.create(tracker.measure(BUCKET, Mono.error(S3Exception.builder().statusCode(500).build())))
+        .expectError(S3Exception.class)
+        .verify();
+    assertEquals(1, tracker.getLoad(BUCKET).getErrorRate());
+
+    clock.addAndGet(Duration.ofMinutes(5).toNanos());
+    assertTrue(tracker.getLoad(BUCKET).getErrorRate() < 0.001);
+  }
+
+  @Test
+  void shouldTrackBytesInFlight() {
+    tracker.addInFlight(BUCKET, 1024);
+    tracker.addInFlight(BUCKET, 2048);
+    tracker.removeInFlight(BUCKET, 1024);
+
+    assertEquals(2048, tracker.getLoad(BUCKET).getInFlightBytes());
+    assertEquals(2048, meterRegistry.get("s3.bucket.inflight").tag("bucket", BUCKET).gauge().value());
+  }
+
+  private S3ClientConfigurationProperties properties() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getPlacement().setDecay(Duration.ofSeconds(30));
+    return properties;
+  }
+}
@@ -0,0 +1,94 @@
+package com.epam.training.microservicefoundation.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.UploadCapacityExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+class UploadMemoryBudgetTest {
+  private static final long MB = 1024 * 1024;
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+  private UploadMemoryBudget budget;
+
+  @BeforeEach
+  void setUp() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getUpload().setMemoryBudget(16 * MB);
+    properties.getUpload().setMemoryBudgetMaxWait(Duration.ofSeconds(10));
+    budget = new UploadMemoryBudget(properties, meterRegistry, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.dispose();
+  }
+
+  @Test
+  void shouldGrantReservationsWithinBudget() {
+    final UploadMemoryBudget.Permit first = budget.acquire(8 * MB).block();
+    final UploadMemoryBudget.Permit second = budget.acquire(8 * MB).block();
+    assertEquals(16.0 * MB, used());
+
+    first.release();
+    second.release();
+    second.release();
+    assertEquals(0.0, used());
+  }
+
+  @Test
+  void shouldGrantWaitingReservationsInOrder() {
+    final UploadMemoryBudget.Permit held = budget.acquire(12 * MB).block();
+    final List<Long> granted = new CopyOnWriteArrayList<>();
+    final Disposable large = budget.acquire(8 * MB).subscribe(permit -> granted.add(permit.bytes()));
+    // fits into the remaining budget, but has to wait behind the larger reservation
+    final Disposable small = budget.acquire(2 * MB).subscribe(permit -> granted.add(permit.bytes()));
+    assertEquals(2.0, meterRegistry.get("s3.upload.memory.waiters").gauge().value());
+    assertEquals(List.of(), granted);
+
+    held.release();
+    assertEquals(List.of(8 * MB, 2 * MB), granted);
+    assertEquals(0.0, meterRegistry.get("s3.upload.memory.waiters").gauge().value());
+    large.dispose();
+    small.dispose();
+  }
+
+  @Test
+  void shouldRejectReservationWaitingTooLong() {
+    final UploadMemoryBudget.Permit held = budget.acquire(16 * MB).block();
+
+    StepVerifier.withVirtualTime(() -> budget.acquire(MB), () -> scheduler, Long.MAX_VALUE)
+        .expectSubscription()
+        .thenAwait(Duration.ofSeconds(10))
+        .expectError(UploadCapacityExceededException.class)
+        .verify();
+
+    assertEquals(1.0, meterRegistry.get("s3.upload.memory.rejections").counter().count());
+    held.release();
+    assertEquals(0.0, used());
+  }
+
+  @Test
+  void shouldForgetCancelledReservation() {
+    final UploadMemoryBudget.Permit held = budget.acquire(16 * MB).block();
+    budget.acquire(MB).subscribe().dispose();
+
+    held.release();
+    assertEquals(0.0, used());
+    assertEquals(0.0, meterRegistry.get("s3.upload.memory.waiters").gauge().value());
+  }
+
+  private double used() {
+    return meterRegistry.get("s3.upload.memory.used").gauge().value();
+  }
+}
@@ -3,12 +3,24 @@ package com.epam.training.microservicefoundation.resourceservice.service;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceLocationCacheProperties;
 import com.epam.training.microservicefoundation.resourceservice.kafka.producer.KafkaProducer;
 import com.epam.training.microservicefoundation.resourceservice.service.mapper.DeleteResourceMapper;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.DeleteResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
@@ -16,27 +28,40 @@ import com.epam.training.microservicefoundation.resourceservice.domain.entity.Re
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.CloudStorageException;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectFileCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectMemoryCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.BaseResourceServiceImpl;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import software.amazon.awssdk.core.async.ResponsePublisher;
 import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.awssdk.core.internal.async.SdkPublishers;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
@@ -53,6 +78,13 @@ class BaseResourceServiceTest {
   private KafkaProducer kafkaProducer;
   @Mock
   private StorageManager storageManager;
+  @Mock
+  private ObjectFileCache objectFileCache;
+  @Mock
+  private ObjectMemoryCache objectMemoryCache;
+  @Spy
+  private ResourceLocationCache resourceLocationCache =
+      new ResourceLocationCache(new ResourceLocationCacheProperties(), new SimpleMeterRegistry());
   @InjectMocks
   private BaseResourceServiceImpl service;
 
@@ -61,25 +93,124 @@ class BaseResourceServiceTest {
   @Test
   void shouldGetSong() throws IOException {
     final Resource savedResource = getSavedResource();
-    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
-    when(storageManager.getById(anyLong())).thenReturn(Mono.just(PERMANENT_STORAGE));
     final ResponsePublisher<GetObjectResponse> responsePublisher = getResponsePublisher();
     when(storageRepository.getByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.just(responsePublisher));
 
-    StepVerifier.create(service.getById(savedResource.getId()))
+    StepVerifier.create(service.getById(getMetadata(savedResource)))
         .assertNext(result -> {
           assertEquals(responsePublisher.response().contentType(), result.response().contentType());
         })
         .verifyComplete();
+    // the location is resolved along with the metadata, the resource is not looked up again
+    verify(resourceRepository, never()).findById(anyLong());
+  }
+
+  @Test
+  void shouldGetMetadataWithLocationOfSong() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(anyLong())).thenReturn(Mono.just(PERMANENT_STORAGE));
+
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .assertNext(result -> {
+          assertEquals(savedResource.getKey(), result.getKey());
+          assertEquals(PERMANENT_STORAGE.getBucket(), result.getBucket());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotLookUpResourceAgainWhenGetMetadataTwice() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(anyLong())).thenReturn(Mono.just(PERMANENT_STORAGE));
+
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    verify(resourceRepository, times(1)).findById(savedResource.getId());
+    verify(storageManager, times(1)).getById(savedResource.getStorageId());
+  }
+
+  @Test
+  void shouldGetCachedSong() {
+    final Resource savedResource = getSavedResource().toBuilder().contentLength(1024L).build();
+    when(objectFileCache.isCacheable(1024L)).thenReturn(true);
+    final CachedFile cachedFile = new CachedFile(Paths.get("cached"), 1024L, "audio/mpeg", "\"etag\"", null, Map.of());
+    when(objectFileCache.get(eq(PERMANENT_STORAGE.getBucket()), eq(savedResource.getKey()), any())).thenReturn(Mono.just(cachedFile));
+
+    StepVerifier.create(service.getCachedById(getMetadata(savedResource)))
+        .expectNext(cachedFile)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotGetCachedSongOfUnknownSize() {
+    final Resource savedResource = getSavedResource();
+
+    StepVerifier.create(service.getCachedById(getMetadata(savedResource)))
+        .verifyComplete();
+    verify(storageRepository, never()).getByKey(anyString(), anyString());
+  }
+
+  @Test
+  void shouldGetDownloadUrlOfLargeSong() {
+    final Resource savedResource = getSavedResource().toBuilder().contentLength(512L * 1024 * 1024).build();
+    when(storageRepository.isRedirectedDownload(savedResource.getContentLength())).thenReturn(true);
+    final URI url = URI.create("https://s3.amazonaws.com/resource-permanent/" + savedResource.getKey());
+    when(storageRepository.presignGetByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), savedResource.getName()))
+        .thenReturn(Mono.just(url));
+
+    StepVerifier.create(service.getDownloadUrlById(getMetadata(savedResource), false))
+        .expectNext(url)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldNotGetDownloadUrlOfSmallSongUnlessRequested() {
+    final Resource savedResource = getSavedResource().toBuilder().contentLength(1024L).build();
+
+    StepVerifier.create(service.getDownloadUrlById(getMetadata(savedResource), false))
+        .verifyComplete();
+    verify(storageRepository, never()).presignGetByKey(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  void shouldGetSongRangeWhenNotModifiedSinceIfRangeDate() throws IOException {
+    final Resource savedResource = getSavedResource();
+    final ResponsePublisher<GetObjectResponse> responsePublisher = getResponsePublisher();
+    when(storageRepository.getRangeByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), "bytes=0-99", null,
+        Instant.parse("2015-10-21T07:28:00Z"))).thenReturn(Mono.just(responsePublisher));
+
+    StepVerifier.create(service.getRangeById(getMetadata(savedResource), "bytes=0-99", "Wed, 21 Oct 2015 07:28:00 GMT"))
+        .expectNext(responsePublisher)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldGetWholeSongWhenIfRangeHasWeakEntityTag() throws IOException {
+    final Resource savedResource = getSavedResource().toBuilder().etag("\"etag\"").build();
+    final ResponsePublisher<GetObjectResponse> responsePublisher = getResponsePublisher();
+    when(storageRepository.getByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.just(responsePublisher));
+
+    StepVerifier.create(service.getRangeById(getMetadata(savedResource), "bytes=0-99", "W/\"etag\""))
+        .expectNext(responsePublisher)
+        .verifyComplete();
+
+    verify(storageRepository, never()).getRangeByKey(anyString(), anyString(), anyString(), any(), any());
   }
 
   @Test
-  void shouldThrowNotFoundExceptionWhenGetById() {
+  void shouldThrowNotFoundExceptionWhenGetMetadataOfResourceInUnknownStorage() {
     final Resource savedResource = getSavedResource();
     when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
     when(storageManager.getById(anyLong())).thenReturn(Mono.empty());
 
-    StepVerifier.create(service.getById(savedResource.getId()))
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
         .expectError(EntityNotFoundException.class)
         .verify();
   }
@@ -87,11 +218,9 @@ class BaseResourceServiceTest {
   @Test
   void shouldThrowDownloadFailedExceptionWhenGetById() {
     final Resource savedResource = getSavedResource();
-    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
-    when(storageManager.getById(anyLong())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageRepository.getByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket())).thenThrow(CloudStorageException.class);
 
-    StepVerifier.create(service.getById(savedResource.getId()))
+    StepVerifier.create(service.getById(getMetadata(savedResource)))
         .expectError(CloudStorageException.class)
         .verify();
   }
@@ -99,11 +228,9 @@ class BaseResourceServiceTest {
   @Test
   void shouldThrowNoSuchKeyExceptionWhenGetById() {
     final Resource savedResource = getSavedResource();
-    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
-    when(storageManager.getById(anyLong())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageRepository.getByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket())).thenThrow(NoSuchKeyException.class);
 
-    StepVerifier.create(service.getById(savedResource.getId()))
+    StepVerifier.create(service.getById(getMetadata(savedResource)))
         .expectError(NoSuchKeyException.class)
         .verify();
   }
@@ -111,15 +238,14 @@ class BaseResourceServiceTest {
   @Test
   void shouldDeleteResourceByIds() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(storageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(storageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource2)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket()))).thenReturn(Mono.just(Map.of()));
+    when(resourceRepository.deleteAllByIds(any())).thenReturn(Mono.just(2));
     when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
     when(deleteResourceMapper.toDto(resource2)).thenReturn(new DeleteResourceDTO(resource2.getId()));
 
@@ -131,6 +257,55 @@ class BaseResourceServiceTest {
           assertEquals(resource2.getId(), result.getId());
         })
         .verifyComplete();
+    // the objects of a bucket are deleted with one request, the resources with one statement
+    verify(storageRepository).deleteAllByKeys(Set.of(resource1.getKey(), resource2.getKey()), PERMANENT_STORAGE.getBucket());
+    verify(resourceRepository).deleteAllByIds(new Long[]{resource1.getId(), resource2.getId()});
+    // files held in memory are served without looking up their resource
+    verify(objectMemoryCache).invalidate(resource1.getId());
+    verify(objectMemoryCache).invalidate(resource2.getId());
+    verify(resourceLocationCache).invalidate(resource1.getId());
+    verify(resourceLocationCache).invalidate(resource2.getId());
+  }
+
+  @Test
+  void shouldKeepStoredObjectWhenDeleteResourceSharingContent() {
+    final Resource resource = getSavedResource();
+    final Resource sharingResource = resource.toBuilder().id(resource.getId() + 1).build();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource));
+    when(storageManager.getById(resource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(resourceRepository.lockAllByKeys(new String[]{resource.getKey()}))
+        .thenReturn(Flux.just(resource.getId(), sharingResource.getId()));
+    when(resourceRepository.findAllByKeys(new String[]{resource.getKey()})).thenReturn(Flux.just(resource, sharingResource));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource.getId()})).thenReturn(Mono.just(1));
+    when(deleteResourceMapper.toDto(resource)).thenReturn(new DeleteResourceDTO(resource.getId()));
+
+    StepVerifier.create(service.deleteByIds(new Long[]{resource.getId()}))
+        .assertNext(result -> assertEquals(resource.getId(), result.getId()))
+        .verifyComplete();
+
+    verify(storageRepository, never()).deleteAllByKeys(any(), anyString());
+  }
+
+  @Test
+  void shouldKeepStoredObjectWhenResourceSharingContentSavedWhileDeleteResource() {
+    final Resource resource = getSavedResource();
+    final Resource sharingResource = resource.toBuilder().id(resource.getId() + 1).build();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource));
+    when(storageManager.getById(resource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    // the resource sharing the content is committed while the deletion waits for the locks, only the read after locking sees it
+    when(resourceRepository.lockAllByKeys(new String[]{resource.getKey()})).thenReturn(Flux.just(resource.getId()));
+    when(resourceRepository.findAllByKeys(new String[]{resource.getKey()})).thenReturn(Flux.just(resource, sharingResource));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource.getId()})).thenReturn(Mono.just(1));
+    when(deleteResourceMapper.toDto(resource)).thenReturn(new DeleteResourceDTO(resource.getId()));
+
+    StepVerifier.create(service.deleteByIds(new Long[]{resource.getId()}))
+        .assertNext(result -> assertEquals(resource.getId(), result.getId()))
+        .verifyComplete();
+
+    final InOrder inOrder = inOrder(resourceRepository);
+    inOrder.verify(resourceRepository).lockAllByKeys(new String[]{resource.getKey()});
+    inOrder.verify(resourceRepository).findAllByKeys(new String[]{resource.getKey()});
+    verify(storageRepository, never()).deleteAllByKeys(any(), anyString());
   }
 
   @Test
@@ -144,12 +319,13 @@ class BaseResourceServiceTest {
   @Test
   void shouldDeleteResourceByIdsEvenIfOneOfThemNotFound() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.empty());
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource2));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(storageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource2)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource2));
+    when(storageRepository.deleteAllByKeys(Set.of(resource2.getKey()), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.just(Map.of()));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource2.getId()})).thenReturn(Mono.just(1));
     when(deleteResourceMapper.toDto(resource2)).thenReturn(new DeleteResourceDTO(resource2.getId()));
 
     StepVerifier.create(service.deleteByIds(new Long[] {resource1.getId(), resource2.getId()}))
@@ -162,8 +338,7 @@ class BaseResourceServiceTest {
   @Test
   void shouldReturnNothingWhenDeleteNonExistentResourcesByIds() {
     final Long[] ids = {1L, 2L};
-    when(resourceRepository.findById(ids[0])).thenReturn(Mono.empty());
-    when(resourceRepository.findById(ids[1])).thenReturn(Mono.empty());
+    when(resourceRepository.findAllByIds(ids)).thenReturn(Flux.empty());
 
     StepVerifier.create(service.deleteByIds(ids))
         .expectSubscription()
@@ -174,9 +349,8 @@ class BaseResourceServiceTest {
   @Test
   void shouldReturnNothingWhenDeleteByIdsAndCannotGetStorageById() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.empty());
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.empty());
 
@@ -184,52 +358,156 @@ class BaseResourceServiceTest {
         .expectSubscription()
         .expectNextCount(0)
         .verifyComplete();
+    verify(resourceRepository, never()).deleteAllByIds(any());
   }
 
   @Test
-  void shouldThrowDeleteFailedExceptionWhenDeleteByIdsFailAtOneOfThem() {
+  void shouldKeepResourceWhenItsObjectCannotBeDeleted() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(storageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(storageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenThrow(CloudStorageException.class);
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket())))
+        .thenReturn(Mono.just(Map.of(resource2.getKey(), "Access Denied")));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource1.getId()})).thenReturn(Mono.just(1));
     when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
 
     StepVerifier.create(service.deleteByIds(new Long[] {resource1.getId(), resource2.getId()}))
         .assertNext(result -> {
           assertEquals(resource1.getId(), result.getId());
+          assertNull(result.getError());
         })
+        .assertNext(result -> {
+          assertEquals(resource2.getId(), result.getId());
+          assertEquals("Access Denied", result.getError());
+        })
+        .verifyComplete();
+    verify(objectMemoryCache, never()).invalidate(resource2.getId());
+  }
+
+  @Test
+  void shouldThrowDeleteFailedExceptionWhenDeleteObjectsFails() {
+    final Resource resource1 = getSavedResource();
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket())))
+        .thenReturn(Mono.error(new CloudStorageException(DeleteObjectsResponse.builder().build())));
+
+    StepVerifier.create(service.deleteByIds(new Long[] {resource1.getId(), resource2.getId()}))
         .expectError(CloudStorageException.class)
         .verify();
+    verify(resourceRepository, never()).deleteAllByIds(any());
   }
 
   @Test
   void shouldThrowIllegalArgumentExceptionWhenDeleteByIdsDeleteResource() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
     final Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(storageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(storageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
-    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
-    when(resourceRepository.delete(resource2)).thenThrow(IllegalArgumentException.class);
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket()))).thenReturn(Mono.just(Map.of()));
+    when(resourceRepository.deleteAllByIds(any())).thenReturn(Mono.error(new IllegalArgumentException()));
 
     StepVerifier.create(service.deleteByIds(new Long[] {resource1.getId(), resource2.getId()}))
-        .assertNext(result -> {
-          assertEquals(resource1.getId(), result.getId());
-        })
         .expectError(IllegalArgumentException.class)
         .verify();
   }
 
+  @Test
+  void shouldThrowNotFoundExceptionWhenGetMetadataOfDeletingResource() {
+    final Resource savedResource = getSavedResource().toBuilder().status(ResourceStatus.DELETING).build();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .expectError(EntityNotFoundException.class)
+        .verify();
+    verify(storageManager, never()).getById(anyLong());
+  }
+
+  @Test
+  void shouldLookUpResourceAgainWhenMovedOnThisInstance() {
+    final Resource savedResource = getSavedResource();
+    final Resource movedResource = savedResource.toBuilder().key(UUID.randomUUID().toString()).build();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource), Mono.just(movedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .assertNext(metadata -> assertEquals(savedResource.getKey(), metadata.getKey()))
+        .verifyComplete();
+    resourceLocationCache.invalidateByKey(savedResource.getKey());
+    StepVerifier.create(service.getMetadataById(savedResource.getId()))
+        .assertNext(metadata -> assertEquals(movedResource.getKey(), metadata.getKey()))
+        .verifyComplete();
+    verify(resourceRepository, times(2)).findById(savedResource.getId());
+  }
+
+  @Test
+  void shouldGetContentHeldInMemoryWithoutLookingUpResource() {
+    final Resource savedResource = getSavedResource();
+    final CachedContent content = new CachedContent(getMetadata(savedResource), "audio/mpeg", "jingle.mp3", ByteBuffer.allocate(16));
+    when(objectMemoryCache.getIfPresent(savedResource.getId())).thenReturn(Optional.of(content));
+
+    StepVerifier.create(service.getCachedContentById(savedResource.getId()))
+        .expectNext(content)
+        .verifyComplete();
+    verify(resourceRepository, never()).findById(anyLong());
+  }
+
+  @Test
+  void shouldMarkResourcesDeletingByIds() {
+    final Resource resource1 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).build();
+    final Resource resource2 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).build();
+    final Long[] ids = {resource1.getId(), resource2.getId()};
+    when(resourceRepository.updateAllStatusByIds(ids, ResourceStatus.DELETING.name())).thenReturn(Flux.just(resource1, resource2));
+    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
+    when(deleteResourceMapper.toDto(resource2)).thenReturn(new DeleteResourceDTO(resource2.getId()));
+
+    StepVerifier.create(service.markDeletingByIds(ids))
+        .assertNext(result -> assertEquals(resource1.getId(), result.getId()))
+        .assertNext(result -> assertEquals(resource2.getId(), result.getId()))
+        .verifyComplete();
+    // nothing is deleted from the storage until the reaper takes the resources
+    verify(storageRepository, never()).deleteAllByKeys(any(), anyString());
+    verify(objectMemoryCache).invalidate(resource1.getId());
+    verify(resourceLocationCache).invalidate(resource2.getId());
+  }
+
+  @Test
+  void shouldPurgeDeletingResourcesByStorage() {
+    final Resource resource1 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).storageId(PERMANENT_STORAGE.getId()).build();
+    final Resource resource2 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).storageId(PERMANENT_STORAGE.getId()).build();
+    when(resourceRepository.findAllByStatusAndStorageIdForUpdate(ResourceStatus.DELETING.name(), PERMANENT_STORAGE.getId(), 10))
+        .thenReturn(Flux.just(resource1, resource2));
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket())))
+        .thenReturn(Mono.just(Map.of(resource2.getKey(), "Access Denied")));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource1.getId()})).thenReturn(Mono.just(1));
+    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
+
+    StepVerifier.create(service.purgeDeletingByStorage(PERMANENT_STORAGE, 10))
+        .expectNext(1L)
+        .verifyComplete();
+    // the storage is known to the reaper, it is not looked up again
+    verify(storageManager, never()).getById(anyLong());
+  }
+
   private static final Random RANDOM = new Random();
+  private GetResourceMetadataDTO getMetadata(Resource resource) {
+    return new GetResourceMetadataDTO(resource.getId(), resource.getName(), resource.getEtag(), resource.getContentType(),
+        resource.getContentLength(), null, resource.getKey(), PERMANENT_STORAGE.getBucket());
+  }
+
   private Resource getSavedResource() {
     int id = RANDOM.nextInt(1000);
     return Resource.builder().status(ResourceStatus.PROCESSED).key(UUID.randomUUID().toString()).id(id)
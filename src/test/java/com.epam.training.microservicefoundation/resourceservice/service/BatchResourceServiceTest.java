@@ -0,0 +1,221 @@
+package com.epam.training.microservicefoundation.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.common.FakeFilePart;
+import com.epam.training.microservicefoundation.resourceservice.common.FakeSenderResult;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.SaveResourceResultDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.UploadCapacityExceededException;
+import com.epam.training.microservicefoundation.resourceservice.kafka.producer.KafkaProducer;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.BatchResourceService;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class BatchResourceServiceTest {
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(998L, "resource-staging", "files/", StorageType.STAGING);
+
+  @Mock
+  private ResourceRepository resourceRepository;
+  @Mock
+  private CloudStorageRepository cloudStorageRepository;
+  @Mock
+  private KafkaProducer kafkaProducer;
+  @Mock
+  private StorageManager storageManager;
+  @Mock
+  private StageResourceService stageResourceService;
+  @Mock
+  private ResourceLocationCache resourceLocationCache;
+  @Mock
+  private TransactionalOperator transactionalOperator;
+
+  private BatchResourceService batchResourceService;
+
+  @BeforeEach
+  void setUp() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getUpload().setBatchWindow(Duration.ofSeconds(10));
+    batchResourceService = new BatchResourceService(resourceRepository, cloudStorageRepository, kafkaProducer, storageManager,
+        stageResourceService, resourceLocationCache, transactionalOperator, properties);
+
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(cloudStorageRepository.upload(any(ResourceFile.class))).thenAnswer(invocation -> {
+      final ResourceFile file = invocation.getArgument(0);
+      final String filename = file.getFilePart().filename();
+      if (filename.startsWith("too-large")) {
+        return Mono.error(new UploadCapacityExceededException("Upload capacity exceeded", Duration.ofSeconds(1)));
+      }
+      return Mono.just(file.withFilename(filename).withKey("files/" + filename).withContentHash("hash-" + filename));
+    });
+  }
+
+  @Test
+  void shouldSaveAndPublishFilesInOneBatch() {
+    final AtomicLong ids = new AtomicLong();
+    when(resourceRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.empty());
+    when(resourceRepository.findAllByContentHashesForShare(any())).thenReturn(Flux.empty());
+    when(resourceRepository.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Resource>>getArgument(0))
+        .map(resource -> resource.toBuilder().id(ids.incrementAndGet()).build()));
+    when(kafkaProducer.publishAll(anyList())).thenReturn(Flux.just(new FakeSenderResult<>(null, null, null),
+        new FakeSenderResult<>(null, null, null), new FakeSenderResult<>(null, null, null)));
+
+    StepVerifier.create(batchResourceService.saveAllToStage(Flux.just(filePart("first.mp3"), filePart("second.mp3"),
+            filePart("third.mp3"))))
+        .recordWith(ArrayList::new)
+        .expectNextCount(3)
+        .consumeRecordedWith(results -> results.forEach(result -> {
+          assertNotNull(result.getId());
+          assertNull(result.getError());
+        }))
+        .verifyComplete();
+
+    verify(storageManager, times(1)).getByType(StorageType.STAGING);
+    verify(resourceRepository, times(1)).insertAll(anyList());
+    final ArgumentCaptor<List<?>> events = ArgumentCaptor.forClass(List.class);
+    verify(kafkaProducer, times(1)).publishAll(events.capture());
+    assertEquals(3, events.getValue().size());
+  }
+
+  @Test
+  void shouldRejectExistingNamesAndReuseStoredContent() {
+    final Resource stored = Resource.builder().id(7L).key("files/stored").name("stored.mp3").status(ResourceStatus.PROCESSED)
+        .storageId(999L).contentHash("hash-copy.mp3").build();
+    when(resourceRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.just(Resource.builder().name("existing.mp3").build()));
+    when(resourceRepository.findAllByContentHashesForShare(any())).thenReturn(Flux.just(stored));
+    when(cloudStorageRepository.deleteByKey(any(), any())).thenReturn(Mono.empty());
+    when(resourceRepository.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Resource>>getArgument(0))
+        .map(resource -> resource.toBuilder().id(10L).build()));
+
+    StepVerifier.create(batchResourceService.saveAllToStage(Flux.just(filePart("existing.mp3"), filePart("copy.mp3"))))
+        .recordWith(ArrayList::new)
+        .expectNextCount(2)
+        .consumeRecordedWith(results -> {
+          final Map<String, SaveResourceResultDTO> byName = results.stream()
+              .collect(Collectors.toMap(SaveResourceResultDTO::getName, result -> result));
+          assertNotNull(byName.get("existing.mp3").getError());
+          assertEquals(10L, byName.get("copy.mp3").getId());
+        })
+        .verifyComplete();
+
+    final ArgumentCaptor<List<Resource>> inserted = ArgumentCaptor.forClass(List.class);
+    verify(resourceRepository).insertAll(inserted.capture());
+    assertEquals(stored.getKey(), inserted.getValue().get(0).getKey());
+    // both uploaded copies are deleted, the reused one once the resource referring to the stored object has been committed. No staged
+    // event is published for content that has already been staged
+    verify(cloudStorageRepository).deleteByKey("files/existing.mp3", STAGING_STORAGE.getBucket());
+    verify(cloudStorageRepository).deleteByKey("files/copy.mp3", STAGING_STORAGE.getBucket());
+    verify(kafkaProducer, times(0)).publishAll(anyList());
+  }
+
+  @Test
+  void shouldKeepUploadedCopyWhenSavingBatchFailsAndSaveFilesOneByOne() {
+    final Resource stored = Resource.builder().id(7L).key("files/stored").name("stored.mp3").status(ResourceStatus.PROCESSED)
+        .storageId(999L).contentHash("hash-copy.mp3").build();
+    when(resourceRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.empty());
+    when(resourceRepository.findAllByContentHashesForShare(any())).thenReturn(Flux.just(stored));
+    when(resourceRepository.insertAll(anyList())).thenReturn(Flux.error(new DataIntegrityViolationException("duplicate name")));
+    when(stageResourceService.saveToStage(any(Resource.class), any())).thenReturn(Mono.just(new GetResourceDTO(10L)));
+
+    StepVerifier.create(batchResourceService.saveAllToStage(Flux.just(filePart("copy.mp3"))))
+        .assertNext(result -> assertEquals(10L, result.getId()))
+        .verifyComplete();
+
+    // the resource is staged with its uploaded copy, which is deleted by the stage service if the stored content is still there
+    final ArgumentCaptor<Resource> staged = ArgumentCaptor.forClass(Resource.class);
+    verify(stageResourceService).saveToStage(staged.capture(), any());
+    assertEquals("files/copy.mp3", staged.getValue().getKey());
+    verify(cloudStorageRepository, never()).deleteByKey(any(), any());
+  }
+
+  @Test
+  void shouldReportFailedUploadAndSaveOtherFiles() {
+    when(resourceRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.empty());
+    when(resourceRepository.findAllByContentHashesForShare(any())).thenReturn(Flux.empty());
+    when(resourceRepository.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Resource>>getArgument(0))
+        .map(resource -> resource.toBuilder().id(10L).build()));
+    when(kafkaProducer.publishAll(anyList())).thenReturn(Flux.just(new FakeSenderResult<>(null, null, null)));
+
+    StepVerifier.create(batchResourceService.saveAllToStage(Flux.just(filePart("too-large.mp3"), filePart("first.mp3"))))
+        .recordWith(ArrayList::new)
+        .expectNextCount(2)
+        .consumeRecordedWith(results -> {
+          final Map<String, SaveResourceResultDTO> byName = results.stream()
+              .collect(Collectors.toMap(SaveResourceResultDTO::getName, result -> result));
+          assertEquals("Upload capacity exceeded", byName.get("too-large.mp3").getError());
+          assertEquals(10L, byName.get("first.mp3").getId());
+        })
+        .verifyComplete();
+
+    final ArgumentCaptor<List<Resource>> inserted = ArgumentCaptor.forClass(List.class);
+    verify(resourceRepository).insertAll(inserted.capture());
+    assertEquals(1, inserted.getValue().size());
+  }
+
+  @Test
+  void shouldReportFailedFilesAndDeleteThemWhenPublishingFails() {
+    when(resourceRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.empty());
+    when(resourceRepository.findAllByContentHashesForShare(any())).thenReturn(Flux.empty());
+    when(resourceRepository.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Resource>>getArgument(0))
+        .map(resource -> resource.toBuilder().id(10L).build()));
+    when(kafkaProducer.publishAll(anyList())).thenReturn(Flux.error(new IllegalStateException("Broker is not available")));
+    when(cloudStorageRepository.deleteByKey(any(), any())).thenReturn(Mono.empty());
+
+    StepVerifier.create(batchResourceService.saveAllToStage(Flux.just(filePart("first.mp3"), filePart("second.mp3"))))
+        .recordWith(ArrayList::new)
+        .expectNextCount(2)
+        .consumeRecordedWith(results -> results.forEach(result -> {
+          assertNull(result.getId());
+          assertEquals("Broker is not available", result.getError());
+        }))
+        .verifyComplete();
+
+    // the insert is rolled back along with the failed publish, the stored files are not referred to
+    verify(transactionalOperator, times(1)).transactional(any(Flux.class));
+    verify(cloudStorageRepository, times(2)).deleteByKey(any(), any());
+    verify(resourceLocationCache, times(0)).put(any());
+  }
+
+  private FilePart filePart(String filename) {
+    return new FakeFilePart(filename, new byte[1024], new HttpHeaders());
+  }
+}
@@ -0,0 +1,105 @@
+package com.epam.training.microservicefoundation.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.MultipartUploadSweeper;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+
+@ExtendWith(MockitoExtension.class)
+class MultipartUploadSweeperTest {
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(1L, "resource-staging", "files/", StorageType.STAGING);
+  private static final GetStorageDTO PERMANENT_STORAGE = new GetStorageDTO(2L, "resource-permanent", "files/", StorageType.PERMANENT);
+
+  @Mock
+  private StorageManager storageManager;
+  @Mock
+  private CloudStorageRepository cloudStorageRepository;
+  @Mock
+  private UploadSessionRepository uploadSessionRepository;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private MultipartUploadSweeper sweeper;
+
+  @BeforeEach
+  void setUp() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getSweeper().setMaxAge(Duration.ofHours(24));
+    properties.getSweeper().setAbortDelay(Duration.ofMillis(1));
+    sweeper = new MultipartUploadSweeper(storageManager, cloudStorageRepository, uploadSessionRepository, properties,
+        meterRegistry);
+
+    when(storageManager.getAllByType(StorageType.STAGING)).thenReturn(Flux.just(STAGING_STORAGE));
+    when(storageManager.getAllByType(StorageType.PERMANENT)).thenReturn(Flux.just(PERMANENT_STORAGE));
+    when(uploadSessionRepository.deleteAllCreatedBefore(any(LocalDateTime.class))).thenReturn(Mono.just(0));
+  }
+
+  @Test
+  void shouldAbortOnlyExpiredUploads() {
+    when(cloudStorageRepository.getMultipartUploads(STAGING_STORAGE.getBucket(), STAGING_STORAGE.getPath())).thenReturn(Flux.just(
+        upload("files/expired", "expired-upload", Duration.ofHours(48)),
+        upload("files/recent", "recent-upload", Duration.ofMinutes(10))));
+    when(cloudStorageRepository.getMultipartUploads(PERMANENT_STORAGE.getBucket(), PERMANENT_STORAGE.getPath()))
+        .thenReturn(Flux.empty());
+    when(cloudStorageRepository.abortMultipartUpload(STAGING_STORAGE.getBucket(), "files/expired", "expired-upload"))
+        .thenReturn(Mono.empty());
+
+    StepVerifier.create(sweeper.sweep())
+        .expectNext(1L)
+        .verifyComplete();
+
+    verify(cloudStorageRepository, never()).abortMultipartUpload(anyString(), eq("files/recent"), anyString());
+    assertEquals(1.0, meterRegistry.get("s3.multipart.sweeper.aborted").tag("bucket", STAGING_STORAGE.getBucket()).counter().count());
+  }
+
+  @Test
+  void shouldContinueSweepingWhenAbortFails() {
+    when(cloudStorageRepository.getMultipartUploads(STAGING_STORAGE.getBucket(), STAGING_STORAGE.getPath())).thenReturn(Flux.just(
+        upload("files/first", "first-upload", Duration.ofHours(48)),
+        upload("files/second", "second-upload", Duration.ofHours(48))));
+    when(cloudStorageRepository.getMultipartUploads(PERMANENT_STORAGE.getBucket(), PERMANENT_STORAGE.getPath()))
+        .thenReturn(Flux.error(SdkClientException.create("Access denied")));
+    when(cloudStorageRepository.abortMultipartUpload(STAGING_STORAGE.getBucket(), "files/first", "first-upload"))
+        .thenReturn(Mono.error(SdkClientException.create("Connection reset")));
+    when(cloudStorageRepository.abortMultipartUpload(STAGING_STORAGE.getBucket(), "files/second", "second-upload"))
+        .thenReturn(Mono.empty());
+
+    StepVerifier.create(sweeper.sweep())
+        .expectNext(1L)
+        .verifyComplete();
+
+    assertEquals(1.0, meterRegistry.get("s3.multipart.sweeper.failed").tag("bucket", STAGING_STORAGE.getBucket()).counter().count());
+  }
+
+  private MultipartUpload upload(String key, String uploadId, Duration age) {
+    return MultipartUpload.builder()
+        .key(key)
+        .uploadId(uploadId)
+        .initiated(Instant.now().minus(age))
+        .build();
+  }
+}
@@ -1,7 +1,10 @@
 package com.epam.training.microservicefoundation.resourceservice.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
@@ -10,7 +13,9 @@ import com.epam.training.microservicefoundation.resourceservice.domain.entity.Re
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
 import com.epam.training.microservicefoundation.resourceservice.domain.event.ResourceProcessedEvent;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.CloudStorageException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.PermanentResourceService;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
@@ -32,6 +37,8 @@ class PermanentResourceServiceTest {
   private ResourceRepository resourceRepository;
   @Mock
   private CloudStorageRepository cloudStorageRepository;
+  @Mock
+  private ResourceLocationCache resourceLocationCache;
   @InjectMocks
   private PermanentResourceService permanentResourceService;
 
@@ -46,7 +53,7 @@ class PermanentResourceServiceTest {
     when(storageManager.getByType(any(StorageType.class))).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(cloudStorageRepository.move(anyString(), any(GetStorageDTO.class), any(GetStorageDTO.class)))
         .thenReturn(Mono.just(UUID.randomUUID().toString()));
-    when(resourceRepository.save(any(Resource.class))).thenReturn(Mono.empty());
+    when(resourceRepository.updateAllByKey(anyString(), anyString(), anyLong(), anyString())).thenReturn(Mono.just(1));
 
     StepVerifier.create(permanentResourceService.saveToPermanent(new ResourceProcessedEvent(savedResource.getId())))
         .expectSubscription()
@@ -54,6 +61,27 @@ class PermanentResourceServiceTest {
         .verifyComplete();
   }
 
+  @Test
+  void shouldMoveResourcesSharingContentToPermanent() {
+    final Resource savedResource = getSavedResource();
+    final String permanentKey = UUID.randomUUID().toString();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(storageManager.getByType(any(StorageType.class))).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(cloudStorageRepository.move(anyString(), any(GetStorageDTO.class), any(GetStorageDTO.class))).thenReturn(Mono.just(permanentKey));
+    when(resourceRepository.updateAllByKey(savedResource.getKey(), permanentKey, PERMANENT_STORAGE.getId(),
+        ResourceStatus.PROCESSED.name())).thenReturn(Mono.just(2));
+
+    StepVerifier.create(permanentResourceService.saveToPermanent(new ResourceProcessedEvent(savedResource.getId())))
+        .expectSubscription()
+        .expectNextCount(0)
+        .verifyComplete();
+
+    verify(resourceRepository).updateAllByKey(savedResource.getKey(), permanentKey, PERMANENT_STORAGE.getId(),
+        ResourceStatus.PROCESSED.name());
+    verify(resourceLocationCache).invalidateByKey(savedResource.getKey());
+  }
+
   @Test
   void shouldDoNothingWhenMoveToPermanentAfterReturningEmptyWhenFindResourceById() {
     final long resourceId = 1L;
@@ -126,13 +154,48 @@ class PermanentResourceServiceTest {
     when(storageManager.getByType(any(StorageType.class))).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(cloudStorageRepository.move(anyString(), any(GetStorageDTO.class), any(GetStorageDTO.class)))
         .thenReturn(Mono.just(UUID.randomUUID().toString()));
-    when(resourceRepository.save(any(Resource.class))).thenThrow(IllegalArgumentException.class);
+    when(resourceRepository.updateAllByKey(anyString(), anyString(), anyLong(), anyString()))
+        .thenReturn(Mono.error(new IllegalArgumentException()));
 
     StepVerifier.create(permanentResourceService.saveToPermanent(new ResourceProcessedEvent(savedResource.getId())))
         .expectError(IllegalArgumentException.class)
         .verify();
   }
 
+  @Test
+  void shouldKeepResourceMarkedAsDeletingWhileMovedToPermanent() {
+    final Resource savedResource = getSavedResource().toBuilder().status(ResourceStatus.STAGED).build();
+    final String permanentKey = UUID.randomUUID().toString();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(storageManager.getByType(any(StorageType.class))).thenReturn(Mono.just(PERMANENT_STORAGE));
+    // the resource is marked as deleting while its object is being moved, the update keeps the mark
+    when(cloudStorageRepository.move(anyString(), any(GetStorageDTO.class), any(GetStorageDTO.class)))
+        .thenReturn(Mono.just(permanentKey));
+    when(resourceRepository.updateAllByKey(savedResource.getKey(), permanentKey, PERMANENT_STORAGE.getId(),
+        ResourceStatus.PROCESSED.name())).thenReturn(Mono.just(1));
+
+    StepVerifier.create(permanentResourceService.saveToPermanent(new ResourceProcessedEvent(savedResource.getId())))
+        .verifyComplete();
+
+    verify(resourceRepository, never()).save(any(Resource.class));
+  }
+
+  @Test
+  void shouldEntityNotFoundExceptionWhenResourceDeletedWhileMovedToPermanent() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(storageManager.getByType(any(StorageType.class))).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(cloudStorageRepository.move(anyString(), any(GetStorageDTO.class), any(GetStorageDTO.class)))
+        .thenReturn(Mono.just(UUID.randomUUID().toString()));
+    when(resourceRepository.updateAllByKey(anyString(), anyString(), anyLong(), anyString())).thenReturn(Mono.just(0));
+
+    StepVerifier.create(permanentResourceService.saveToPermanent(new ResourceProcessedEvent(savedResource.getId())))
+        .expectError(EntityNotFoundException.class)
+        .verify();
+  }
+
   private static final Random RANDOM = new Random();
 
   private Resource getSavedResource() {
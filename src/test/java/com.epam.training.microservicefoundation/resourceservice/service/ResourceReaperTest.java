@@ -0,0 +1,84 @@
+package com.epam.training.microservicefoundation.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.ResourceReaper;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceReaperTest {
+  private static final int BATCH_SIZE = 2;
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(1L, "resource-staging", "files/", StorageType.STAGING);
+  private static final GetStorageDTO PERMANENT_STORAGE = new GetStorageDTO(2L, "resource-permanent", "files/", StorageType.PERMANENT);
+
+  @Mock
+  private BaseResourceService baseResourceService;
+  @Mock
+  private ResourceRepository resourceRepository;
+  @Mock
+  private StorageManager storageManager;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private ResourceReaper reaper;
+
+  @BeforeEach
+  void setUp() {
+    final ResourceDeletionProperties properties = new ResourceDeletionProperties();
+    properties.getReaper().setBatchSize(BATCH_SIZE);
+    properties.getReaper().setBatchDelay(Duration.ofMillis(1));
+    reaper = new ResourceReaper(baseResourceService, resourceRepository, storageManager, properties, meterRegistry);
+  }
+
+  @Test
+  void shouldPurgeEveryStorageUntilBatchIsNotFull() {
+    when(resourceRepository.findAllStorageIdsByStatus(ResourceStatus.DELETING.name()))
+        .thenReturn(Flux.just(STAGING_STORAGE.getId(), PERMANENT_STORAGE.getId()));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(storageManager.getById(PERMANENT_STORAGE.getId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(baseResourceService.purgeDeletingByStorage(STAGING_STORAGE, BATCH_SIZE))
+        .thenReturn(Mono.just(2L), Mono.just(2L), Mono.just(1L));
+    when(baseResourceService.purgeDeletingByStorage(PERMANENT_STORAGE, BATCH_SIZE)).thenReturn(Mono.just(0L));
+
+    StepVerifier.create(reaper.reap())
+        .expectNext(5L)
+        .verifyComplete();
+
+    verify(baseResourceService, times(3)).purgeDeletingByStorage(STAGING_STORAGE, BATCH_SIZE);
+    verify(baseResourceService, times(1)).purgeDeletingByStorage(PERMANENT_STORAGE, BATCH_SIZE);
+    assertEquals(5.0, meterRegistry.get("resource.reaper.purged").tag("bucket", STAGING_STORAGE.getBucket()).counter().count());
+  }
+
+  @Test
+  void shouldContinueReapingWhenStorageFails() {
+    when(resourceRepository.findAllStorageIdsByStatus(ResourceStatus.DELETING.name()))
+        .thenReturn(Flux.just(STAGING_STORAGE.getId(), PERMANENT_STORAGE.getId(), 3L));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(storageManager.getById(PERMANENT_STORAGE.getId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(storageManager.getById(3L)).thenReturn(Mono.empty());
+    when(baseResourceService.purgeDeletingByStorage(STAGING_STORAGE, BATCH_SIZE))
+        .thenReturn(Mono.error(new IllegalStateException("Deleting objects failed")));
+    when(baseResourceService.purgeDeletingByStorage(PERMANENT_STORAGE, BATCH_SIZE)).thenReturn(Mono.just(1L));
+
+    StepVerifier.create(reaper.reap())
+        .expectNext(1L)
+        .verifyComplete();
+  }
+}
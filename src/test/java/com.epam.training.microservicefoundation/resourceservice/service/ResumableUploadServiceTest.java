@@ -0,0 +1,315 @@
+package com.epam.training.microservicefoundation.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreatePresignedUploadDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.CreateUploadSessionDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetPresignedPartDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSession;
+import com.epam.training.microservicefoundation.resourceservice.domain.entity.UploadSessionPart;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityExistsException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionPartRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.UploadSessionRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.ResumableUploadService;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.Part;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(998L, "resource-staging", "files/", StorageType.STAGING);
+  private static final String FILENAME = "mpthreetest.mp3";
+  private static final UploadSession SESSION = UploadSession.builder()
+      .id(1L)
+      .uploadId("upload-id")
+      .key("files/file-key")
+      .name(FILENAME)
+      .contentType("audio/mpeg")
+      .storageId(STAGING_STORAGE.getId())
+      .build();
+
+  @Mock
+  private UploadSessionRepository uploadSessionRepository;
+  @Mock
+  private UploadSessionPartRepository uploadSessionPartRepository;
+  @Mock
+  private ResourceRepository resourceRepository;
+  @Mock
+  private CloudStorageRepository cloudStorageRepository;
+  @Mock
+  private StorageManager storageManager;
+  @Mock
+  private StageResourceService stageResourceService;
+
+  private ResumableUploadService resumableUploadService;
+
+  @BeforeEach
+  void setUp() {
+    resumableUploadService = new ResumableUploadService(uploadSessionRepository, uploadSessionPartRepository, resourceRepository,
+        cloudStorageRepository, storageManager, stageResourceService, new S3ClientConfigurationProperties());
+  }
+
+  @Test
+  void shouldCreateUploadSession() {
+    when(resourceRepository.existsByName(FILENAME)).thenReturn(Mono.just(false));
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.createMultipartUpload(eq(STAGING_STORAGE.getBucket()), anyString(), eq(MediaType.valueOf("audio/mpeg")),
+        anyMap(), eq(true))).thenReturn(Mono.just("upload-id"));
+    when(uploadSessionRepository.save(any(UploadSession.class))).thenReturn(Mono.just(SESSION));
+
+    StepVerifier.create(resumableUploadService.create(new CreateUploadSessionDTO(FILENAME, "audio/mpeg")))
+        .assertNext(session -> {
+          assertEquals(SESSION.getId(), session.getId());
+          assertEquals(FILENAME, session.getName());
+          assertEquals(0, session.getParts().size());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldReturnExceptionWhenCreateUploadSessionForExistingResource() {
+    when(resourceRepository.existsByName(FILENAME)).thenReturn(Mono.just(true));
+
+    StepVerifier.create(resumableUploadService.create(new CreateUploadSessionDTO(FILENAME, null)))
+        .expectError(EntityExistsException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldUploadPart() {
+    final byte[] content = new byte[1024];
+    final Flux<DataBuffer> body = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(content));
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.just(
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(1).etag("etag-1").size(5 * 1024 * 1024).build()));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.uploadPart(eq(STAGING_STORAGE.getBucket()), eq(SESSION.getKey()), eq(SESSION.getUploadId()), eq(2),
+        eq((long) content.length), eq(body), eq(true)))
+        .thenReturn(Mono.just(CompletedPart.builder().partNumber(2).eTag("etag-2").checksumCRC32C("checksum-2").build()));
+    when(uploadSessionPartRepository.upsert(SESSION.getId(), 2, "etag-2", "checksum-2", content.length)).thenReturn(Mono.just(1));
+
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 2, content.length, body))
+        .assertNext(part -> {
+          assertEquals(2, part.getPartNumber());
+          assertEquals("etag-2", part.getEtag());
+          assertEquals("checksum-2", part.getChecksum());
+          assertEquals(content.length, part.getSize());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldReturnExceptionWhenUploadPartSmallerThanMinimalPartSizeBeforeAnotherPart() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.just(
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(3).etag("etag-3").size(1024).build()));
+
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 2, 1024, Flux.empty()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(cloudStorageRepository, never()).uploadPart(anyString(), anyString(), anyString(), anyInt(), anyLong(), any(), anyBoolean());
+  }
+
+  @Test
+  void shouldReturnExceptionWhenUploadPartAfterPartSmallerThanMinimalPartSize() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.just(
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(1).etag("etag-1").size(1024).build()));
+
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 2, 5 * 1024 * 1024, Flux.empty()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(cloudStorageRepository, never()).uploadPart(anyString(), anyString(), anyString(), anyInt(), anyLong(), any(), anyBoolean());
+  }
+
+  @Test
+  void shouldReturnExceptionWhenUploadPartLargerThanMemoryBudget() {
+    final S3ClientConfigurationProperties properties = new S3ClientConfigurationProperties();
+    properties.getUpload().setMemoryBudget(1024);
+    resumableUploadService = new ResumableUploadService(uploadSessionRepository, uploadSessionPartRepository, resourceRepository,
+        cloudStorageRepository, storageManager, stageResourceService, properties);
+
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 1, 2048, Flux.empty()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldReturnExceptionWhenUploadPartOfUnknownSession() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.empty());
+
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 1, 0, Flux.empty()))
+        .expectError(EntityNotFoundException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldReturnExceptionWhenUploadPartWithInvalidPartNumber() {
+    StepVerifier.create(resumableUploadService.uploadPart(SESSION.getId(), 0, 0, Flux.empty()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldCompleteUploadSession() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.just(
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(1).etag("etag-1").checksum("checksum-1").size(5 * 1024 * 1024)
+            .build(),
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(2).etag("etag-2").checksum("checksum-2").size(1024).build()));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.completeMultipartUpload(eq(STAGING_STORAGE.getBucket()), eq(SESSION.getKey()), eq(SESSION.getUploadId()),
+        anyList())).thenReturn(Mono.empty());
+    when(cloudStorageRepository.getMetadataByKey(SESSION.getKey(), STAGING_STORAGE.getBucket())).thenReturn(Mono.just(
+        HeadObjectResponse.builder().contentLength(5L * 1024 * 1024 + 1024).build()));
+    when(stageResourceService.saveToStage(any(Resource.class), eq(STAGING_STORAGE))).thenReturn(Mono.just(new GetResourceDTO(7L)));
+    when(uploadSessionRepository.deleteById(SESSION.getId())).thenReturn(Mono.empty());
+
+    StepVerifier.create(resumableUploadService.complete(SESSION.getId()))
+        .assertNext(resource -> assertEquals(7L, resource.getId()))
+        .verifyComplete();
+
+    verify(cloudStorageRepository).completeMultipartUpload(STAGING_STORAGE.getBucket(), SESSION.getKey(), SESSION.getUploadId(), List.of(
+        CompletedPart.builder().partNumber(1).eTag("etag-1").checksumCRC32C("checksum-1").build(),
+        CompletedPart.builder().partNumber(2).eTag("etag-2").checksumCRC32C("checksum-2").build()));
+    verify(uploadSessionRepository).deleteById(SESSION.getId());
+  }
+
+  @Test
+  void shouldReturnExceptionWhenCompleteUploadSessionWithNonFinalPartSmallerThanMinimalPartSize() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.just(
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(1).etag("etag-1").size(1024).build(),
+        UploadSessionPart.builder().sessionId(SESSION.getId()).partNumber(2).etag("etag-2").size(1024).build()));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+
+    StepVerifier.create(resumableUploadService.complete(SESSION.getId()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(cloudStorageRepository, never()).completeMultipartUpload(anyString(), anyString(), anyString(), anyList());
+  }
+
+  @Test
+  void shouldCreatePresignedUploadSession() {
+    final long contentLength = 20L * 1024 * 1024;
+    when(resourceRepository.existsByName(FILENAME)).thenReturn(Mono.just(false));
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.createMultipartUpload(eq(STAGING_STORAGE.getBucket()), anyString(), eq(MediaType.valueOf("audio/mpeg")),
+        anyMap(), eq(false))).thenReturn(Mono.just("upload-id"));
+    when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> Mono.just(
+        invocation.<UploadSession>getArgument(0).toBuilder().id(SESSION.getId()).build()));
+    when(cloudStorageRepository.presignUploadParts(eq(STAGING_STORAGE.getBucket()), anyString(), eq("upload-id"), eq(contentLength)))
+        .thenReturn(List.of(new GetPresignedPartDTO(1, 16L * 1024 * 1024, "https://storage/part-1"),
+            new GetPresignedPartDTO(2, 4L * 1024 * 1024, "https://storage/part-2")));
+
+    StepVerifier.create(resumableUploadService.createPresigned(new CreatePresignedUploadDTO(FILENAME, "audio/mpeg", contentLength)))
+        .assertNext(upload -> {
+          assertEquals(SESSION.getId(), upload.getId());
+          assertEquals(contentLength, upload.getContentLength());
+          assertEquals(2, upload.getParts().size());
+        })
+        .verifyComplete();
+
+    final ArgumentCaptor<UploadSession> session = ArgumentCaptor.forClass(UploadSession.class);
+    verify(uploadSessionRepository).save(session.capture());
+    assertEquals(contentLength, session.getValue().getContentLength());
+  }
+
+  @Test
+  void shouldReturnExceptionWhenCreatePresignedUploadSessionWithoutContentLength() {
+    StepVerifier.create(resumableUploadService.createPresigned(new CreatePresignedUploadDTO(FILENAME, "audio/mpeg", 0)))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldCompletePresignedUploadSessionWithPartsListedFromStorage() {
+    final UploadSession session = SESSION.toBuilder().contentLength(5L * 1024 * 1024 + 1024).build();
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(session));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.getUploadedParts(STAGING_STORAGE.getBucket(), SESSION.getKey(), SESSION.getUploadId())).thenReturn(
+        Flux.just(Part.builder().partNumber(1).eTag("etag-1").size(5L * 1024 * 1024).build(),
+            Part.builder().partNumber(2).eTag("etag-2").size(1024L).build()));
+    when(cloudStorageRepository.completeMultipartUpload(eq(STAGING_STORAGE.getBucket()), eq(SESSION.getKey()), eq(SESSION.getUploadId()),
+        anyList())).thenReturn(Mono.empty());
+    when(cloudStorageRepository.getMetadataByKey(SESSION.getKey(), STAGING_STORAGE.getBucket())).thenReturn(Mono.just(
+        HeadObjectResponse.builder().contentLength(session.getContentLength()).build()));
+    when(stageResourceService.saveToStage(any(Resource.class), eq(STAGING_STORAGE))).thenReturn(Mono.just(new GetResourceDTO(7L)));
+    when(uploadSessionRepository.deleteById(SESSION.getId())).thenReturn(Mono.empty());
+
+    StepVerifier.create(resumableUploadService.complete(SESSION.getId()))
+        .assertNext(resource -> assertEquals(7L, resource.getId()))
+        .verifyComplete();
+
+    verify(uploadSessionPartRepository, never()).findAllBySessionIdOrderByPartNumber(SESSION.getId());
+  }
+
+  @Test
+  void shouldDeleteStoredFileWhenPresignedUploadHasUnexpectedSize() {
+    final UploadSession session = SESSION.toBuilder().contentLength(10L * 1024 * 1024).build();
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(session));
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.getUploadedParts(STAGING_STORAGE.getBucket(), SESSION.getKey(), SESSION.getUploadId())).thenReturn(
+        Flux.just(Part.builder().partNumber(1).eTag("etag-1").size(5L * 1024 * 1024).build()));
+    when(cloudStorageRepository.completeMultipartUpload(eq(STAGING_STORAGE.getBucket()), eq(SESSION.getKey()), eq(SESSION.getUploadId()),
+        anyList())).thenReturn(Mono.empty());
+    when(cloudStorageRepository.getMetadataByKey(SESSION.getKey(), STAGING_STORAGE.getBucket())).thenReturn(Mono.just(
+        HeadObjectResponse.builder().contentLength(5L * 1024 * 1024).build()));
+    when(cloudStorageRepository.deleteByKey(SESSION.getKey(), STAGING_STORAGE.getBucket())).thenReturn(Mono.empty());
+    when(uploadSessionRepository.deleteById(SESSION.getId())).thenReturn(Mono.empty());
+
+    StepVerifier.create(resumableUploadService.complete(SESSION.getId()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(stageResourceService, never()).saveToStage(any(Resource.class), any(GetStorageDTO.class));
+  }
+
+  @Test
+  void shouldReturnExceptionWhenCompleteUploadSessionWithoutParts() {
+    when(uploadSessionRepository.findById(SESSION.getId())).thenReturn(Mono.just(SESSION));
+    when(uploadSessionPartRepository.findAllBySessionIdOrderByPartNumber(SESSION.getId())).thenReturn(Flux.empty());
+    when(storageManager.getById(STAGING_STORAGE.getId())).thenReturn(Mono.just(STAGING_STORAGE));
+
+    StepVerifier.create(resumableUploadService.complete(SESSION.getId()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+}
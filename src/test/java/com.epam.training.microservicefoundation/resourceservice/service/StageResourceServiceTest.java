@@ -2,6 +2,10 @@ package com.epam.training.microservicefoundation.resourceservice.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.epam.training.microservicefoundation.resourceservice.common.FakeSenderResult;
@@ -14,8 +18,10 @@ import com.epam.training.microservicefoundation.resourceservice.domain.dto.Stora
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.CloudStorageException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityExistsException;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
 import com.epam.training.microservicefoundation.resourceservice.common.FakeFilePart;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceLocationCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
@@ -27,6 +33,8 @@ import java.util.Random;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -50,6 +58,8 @@ class StageResourceServiceTest {
   private StorageManager storageManager;
   @Mock
   private GetResourceMapper getResourceMapper;
+  @Mock
+  private ResourceLocationCache resourceLocationCache;
   @InjectMocks
   private StageResourceService stageResourceService;
 
@@ -78,6 +88,91 @@ class StageResourceServiceTest {
         .verifyComplete();
   }
 
+  @Test
+  void shouldReuseStoredContentWhenSaveSongWithSameContent() throws IOException {
+    final long id = 2L;
+    final String fileKey = UUID.randomUUID().toString();
+    final String contentHash = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    final FilePart filePart = filePart();
+    final Resource storedResource = getSavedResource().toBuilder().contentHash(contentHash).build();
+
+    when(resourceRepository.existsByName(filePart.filename())).thenReturn(Mono.just(false));
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.upload(any(ResourceFile.class))).thenReturn(Mono.just(new ResourceFile(filePart, STAGING_STORAGE)
+        .withKey(fileKey).withContentHash(contentHash)));
+    when(resourceRepository.findFirstByContentHashForShare(contentHash)).thenReturn(Mono.just(storedResource));
+    when(cloudStorageRepository.deleteByKey(fileKey, STAGING_STORAGE.getBucket())).thenReturn(Mono.empty());
+    when(resourceRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(getResourceMapper.toDto(any())).thenReturn(new GetResourceDTO(id));
+
+    StepVerifier.create(stageResourceService.saveToStage(Mono.just(filePart)))
+        .assertNext(result -> assertEquals(id, result.getId()))
+        .verifyComplete();
+
+    final ArgumentCaptor<Resource> savedResource = ArgumentCaptor.forClass(Resource.class);
+    verify(resourceRepository).save(savedResource.capture());
+    assertEquals(storedResource.getKey(), savedResource.getValue().getKey());
+    assertEquals(storedResource.getStorageId(), savedResource.getValue().getStorageId());
+    assertEquals(storedResource.getStatus(), savedResource.getValue().getStatus());
+    verify(kafkaProducer, never()).publish(any());
+    // the uploaded copy is deleted only after the resource referring to the stored object has been saved
+    final InOrder inOrder = inOrder(resourceRepository, cloudStorageRepository);
+    inOrder.verify(resourceRepository).save(any());
+    inOrder.verify(cloudStorageRepository).deleteByKey(fileKey, STAGING_STORAGE.getBucket());
+  }
+
+  @Test
+  void shouldKeepUploadedCopyWhenSaveSongWithSameContentAsStagedSong() throws IOException {
+    final long id = 2L;
+    final String fileKey = UUID.randomUUID().toString();
+    final String contentHash = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    final FilePart filePart = filePart();
+
+    when(resourceRepository.existsByName(filePart.filename())).thenReturn(Mono.just(false));
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.upload(any(ResourceFile.class))).thenReturn(Mono.just(new ResourceFile(filePart, STAGING_STORAGE)
+        .withKey(fileKey).withContentHash(contentHash)));
+    // the song with the same content is still staged, its object is about to be moved, so it is not found for reuse
+    when(resourceRepository.findFirstByContentHashForShare(contentHash)).thenReturn(Mono.empty());
+    when(resourceRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(getResourceMapper.toDto(any())).thenReturn(new GetResourceDTO(id));
+    when(kafkaProducer.publish(any())).thenReturn(Mono.just(new FakeSenderResult<>(null, null, null)));
+
+    StepVerifier.create(stageResourceService.saveToStage(Mono.just(filePart)))
+        .assertNext(result -> assertEquals(id, result.getId()))
+        .verifyComplete();
+
+    final ArgumentCaptor<Resource> savedResource = ArgumentCaptor.forClass(Resource.class);
+    verify(resourceRepository).save(savedResource.capture());
+    assertEquals(fileKey, savedResource.getValue().getKey());
+    assertEquals(ResourceStatus.STAGED, savedResource.getValue().getStatus());
+    verify(cloudStorageRepository, never()).deleteByKey(anyString(), anyString());
+  }
+
+  @Test
+  void shouldDeleteUploadedCopyWhenSaveSongWithSameContentFails() throws IOException {
+    final String fileKey = UUID.randomUUID().toString();
+    final String contentHash = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    final FilePart filePart = filePart();
+    final Resource storedResource = getSavedResource().toBuilder().contentHash(contentHash).build();
+
+    when(resourceRepository.existsByName(filePart.filename())).thenReturn(Mono.just(false));
+    when(storageManager.getByType(StorageType.STAGING)).thenReturn(Mono.just(STAGING_STORAGE));
+    when(cloudStorageRepository.upload(any(ResourceFile.class))).thenReturn(Mono.just(new ResourceFile(filePart, STAGING_STORAGE)
+        .withKey(fileKey).withContentHash(contentHash)));
+    when(resourceRepository.findFirstByContentHashForShare(contentHash)).thenReturn(Mono.just(storedResource));
+    when(resourceRepository.save(any())).thenReturn(Mono.error(new DataIntegrityViolationException("duplicate name")));
+    when(cloudStorageRepository.deleteByKey(fileKey, STAGING_STORAGE.getBucket())).thenReturn(Mono.empty());
+
+    StepVerifier.create(stageResourceService.saveToStage(Mono.just(filePart)))
+        .expectError(EntityExistsException.class)
+        .verify();
+
+    // the stored object is referred to by another resource, only the uploaded copy is deleted
+    verify(cloudStorageRepository).deleteByKey(fileKey, STAGING_STORAGE.getBucket());
+    verify(cloudStorageRepository, never()).deleteByKey(storedResource.getKey(), STAGING_STORAGE.getBucket());
+  }
+
   @Test
   void shouldThrowIllegalArgumentExceptionWhenSaveEmptyMono() {
     StepVerifier.create(stageResourceService.saveToStage(Mono.empty()))
@@ -0,0 +1,103 @@
+package com.epam.training.microservicefoundation.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.WarmUpProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StartupWarmUp;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import com.netflix.appinfo.ApplicationInfoManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+@ExtendWith(MockitoExtension.class)
+class StartupWarmUpTest {
+  private static final int CONNECTIONS = 2;
+  private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(1L, "resource-staging", "files/", StorageType.STAGING);
+  private static final GetStorageDTO PERMANENT_STORAGE = new GetStorageDTO(2L, "resource-permanent", "files/", StorageType.PERMANENT);
+
+  @Mock
+  private StorageManager storageManager;
+  @Mock
+  private CloudStorageRepository cloudStorageRepository;
+  @Mock
+  private ResourceRepository resourceRepository;
+  @Mock
+  private ConnectionFactory connectionFactory;
+  @Mock
+  private ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final WarmUpProperties properties = new WarmUpProperties();
+  private StartupWarmUp warmUp;
+
+  @BeforeEach
+  void setUp() {
+    properties.setConnections(CONNECTIONS);
+    properties.setPasses(10);
+    properties.setPartSize(1024);
+    warmUp = new StartupWarmUp(storageManager, cloudStorageRepository, resourceRepository, connectionFactory, applicationInfoManager,
+        properties, meterRegistry);
+  }
+
+  @Test
+  void shouldReportUpWhenWarmUpCompletes() {
+    when(storageManager.getAllByType(StorageType.PERMANENT)).thenReturn(Flux.just(PERMANENT_STORAGE));
+    when(storageManager.getAllByType(StorageType.STAGING)).thenReturn(Flux.just(STAGING_STORAGE));
+    when(cloudStorageRepository.headBucket(any())).thenReturn(Mono.empty());
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.empty());
+
+    assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+    StepVerifier.create(warmUp.warmUp()).verifyComplete();
+
+    assertEquals(Status.UP, warmUp.health().getStatus());
+    verify(cloudStorageRepository, times(CONNECTIONS)).headBucket(STAGING_STORAGE.getBucket());
+    verify(cloudStorageRepository, times(CONNECTIONS)).headBucket(PERMANENT_STORAGE.getBucket());
+    verify(resourceRepository, times(CONNECTIONS)).findAllByIds(any());
+    assertEquals(1, meterRegistry.get("resource.warm-up.duration").tag("outcome", "completed").timer().count());
+  }
+
+  @Test
+  void shouldReportUpWhenWarmUpFails() {
+    when(storageManager.getAllByType(StorageType.PERMANENT)).thenReturn(Flux.error(new IllegalStateException("Storage service down")));
+    when(storageManager.getAllByType(StorageType.STAGING)).thenReturn(Flux.just(STAGING_STORAGE));
+    when(cloudStorageRepository.headBucket(STAGING_STORAGE.getBucket()))
+        .thenReturn(Mono.error(SdkClientException.create("Unable to execute HTTP request")));
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.error(new IllegalStateException("Database down")));
+
+    StepVerifier.create(warmUp.warmUp()).verifyComplete();
+
+    assertTrue(warmUp.isWarmedUp());
+    assertEquals(Status.UP, warmUp.health().getStatus());
+  }
+
+  @Test
+  void shouldReportUpRightAwayWhenWarmUpDisabled() {
+    properties.setEnabled(false);
+
+    warmUp.subscribe();
+
+    assertTrue(warmUp.isWarmedUp());
+    verifyNoInteractions(storageManager, cloudStorageRepository, resourceRepository);
+  }
+}
@@ -1,19 +1,27 @@
 package com.epam.training.microservicefoundation.resourceservice.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.StorageCacheProperties;
 import com.epam.training.microservicefoundation.resourceservice.web.client.StorageServiceClient;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
+import com.epam.training.microservicefoundation.resourceservice.service.placement.RandomPlacementStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
@@ -24,9 +32,14 @@ import reactor.test.StepVerifier;
 class StorageManagerTest {
   @Mock
   private StorageServiceClient storageServiceClient;
-  @InjectMocks
   private StorageManager storageManager;
 
+  @BeforeEach
+  void setUp() {
+    storageManager = new StorageManager(storageServiceClient, new StorageCacheProperties(), new RandomPlacementStrategy(),
+        new SimpleMeterRegistry());
+  }
+
   @ParameterizedTest
   @EnumSource(StorageType.class)
   void shouldGetStorageByType(StorageType type) {
@@ -44,6 +57,23 @@ class StorageManagerTest {
         .verify();
   }
 
+  @ParameterizedTest
+  @EnumSource(StorageType.class)
+  void shouldGetAllStoragesByType(StorageType type) {
+    final GetStorageDTO storage1 = storage(type);
+    final GetStorageDTO storage2 = storage(type);
+    when(storageServiceClient.getByType(type)).thenReturn(Flux.just(storage1, storage2));
+
+    StepVerifier.create(storageManager.getAllByType(type))
+        .expectNext(storage1, storage2)
+        .verifyComplete();
+    // the second lookup is served from the cache
+    StepVerifier.create(storageManager.getAllByType(type))
+        .expectNext(storage1, storage2)
+        .verifyComplete();
+    verify(storageServiceClient, times(1)).getByType(type);
+  }
+
   @ParameterizedTest
   @EnumSource(StorageType.class)
   void shouldGetById(StorageType type) {
@@ -63,6 +93,42 @@ class StorageManagerTest {
         .verifyComplete();
   }
 
+  @Test
+  void shouldNotLookUpStorageAgainWhenGetByIdTwice() {
+    final GetStorageDTO storage = storage(StorageType.PERMANENT);
+    when(storageServiceClient.getById(storage.getId())).thenReturn(Mono.just(storage));
+
+    assertStorage(storage, storageManager.getById(storage.getId()));
+    assertStorage(storage, storageManager.getById(storage.getId()));
+    verify(storageServiceClient, times(1)).getById(storage.getId());
+  }
+
+  @Test
+  void shouldGetByIdStorageLookedUpByType() {
+    final GetStorageDTO storage = storage(StorageType.STAGING);
+    when(storageServiceClient.getByType(StorageType.STAGING)).thenReturn(Flux.just(storage));
+
+    assertStorage(storage, storageManager.getByType(StorageType.STAGING));
+    assertStorage(storage, storageManager.getById(storage.getId()));
+    verify(storageServiceClient, never()).getById(anyLong());
+  }
+
+  @Test
+  void shouldGetLastStorageWhenStorageServiceFails() {
+    final StorageCacheProperties properties = new StorageCacheProperties();
+    // every lookup goes to the storage service
+    properties.setRefreshAfter(Duration.ofNanos(1));
+    properties.setExpiry(Duration.ofNanos(1));
+    storageManager = new StorageManager(storageServiceClient, properties, new RandomPlacementStrategy(), new SimpleMeterRegistry());
+    final GetStorageDTO storage = storage(StorageType.PERMANENT);
+    when(storageServiceClient.getById(storage.getId()))
+        .thenReturn(Mono.just(storage), Mono.error(new IllegalStateException("Circuit breaker is open")));
+
+    assertStorage(storage, storageManager.getById(storage.getId()));
+    assertStorage(storage, storageManager.getById(storage.getId()));
+    verify(storageServiceClient, times(2)).getById(storage.getId());
+  }
+
   private final static Random RANDOM = new Random();
 
   private GetStorageDTO storage(StorageType type) {
@@ -0,0 +1,57 @@
+package com.epam.training.microservicefoundation.resourceservice.service.placement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.S3ClientConfigurationProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
+import com.epam.training.microservicefoundation.resourceservice.repository.StorageLoadTracker;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PowerOfTwoChoicesPlacementStrategyTest {
+  private static final GetStorageDTO HEALTHY_STORAGE = new GetStorageDTO(1L, "resource-staging-1", "files/", StorageType.STAGING);
+  private static final GetStorageDTO SLOW_STORAGE = new GetStorageDTO(2L, "resource-staging-2", "files/", StorageType.STAGING);
+  private static final GetStorageDTO FAILING_STORAGE = new GetStorageDTO(3L, "resource-staging-3", "files/", StorageType.STAGING);
+
+  @Mock
+  private StorageLoadTracker storageLoadTracker;
+
+  @Test
+  void shouldChooseOnlyStorage() {
+    final PowerOfTwoChoicesPlacementStrategy strategy = new PowerOfTwoChoicesPlacementStrategy(storageLoadTracker,
+        new S3ClientConfigurationProperties());
+
+    assertEquals(HEALTHY_STORAGE, strategy.choose(List.of(HEALTHY_STORAGE)));
+  }
+
+  @Test
+  void shouldChooseLessLoadedStorage() {
+    when(storageLoadTracker.getLoad(HEALTHY_STORAGE.getBucket())).thenReturn(new StorageLoadTracker.BucketLoad(0, 20, 0));
+    when(storageLoadTracker.getLoad(SLOW_STORAGE.getBucket())).thenReturn(new StorageLoadTracker.BucketLoad(64L * 1024 * 1024, 200, 0));
+    final PowerOfTwoChoicesPlacementStrategy strategy = new PowerOfTwoChoicesPlacementStrategy(storageLoadTracker,
+        new S3ClientConfigurationProperties());
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(HEALTHY_STORAGE, strategy.choose(List.of(HEALTHY_STORAGE, SLOW_STORAGE)));
+    }
+  }
+
+  @Test
+  void shouldDrainFailingStorage() {
+    // the failing bucket answers faster, its errors outweigh its latency
+    when(storageLoadTracker.getLoad(HEALTHY_STORAGE.getBucket())).thenReturn(new StorageLoadTracker.BucketLoad(0, 50, 0));
+    when(storageLoadTracker.getLoad(FAILING_STORAGE.getBucket())).thenReturn(new StorageLoadTracker.BucketLoad(0, 5, 0.8));
+    final PowerOfTwoChoicesPlacementStrategy strategy = new PowerOfTwoChoicesPlacementStrategy(storageLoadTracker,
+        new S3ClientConfigurationProperties());
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(HEALTHY_STORAGE, strategy.choose(List.of(FAILING_STORAGE, HEALTHY_STORAGE)));
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.epam.training.microservicefoundation.resourceservice.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.service.BaseResourceService;
+import com.epam.training.microservicefoundation.resourceservice.service.implementation.StageResourceService;
+import com.epam.training.microservicefoundation.resourceservice.web.validator.RequestQueryParamValidator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceHandlerTest {
+  private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+  private final List<NettyDataBuffer> buffers = new ArrayList<>();
+  @Mock
+  private BaseResourceService baseService;
+  @Mock
+  private StageResourceService stageResourceService;
+  @Mock
+  private RequestQueryParamValidator idQueryParamValidator;
+
+  private ResourceHandler resourceHandler;
+
+  @BeforeEach
+  void setUp() {
+    resourceHandler = new ResourceHandler(baseService, stageResourceService, idQueryParamValidator, new ResourceDeletionProperties());
+  }
+
+  @Test
+  void shouldDrainAndReleasePartsOtherThanFile() {
+    whenSaveToStageReadsFile();
+    final MockServerWebExchange exchange = exchange();
+
+    StepVerifier.create(resourceHandler.save(request(Flux.concat(part("cover", "cover.jpg"), part("file", "mpthreetest.mp3"))))
+            .flatMap(response -> write(response, exchange)))
+        .verifyComplete();
+
+    assertEquals(HttpStatus.CREATED, exchange.getResponse().getStatusCode());
+    final ArgumentCaptor<Mono<FilePart>> file = fileCaptor();
+    verify(stageResourceService).saveToStage(file.capture());
+    StepVerifier.create(file.getValue().map(FilePart::filename))
+        .expectNext("mpthreetest.mp3")
+        .verifyComplete();
+    assertReleased(2);
+  }
+
+  @Test
+  void shouldIgnoreSecondFilePart() {
+    whenSaveToStageReadsFile();
+    final MockServerWebExchange exchange = exchange();
+
+    StepVerifier.create(resourceHandler.save(request(Flux.concat(part("file", "mpthreetest.mp3"), part("file", "mpthreetest2.mp3"))))
+            .flatMap(response -> write(response, exchange)))
+        .verifyComplete();
+
+    StepVerifier.create(exchange.getResponse().getBodyAsString())
+        .assertNext(body -> assertThat(body, containsString("\"id\":1")))
+        .verifyComplete();
+    verify(stageResourceService, times(1)).saveToStage(any());
+    assertReleased(2);
+  }
+
+  @Test
+  void shouldReturnInvalidRequestWhenSaveWithoutFilePart() {
+    StepVerifier.create(resourceHandler.save(request(part("cover", "cover.jpg")))
+            .flatMap(response -> write(response, exchange())))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(stageResourceService, never()).saveToStage(any());
+    assertReleased(1);
+  }
+
+  // the file content is read as the storage would read it, each chunk is released once it has been consumed
+  private void whenSaveToStageReadsFile() {
+    when(stageResourceService.saveToStage(any())).thenAnswer(invocation -> invocation.<Mono<FilePart>>getArgument(0)
+        .flatMap(file -> file.content().doOnNext(DataBufferUtils::release).then())
+        .thenReturn(new GetResourceDTO(1L)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private ArgumentCaptor<Mono<FilePart>> fileCaptor() {
+    return ArgumentCaptor.forClass(Mono.class);
+  }
+
+  private Flux<PartEvent> part(String name, String filename) {
+    return Flux.defer(() -> FilePartEvent.create(name, filename, MediaType.APPLICATION_OCTET_STREAM, Flux.<DataBuffer>just(buffer(),
+        buffer()))).cast(PartEvent.class);
+  }
+
+  private NettyDataBuffer buffer() {
+    final NettyDataBuffer buffer = BUFFER_FACTORY.allocateBuffer(1024);
+    buffer.write(new byte[1024]);
+    buffers.add(buffer);
+    return buffer;
+  }
+
+  private void assertReleased(int parts) {
+    assertEquals(parts * 2, buffers.size());
+    buffers.forEach(buffer -> assertEquals(0, buffer.getNativeBuffer().refCnt()));
+  }
+
+  private MockServerRequest request(Flux<PartEvent> body) {
+    return MockServerRequest.builder()
+        .method(HttpMethod.POST)
+        .uri(URI.create("/api/v1/resources"))
+        .body(body);
+  }
+
+  private MockServerWebExchange exchange() {
+    return MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/resources"));
+  }
+
+  private Mono<Void> write(ServerResponse response, MockServerWebExchange exchange) {
+    return response.writeTo(exchange, new ServerResponse.Context() {
+      @Override
+      public List<HttpMessageWriter<?>> messageWriters() {
+        return HandlerStrategies.withDefaults().messageWriters();
+      }
+
+      @Override
+      public List<ViewResolver> viewResolvers() {
+        return List.of();
+      }
+    });
+  }
+}
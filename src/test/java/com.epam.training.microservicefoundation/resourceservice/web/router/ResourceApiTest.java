@@ -1,25 +1,40 @@
 package com.epam.training.microservicefoundation.resourceservice.web.router;
 
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.epam.training.microservicefoundation.resourceservice.common.FakeFilePart;
 import com.epam.training.microservicefoundation.resourceservice.common.FakeSenderResult;
 import com.epam.training.microservicefoundation.resourceservice.configuration.WebFluxConfiguration;
+import com.epam.training.microservicefoundation.resourceservice.configuration.properties.ResourceDeletionProperties;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedContent;
+import com.epam.training.microservicefoundation.resourceservice.domain.CachedFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.ResourceFile;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.DeleteResourceDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceDTO;
+import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetResourceMetadataDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.GetStorageDTO;
 import com.epam.training.microservicefoundation.resourceservice.domain.dto.StorageType;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.Resource;
 import com.epam.training.microservicefoundation.resourceservice.domain.entity.ResourceStatus;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.CloudStorageException;
 import com.epam.training.microservicefoundation.resourceservice.domain.exception.EntityNotFoundException;
+import com.epam.training.microservicefoundation.resourceservice.domain.exception.ExceptionSupplier;
 import com.epam.training.microservicefoundation.resourceservice.kafka.producer.KafkaProducer;
 import com.epam.training.microservicefoundation.resourceservice.repository.CloudStorageRepository;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectFileCache;
+import com.epam.training.microservicefoundation.resourceservice.repository.ObjectMemoryCache;
 import com.epam.training.microservicefoundation.resourceservice.repository.ResourceRepository;
 import com.epam.training.microservicefoundation.resourceservice.service.implementation.StorageManager;
 import com.epam.training.microservicefoundation.resourceservice.service.mapper.DeleteResourceMapper;
@@ -27,18 +42,26 @@ import com.epam.training.microservicefoundation.resourceservice.service.mapper.G
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
@@ -49,6 +72,7 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.ResourceUtils;
 import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.SdkResponse;
 import software.amazon.awssdk.core.async.ResponsePublisher;
@@ -67,6 +91,8 @@ import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 class ResourceApiTest {
   @Autowired
   private WebTestClient webTestClient;
+  @Autowired
+  private ResourceDeletionProperties deletionProperties;
   @MockBean
   private ResourceRepository resourceRepository;
   @MockBean
@@ -79,6 +105,10 @@ class ResourceApiTest {
   private KafkaProducer kafkaProducer;
   @MockBean
   private GetResourceMapper getResourceMapper;
+  @MockBean
+  private ObjectFileCache objectFileCache;
+  @MockBean
+  private ObjectMemoryCache objectMemoryCache;
 
   private static final Path FILE_PATH = Paths.get("src/test/resources/files/mpthreetest.mp3");
   private static final GetStorageDTO STAGING_STORAGE = new GetStorageDTO(998L, "resource-staging", "files/", StorageType.STAGING);
@@ -199,15 +229,14 @@ class ResourceApiTest {
   @Test
   void shouldReturn200WhenDeleteResourceByIds() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(cloudStorageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(cloudStorageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource2)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(cloudStorageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket()))).thenReturn(Mono.just(Map.of()));
+    when(resourceRepository.deleteAllByIds(any())).thenReturn(Mono.just(2));
     when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
     when(deleteResourceMapper.toDto(resource2)).thenReturn(new DeleteResourceDTO(resource2.getId()));
 
@@ -226,12 +255,13 @@ class ResourceApiTest {
   @Test
   void shouldReturn200WhenDeleteResourceByIdsPartially() {
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.empty());
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(new Long[]{resource1.getId(), resource2.getId()})).thenReturn(Flux.just(resource1));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(cloudStorageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(new String[]{resource1.getKey()})).thenReturn(Flux.just(resource1.getId()));
+    when(resourceRepository.findAllByKeys(new String[]{resource1.getKey()})).thenReturn(Flux.just(resource1));
+    when(cloudStorageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket()))).thenReturn(Mono.just(Map.of()));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource1.getId()})).thenReturn(Mono.just(1));
     when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
 
     webTestClient.delete().uri(uriBuilder -> uriBuilder
@@ -244,13 +274,13 @@ class ResourceApiTest {
         .jsonPath("$[*].id").isEqualTo((int) resource1.getId());
 
     final Resource resource3 = getSavedResource();
-    when(resourceRepository.findById(resource3.getId())).thenReturn(Mono.just(resource3));
-    Resource resource4 = getSavedResource();
-    when(resourceRepository.findById(resource4.getId())).thenReturn(Mono.just(resource4));
+    final Resource resource4 = getSavedResource().toBuilder().storageId(resource3.getStorageId() + 1).build();
+    when(resourceRepository.findAllByIds(new Long[]{resource3.getId(), resource4.getId()})).thenReturn(Flux.just(resource3, resource4));
     when(storageManager.getById(resource3.getStorageId())).thenReturn(Mono.empty());
     when(storageManager.getById(resource4.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(cloudStorageRepository.deleteByKey(resource4.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource4)).thenReturn(Mono.empty());
+    when(resourceRepository.lockAllByKeys(new String[]{resource4.getKey()})).thenReturn(Flux.just(resource4.getId()));
+    when(resourceRepository.findAllByKeys(new String[]{resource4.getKey()})).thenReturn(Flux.just(resource4));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource4.getId()})).thenReturn(Mono.just(1));
     when(deleteResourceMapper.toDto(resource4)).thenReturn(new DeleteResourceDTO(resource4.getId()));
 
     webTestClient.delete().uri(uriBuilder -> uriBuilder
@@ -263,11 +293,62 @@ class ResourceApiTest {
         .jsonPath("$[*].id").isEqualTo((int) resource4.getId());
   }
 
+  @Test
+  void shouldReturn200WithFailureWhenResourceFileCannotBeDeleted() {
+    final Resource resource1 = getSavedResource();
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
+    when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(cloudStorageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket())))
+        .thenReturn(Mono.just(Map.of(resource2.getKey(), "Access Denied")));
+    when(resourceRepository.deleteAllByIds(new Long[]{resource1.getId()})).thenReturn(Mono.just(1));
+    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
+
+    webTestClient.delete().uri(uriBuilder -> uriBuilder
+            .path("/api/v1/resources")
+            .queryParam("id", resource1.getId() + "," + resource2.getId())
+            .build())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$[0].id").isEqualTo((int) resource1.getId())
+        .jsonPath("$[1].id").isEqualTo((int) resource2.getId())
+        .jsonPath("$[1].error").isEqualTo("Access Denied");
+  }
+
+  @Test
+  void shouldReturn202WhenDeleteResourceByIdsDeferred() {
+    final Resource resource1 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).build();
+    final Resource resource2 = getSavedResource().toBuilder().status(ResourceStatus.DELETING).build();
+    when(resourceRepository.updateAllStatusByIds(any(), eq(ResourceStatus.DELETING.name()))).thenReturn(Flux.just(resource1, resource2));
+    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
+    when(deleteResourceMapper.toDto(resource2)).thenReturn(new DeleteResourceDTO(resource2.getId()));
+
+    deletionProperties.setDeferred(true);
+    try {
+      webTestClient.delete().uri(uriBuilder -> uriBuilder
+              .path("/api/v1/resources")
+              .queryParam("id", resource1.getId() + "," + resource2.getId())
+              .build())
+          .exchange()
+          .expectStatus().isAccepted()
+          .expectBody()
+          .jsonPath("$[*].id").value(containsInAnyOrder(
+              is((int) resource1.getId()),
+              is((int) resource2.getId())));
+    } finally {
+      deletionProperties.setDeferred(false);
+    }
+    verify(cloudStorageRepository, never()).deleteAllByKeys(any(), anyString());
+  }
+
   @Test
   void shouldReturn200WhenFailDeleting() {
     final Long[] ids = {1L, 2L};
-    when(resourceRepository.findById(ids[0])).thenReturn(Mono.empty());
-    when(resourceRepository.findById(ids[1])).thenReturn(Mono.empty());
+    when(resourceRepository.findAllByIds(ids)).thenReturn(Flux.empty());
 
     webTestClient.delete().uri(uriBuilder -> uriBuilder
             .path("/api/v1/resources")
@@ -277,9 +358,8 @@ class ResourceApiTest {
         .expectStatus().isOk();
 
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(new Long[]{resource1.getId(), resource2.getId()})).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.empty());
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.empty());
 
@@ -327,16 +407,14 @@ class ResourceApiTest {
         DeleteBucketResponse.builder().sdkHttpResponse(SdkHttpResponse.builder().statusCode(HttpStatus.INTERNAL_SERVER_ERROR.value())
             .statusText("Something bad happened during resource deletion").build()).build();
     final Resource resource1 = getSavedResource();
-    when(resourceRepository.findById(resource1.getId())).thenReturn(Mono.just(resource1));
-    Resource resource2 = getSavedResource();
-    when(resourceRepository.findById(resource2.getId())).thenReturn(Mono.just(resource2));
+    final Resource resource2 = getSavedResource();
+    when(resourceRepository.findAllByIds(any())).thenReturn(Flux.just(resource1, resource2));
     when(storageManager.getById(resource1.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
     when(storageManager.getById(resource2.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
-    when(cloudStorageRepository.deleteByKey(resource1.getKey(), PERMANENT_STORAGE.getBucket()))
-        .thenThrow(new CloudStorageException(sdkResponse1));
-    when(cloudStorageRepository.deleteByKey(resource2.getKey(), PERMANENT_STORAGE.getBucket())).thenReturn(Mono.empty());
-    when(resourceRepository.delete(resource1)).thenReturn(Mono.empty());
-    when(deleteResourceMapper.toDto(resource1)).thenReturn(new DeleteResourceDTO(resource1.getId()));
+    when(resourceRepository.lockAllByKeys(any())).thenReturn(Flux.just(resource1.getId(), resource2.getId()));
+    when(resourceRepository.findAllByKeys(any())).thenReturn(Flux.just(resource1, resource2));
+    when(cloudStorageRepository.deleteAllByKeys(any(), eq(PERMANENT_STORAGE.getBucket())))
+        .thenReturn(Mono.error(new CloudStorageException(sdkResponse1)));
 
     webTestClient.delete().uri(uriBuilder -> uriBuilder
             .path("/api/v1/resources")
@@ -360,7 +438,130 @@ class ResourceApiTest {
         .exchange()
         .expectStatus()
         .isOk()
-        .expectHeader().contentLength(FILE_PATH.toFile().length());
+        .expectHeader().contentLength(FILE_PATH.toFile().length())
+        .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+  }
+
+  @Test
+  void shouldReturn200WhenGetResourceStoredInManyChunks() {
+    final byte[] content = new byte[64 * 1024];
+    new Random().nextBytes(content);
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+
+    final List<Long> requests = new CopyOnWriteArrayList<>();
+    final Flux<ByteBuffer> chunks = Flux.range(0, 64)
+        .map(chunk -> ByteBuffer.wrap(content, chunk * 1024, 1024))
+        .doOnRequest(requests::add);
+    final GetObjectResponse response = GetObjectResponse.builder().contentType("audio/mpeg").contentLength((long) content.length).build();
+    when(cloudStorageRepository.getByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket()))
+        .thenReturn(Mono.just(new ResponsePublisher<>(response, SdkPublisher.adapt(chunks))));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentLength(content.length)
+        .expectBody(byte[].class).isEqualTo(content);
+
+    // the storage is read a few chunks ahead of the response, never as fast as it can deliver
+    assertTrue(requests.stream().allMatch(request -> request <= 16));
+  }
+
+  @Test
+  void shouldReturn200WhenGetCachedResourceById() throws IOException {
+    final long contentLength = FILE_PATH.toFile().length();
+    final Resource savedResource = getSavedResource().toBuilder().contentLength(contentLength).build();
+    final CachedFile cachedFile = new CachedFile(FILE_PATH, contentLength, "audio/mpeg", "\"etag\"", null,
+        Map.of("filename", "mpthreetest.mp3"));
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(objectFileCache.isCacheable(contentLength)).thenReturn(true);
+    when(objectFileCache.get(eq(PERMANENT_STORAGE.getBucket()), eq(savedResource.getKey()), any())).thenReturn(Mono.just(cachedFile));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentType("audio/mpeg")
+        .expectHeader().contentLength(contentLength)
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"")
+        .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"mpthreetest.mp3\"")
+        .expectBody(byte[].class).isEqualTo(Files.readAllBytes(FILE_PATH));
+
+    verify(cloudStorageRepository, never()).getByKey(anyString(), anyString());
+    // the file may be deleted by an eviction once it has been sent
+    verify(objectFileCache).release(cachedFile);
+  }
+
+  @Test
+  void shouldReturn200WhenGetResourceHeldInMemory() {
+    final byte[] content = "jingle".getBytes();
+    final GetResourceMetadataDTO metadata = new GetResourceMetadataDTO(5L, "jingle.mp3", "\"etag\"", "audio/mpeg",
+        (long) content.length, null, "jingle", PERMANENT_STORAGE.getBucket());
+    when(objectMemoryCache.getIfPresent(5L)).thenReturn(Optional.of(new CachedContent(metadata, "audio/mpeg", "jingle.mp3",
+        ByteBuffer.allocateDirect(content.length).put(content).flip())));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", 5L)
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentLength(content.length)
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"")
+        .expectBody(byte[].class).isEqualTo(content);
+
+    verify(resourceRepository, never()).findById(anyLong());
+    verify(objectMemoryCache).recordServed(any());
+  }
+
+  @Test
+  void shouldReturn307WhenGetResourceWithRedirect() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    final URI location = URI.create("https://s3.amazonaws.com/resource-permanent/" + savedResource.getKey() + "?X-Amz-Signature=1");
+    when(cloudStorageRepository.presignGetByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), savedResource.getName()))
+        .thenReturn(Mono.just(location));
+
+    webTestClient.get().uri("/api/v1/resources/{id}?redirect=true", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .exchange()
+        .expectStatus().isTemporaryRedirect()
+        .expectHeader().location(location.toString())
+        .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-store");
+
+    verify(cloudStorageRepository, never()).getByKey(anyString(), anyString());
+  }
+
+  @Test
+  void shouldReturn304WhenGetResourceWithMatchingEntityTag() {
+    final Resource savedResource = getSavedResource().toBuilder().etag("\"etag\"").build();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"etag\"")
+        .exchange()
+        .expectStatus().isNotModified()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"");
+
+    verify(cloudStorageRepository, never()).getByKey(anyString(), anyString());
+  }
+
+  @Test
+  void shouldReturn304WhenGetResourceNotModifiedSince() {
+    final LocalDateTime uploaded = LocalDateTime.of(2024, 5, 6, 11, 40, 15);
+    final Resource savedResource = getSavedResource().toBuilder().createdDate(uploaded).build();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .ifModifiedSince(uploaded.atZone(ZoneId.systemDefault()))
+        .exchange()
+        .expectStatus().isNotModified();
+
+    verify(cloudStorageRepository, never()).getByKey(anyString(), anyString());
   }
 
   @Test
@@ -427,6 +628,60 @@ class ResourceApiTest {
         .expectStatus().is5xxServerError();
   }
 
+  @Test
+  void shouldReturn206WhenGetResourceRange() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(cloudStorageRepository.getRangeByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), "bytes=0-99", null, null))
+        .thenReturn(Mono.just(getRangeResponsePublisher(0, 99)));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .header(HttpHeaders.RANGE, "bytes=0-99")
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+        .expectHeader().contentLength(100)
+        .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 0-99/1000")
+        .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes");
+  }
+
+  @Test
+  void shouldReturn206WithEveryRangeWhenGetResourceRanges() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(cloudStorageRepository.getRangeByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), "bytes=0-9", null, null))
+        .thenReturn(Mono.just(getRangeResponsePublisher(0, 9)));
+    when(cloudStorageRepository.getRangeByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), "bytes=500-509", "\"etag\"", null))
+        .thenReturn(Mono.just(getRangeResponsePublisher(500, 509)));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .header(HttpHeaders.RANGE, "bytes=0-9,500-509")
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+        .expectHeader().value(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary="))
+        .expectBody(String.class).value(allOf(containsString("Content-Range: bytes 0-9/1000"),
+            containsString("Content-Range: bytes 500-509/1000")));
+  }
+
+  @Test
+  void shouldReturn416WhenGetResourceRangeNotSatisfiable() {
+    final Resource savedResource = getSavedResource();
+    when(resourceRepository.findById(savedResource.getId())).thenReturn(Mono.just(savedResource));
+    when(storageManager.getById(savedResource.getStorageId())).thenReturn(Mono.just(PERMANENT_STORAGE));
+    when(cloudStorageRepository.getRangeByKey(savedResource.getKey(), PERMANENT_STORAGE.getBucket(), "bytes=2000-", null, null))
+        .thenReturn(Mono.error(ExceptionSupplier.rangeNotSatisfiable(1000)));
+
+    webTestClient.get().uri("/api/v1/resources/{id}", savedResource.getId())
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .header(HttpHeaders.RANGE, "bytes=2000-")
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+        .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */1000");
+  }
+
   private MultiValueMap<String, Object> multiParts() throws FileNotFoundException {
     final File file = ResourceUtils.getFile("classpath:files/mpthreetest.mp3");
     final MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
@@ -442,6 +697,14 @@ class ResourceApiTest {
         .storageId(RANDOM.nextInt(1000)).name("test" + id).build();
   }
 
+  private ResponsePublisher<GetObjectResponse> getRangeResponsePublisher(int first, int last) {
+    final GetObjectResponse getObjectResponse = GetObjectResponse.builder().contentType("audio/mpeg")
+        .contentLength((long) last - first + 1).contentRange("bytes " + first + "-" + last + "/1000").eTag("\"etag\"").build();
+    final SdkPublisher<ByteBuffer> byteBufferSdkPublisher =
+        SdkPublishers.envelopeWrappedPublisher(Mono.just(ByteBuffer.wrap(new byte[last - first + 1])), "", "");
+    return new ResponsePublisher<>(getObjectResponse, byteBufferSdkPublisher);
+  }
+
   private ResponsePublisher<GetObjectResponse> getResponsePublisher() throws IOException {
     final GetObjectResponse getObjectResponse = GetObjectResponse.builder().contentType(MediaType.MULTIPART_FORM_DATA.toString())
         .contentLength(FILE_PATH.toFile().length()).build();
@@ -1,3 +1,7 @@
+DROP TABLE IF EXISTS UPLOAD_SESSION_PARTS CASCADE;
+DROP SEQUENCE IF EXISTS UPLOAD_SESSION_PARTS_SEQUENCE CASCADE;
+DROP TABLE IF EXISTS UPLOAD_SESSIONS CASCADE;
+DROP SEQUENCE IF EXISTS UPLOAD_SESSIONS_SEQUENCE CASCADE;
 DROP TABLE IF EXISTS RESOURCES CASCADE;
 DROP SEQUENCE IF EXISTS RESOURCES_SEQUENCE CASCADE;
 CREATE SEQUENCE IF NOT EXISTS RESOURCES_SEQUENCE as bigint;
@@ -8,9 +12,47 @@ CREATE TABLE IF NOT EXISTS RESOURCES(
     "name" varchar(100) NOT NULL UNIQUE,
     "status" varchar(50) NOT NULL,
     "storage_id" bigint NOT NULL,
+    "content_hash" varchar(64),
+    "checksum" varchar(16),
+    "etag" varchar(100),
+    "content_type" varchar(255),
+    "content_length" bigint,
     "last_modified_date" TIMESTAMP,
     "created_date" TIMESTAMP NOT NULL
 );
 
+CREATE INDEX IF NOT EXISTS RESOURCES_CONTENT_HASH_INDEX ON RESOURCES("content_hash");
+CREATE INDEX IF NOT EXISTS RESOURCES_KEY_INDEX ON RESOURCES("key");
 
-ALTER SEQUENCE RESOURCES_SEQUENCE OWNED BY RESOURCES."id";
\ No newline at end of file
+ALTER SEQUENCE RESOURCES_SEQUENCE OWNED BY RESOURCES."id";
+
+CREATE SEQUENCE IF NOT EXISTS UPLOAD_SESSIONS_SEQUENCE as bigint;
+
+CREATE TABLE IF NOT EXISTS UPLOAD_SESSIONS(
+    "id" bigint PRIMARY KEY DEFAULT nextval('UPLOAD_SESSIONS_SEQUENCE'),
+    "upload_id" varchar(1024) NOT NULL,
+    "key" varchar(100) NOT NULL,
+    "name" varchar(100) NOT NULL,
+    "content_type" varchar(255) NOT NULL,
+    "content_length" bigint,
+    "storage_id" bigint NOT NULL,
+    "last_modified_date" TIMESTAMP,
+    "created_date" TIMESTAMP NOT NULL
+);
+
+ALTER SEQUENCE UPLOAD_SESSIONS_SEQUENCE OWNED BY UPLOAD_SESSIONS."id";
+
+CREATE SEQUENCE IF NOT EXISTS UPLOAD_SESSION_PARTS_SEQUENCE as bigint;
+
+CREATE TABLE IF NOT EXISTS UPLOAD_SESSION_PARTS(
+    "id" bigint PRIMARY KEY DEFAULT nextval('UPLOAD_SESSION_PARTS_SEQUENCE'),
+    "session_id" bigint NOT NULL REFERENCES UPLOAD_SESSIONS("id") ON DELETE CASCADE,
+    "part_number" integer NOT NULL,
+    "etag" varchar(100) NOT NULL,
+    "checksum" varchar(16),
+    "size" bigint NOT NULL,
+    "created_date" TIMESTAMP NOT NULL,
+    UNIQUE ("session_id", "part_number")
+);
+
+ALTER SEQUENCE UPLOAD_SESSION_PARTS_SEQUENCE OWNED BY UPLOAD_SESSION_PARTS."id";